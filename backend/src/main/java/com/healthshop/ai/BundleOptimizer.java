@@ -0,0 +1,246 @@
+package com.healthshop.ai;
+
+import com.healthshop.model.Product;
+import com.healthshop.repository.OrderItemRepository;
+import com.healthshop.repository.ProductRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * AI Bundle Optimizer
+ * Batch job that mines frequent 2-3 item sets from the last year of orders,
+ * scores them by support, lift, category complementarity and discount headroom,
+ * and keeps the best bundles per product and per health goal for request-time
+ * lookup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BundleOptimizer {
+
+    private final OrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+
+    private static final int MIN_SUPPORT_COUNT = 2;
+    private static final int BUNDLES_PER_KEY = 5;
+    private static final int HISTORY_DAYS = 365;
+
+    // Score weights
+    private static final double W_SUPPORT = 0.35;
+    private static final double W_LIFT = 0.30;
+    private static final double W_COMPLEMENT = 0.20;
+    private static final double W_DISCOUNT_HEADROOM = 0.15;
+
+    private volatile BundleIndex index = BundleIndex.EMPTY;
+
+    /**
+     * Top mined bundles containing the given product, best first.
+     */
+    public List<MinedBundle> bundlesForProduct(Long productId) {
+        return index.byProduct.getOrDefault(productId, List.of());
+    }
+
+    /**
+     * Top mined bundles whose products serve the given health goal, best first.
+     */
+    public List<MinedBundle> bundlesForGoal(String goal) {
+        return goal == null ? List.of() : index.byGoal.getOrDefault(goal.trim().toLowerCase(), List.of());
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelay = 6 * 60 * 60 * 1000L)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        // 1. Stream the window's order lines one order at a time: every order counts
+        //    towards item support, only baskets of two or more products are kept
+        Map<Long, Integer> itemCounts = new HashMap<>();
+        List<long[]> baskets = new ArrayList<>();
+        int transactions = 0;
+        try (Stream<Object[]> rows = orderItemRepository
+                .streamOrderProductPairsSince(LocalDateTime.now().minusDays(HISTORY_DAYS))) {
+            Long orderId = null;
+            Set<Long> basket = new TreeSet<>();
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] row = it.next();
+                if (!row[0].equals(orderId)) {
+                    transactions += addBasket(basket, itemCounts, baskets);
+                    orderId = (Long) row[0];
+                }
+                basket.add((Long) row[1]);
+            }
+            transactions += addBasket(basket, itemCounts, baskets);
+        }
+        if (transactions == 0) {
+            index = BundleIndex.EMPTY;
+            return;
+        }
+
+        // 2. Frequent single items
+        itemCounts.values().removeIf(c -> c < MIN_SUPPORT_COUNT);
+
+        // 3. Frequent pairs and triples (Apriori pruning: triples only from frequent pairs)
+        Map<List<Long>, Integer> pairCounts = new HashMap<>();
+        List<long[]> filteredBaskets = new ArrayList<>();
+        for (long[] basket : baskets) {
+            long[] items = Arrays.stream(basket).filter(itemCounts::containsKey).toArray();
+            if (items.length < 2)
+                continue;
+            filteredBaskets.add(items);
+            for (int i = 0; i < items.length; i++)
+                for (int j = i + 1; j < items.length; j++)
+                    pairCounts.merge(List.of(items[i], items[j]), 1, Integer::sum);
+        }
+        pairCounts.values().removeIf(c -> c < MIN_SUPPORT_COUNT);
+
+        Map<List<Long>, Integer> tripleCounts = new HashMap<>();
+        for (long[] items : filteredBaskets) {
+            for (int i = 0; i < items.length; i++)
+                for (int j = i + 1; j < items.length; j++) {
+                    if (!pairCounts.containsKey(List.of(items[i], items[j])))
+                        continue;
+                    for (int k = j + 1; k < items.length; k++) {
+                        if (pairCounts.containsKey(List.of(items[i], items[k]))
+                                && pairCounts.containsKey(List.of(items[j], items[k]))) {
+                            tripleCounts.merge(List.of(items[i], items[j], items[k]), 1, Integer::sum);
+                        }
+                    }
+                }
+        }
+        tripleCounts.values().removeIf(c -> c < MIN_SUPPORT_COUNT);
+
+        // 4. Score candidates
+        Set<Long> candidateIds = new HashSet<>();
+        pairCounts.keySet().forEach(candidateIds::addAll);
+        tripleCounts.keySet().forEach(candidateIds::addAll);
+        Map<Long, Product> products = productRepository.findAllById(candidateIds).stream()
+                .filter(p -> Boolean.TRUE.equals(p.getActive()))
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<MinedBundle> scored = new ArrayList<>();
+        Map<List<Long>, Integer> candidates = new HashMap<>(pairCounts);
+        candidates.putAll(tripleCounts);
+        for (Map.Entry<List<Long>, Integer> c : candidates.entrySet()) {
+            List<Product> members = c.getKey().stream().map(products::get).collect(Collectors.toList());
+            if (members.contains(null))
+                continue;
+            scored.add(score(members, c.getValue(), transactions, itemCounts));
+        }
+        scored.sort(Comparator.comparingDouble(MinedBundle::getScore).reversed());
+
+        // 5. Top bundles per product and per health goal
+        Map<Long, List<MinedBundle>> byProduct = new HashMap<>();
+        Map<String, List<MinedBundle>> byGoal = new HashMap<>();
+        for (MinedBundle bundle : scored) {
+            for (Long id : bundle.getProductIds()) {
+                List<MinedBundle> list = byProduct.computeIfAbsent(id, k -> new ArrayList<>());
+                if (list.size() < BUNDLES_PER_KEY)
+                    list.add(bundle);
+            }
+            for (String goal : bundle.getHealthGoals()) {
+                List<MinedBundle> list = byGoal.computeIfAbsent(goal, k -> new ArrayList<>());
+                if (list.size() < BUNDLES_PER_KEY)
+                    list.add(bundle);
+            }
+        }
+        byProduct.replaceAll((k, v) -> List.copyOf(v));
+        byGoal.replaceAll((k, v) -> List.copyOf(v));
+        index = new BundleIndex(Map.copyOf(byProduct), Map.copyOf(byGoal));
+
+        log.info("Mined {} bundles from {} orders in {} ms", scored.size(), transactions,
+                System.currentTimeMillis() - start);
+    }
+
+    // Counts a finished order's items and empties the basket; returns 1 if it held any
+    private static int addBasket(Set<Long> basket, Map<Long, Integer> itemCounts, List<long[]> baskets) {
+        if (basket.isEmpty())
+            return 0;
+        for (Long id : basket)
+            itemCounts.merge(id, 1, Integer::sum);
+        if (basket.size() >= 2)
+            baskets.add(basket.stream().mapToLong(Long::longValue).toArray());
+        basket.clear();
+        return 1;
+    }
+
+    private MinedBundle score(List<Product> members, int count, int transactions, Map<Long, Integer> itemCounts) {
+        double support = count / (double) transactions;
+        double expected = 1.0;
+        for (Product p : members)
+            expected *= itemCounts.get(p.getId()) / (double) transactions;
+        double lift = support / expected;
+
+        long distinctCategories = members.stream()
+                .map(p -> p.getCategory() != null ? p.getCategory().getId() : -1L)
+                .distinct().count();
+        double complementarity = (distinctCategories - 1) / (double) (members.size() - 1);
+
+        // Discount headroom: share of list price still charged. The catalogue has no cost
+        // field, so this is not a margin; products already on discount leave less room
+        // for a bundle discount
+        double headroom = members.stream()
+                .mapToDouble(p -> p.getDiscountPrice() != null && p.getPrice() > 0
+                        ? p.getDiscountPrice() / p.getPrice()
+                        : 1.0)
+                .average().orElse(1.0);
+
+        double score = W_SUPPORT * Math.min(1.0, support * 10)
+                + W_LIFT * Math.min(1.0, Math.log1p(lift) / Math.log1p(10))
+                + W_COMPLEMENT * complementarity
+                + W_DISCOUNT_HEADROOM * headroom;
+
+        Set<String> goals = new LinkedHashSet<>();
+        for (Product p : members) {
+            if (p.getHealthGoals() != null) {
+                for (String g : p.getHealthGoals().split(","))
+                    if (!g.isBlank())
+                        goals.add(g.trim().toLowerCase());
+            }
+        }
+
+        MinedBundle bundle = new MinedBundle();
+        bundle.productIds = members.stream().map(Product::getId).collect(Collectors.toUnmodifiableList());
+        bundle.healthGoals = Set.copyOf(goals);
+        bundle.orderCount = count;
+        bundle.support = support;
+        bundle.lift = lift;
+        bundle.score = score;
+        bundle.discountPercentage = headroom >= 0.95 ? 15 : 10;
+        return bundle;
+    }
+
+    // ===== Helper classes =====
+
+    @Getter
+    public static class MinedBundle {
+        private List<Long> productIds;
+        private Set<String> healthGoals;
+        private int orderCount;
+        private double support;
+        private double lift;
+        private double score;
+        private int discountPercentage;
+    }
+
+    private static class BundleIndex {
+        static final BundleIndex EMPTY = new BundleIndex(Map.of(), Map.of());
+
+        final Map<Long, List<MinedBundle>> byProduct;
+        final Map<String, List<MinedBundle>> byGoal;
+
+        BundleIndex(Map<Long, List<MinedBundle>> byProduct, Map<String, List<MinedBundle>> byGoal) {
+            this.byProduct = byProduct;
+            this.byGoal = byGoal;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.event.ScoreDistributionsRebuiltEvent;
+import com.healthshop.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Category Score Distributions
+ * Background job that sorts every active product's effective price, rating,
+ * review volume and health-goal breadth per category. Each product gets its
+ * percentile vector within its category, so comparisons score against the whole
+ * category in O(1) instead of only against the products in the request.
+ * Rebuilt hourly; a product write re-ranks only that product's category. Each
+ * rebuild publishes a {@link ScoreDistributionsRebuiltEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryScoreDistributions {
+
+    public static final int PRICE = 0;
+    public static final int RATING = 1;
+    public static final int REVIEWS = 2;
+    public static final int GOALS = 3;
+    private static final int DIMENSIONS = 4;
+
+    private static final int TOP_N = 10;
+    private static final long NO_CATEGORY = -1L;
+
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Guarded by this: product writes seen while a rebuild reads the catalog
+    private boolean rebuilding;
+    private final Set<Long> patchedDuringRebuild = new HashSet<>();
+
+    /**
+     * Percentiles (0-1, mid-rank) of the product within its category, indexed by
+     * PRICE, RATING, REVIEWS, GOALS; {@code null} if the product is not indexed.
+     */
+    public double[] percentiles(Long productId) {
+        ProductStats stats = snapshot.products.get(productId);
+        return stats != null ? stats.percentiles : null;
+    }
+
+    /**
+     * Best products of the category by composite percentile score, best first.
+     */
+    public List<Long> categoryTop(Long productId) {
+        ProductStats stats = snapshot.products.get(productId);
+        if (stats == null)
+            return List.of();
+        return snapshot.topByCategory.getOrDefault(stats.categoryId, List.of());
+    }
+
+    public int categorySize(Long productId) {
+        ProductStats stats = snapshot.products.get(productId);
+        return stats != null ? snapshot.idsByCategory.getOrDefault(stats.categoryId, List.of()).size() : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 60 * 60 * 1000L, fixedDelay = 60 * 60 * 1000L)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            rebuilding = true;
+            patchedDuringRebuild.clear();
+        }
+
+        Map<Long, RawEntry> raw = new HashMap<>();
+        try {
+            for (Object[] row : productRepository.findScoringProjection())
+                raw.put((Long) row[0], RawEntry.of(row));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                rebuilding = false;
+            }
+            throw e;
+        }
+        Map<Long, List<Long>> idsByCategory = new HashMap<>();
+        raw.forEach((id, e) -> idsByCategory.computeIfAbsent(e.categoryId, k -> new ArrayList<>()).add(id));
+
+        Map<Long, ProductStats> products = new HashMap<>();
+        Map<Long, List<Long>> topByCategory = new HashMap<>();
+        for (Map.Entry<Long, List<Long>> e : idsByCategory.entrySet())
+            computeCategory(e.getKey(), e.getValue(), raw, products, topByCategory);
+        Snapshot built = new Snapshot(raw, idsByCategory, products, topByCategory);
+
+        synchronized (this) {
+            snapshot = built;
+        }
+        // Products written while the catalog was being read may be stale in the new snapshot
+        while (true) {
+            List<Long> stale;
+            synchronized (this) {
+                if (patchedDuringRebuild.isEmpty()) {
+                    rebuilding = false;
+                    break;
+                }
+                stale = List.copyOf(patchedDuringRebuild);
+                patchedDuringRebuild.clear();
+            }
+            stale.forEach(this::patch);
+        }
+        log.info("Computed score distributions for {} products in {} categories in {} ms", products.size(),
+                idsByCategory.size(), System.currentTimeMillis() - start);
+        eventPublisher.publishEvent(new ScoreDistributionsRebuiltEvent(products.size()));
+    }
+
+    /**
+     * Re-rank only the changed product's category (and its old one if it moved),
+     * so scoring right after a product write sees the product's current values.
+     * Runs before other product listeners, which may score against it.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (this) {
+            if (rebuilding)
+                patchedDuringRebuild.add(event.getProductId());
+        }
+        patch(event.getProductId());
+    }
+
+    private void patch(Long productId) {
+        List<Object[]> rows = productRepository.findScoringProjectionById(productId);
+        RawEntry entry = rows.isEmpty() ? null : RawEntry.of(rows.get(0));
+        synchronized (this) {
+            Snapshot current = snapshot;
+            RawEntry old = current.raw.get(productId);
+            if (old == null && entry == null)
+                return;
+            Map<Long, RawEntry> raw = new HashMap<>(current.raw);
+            if (entry != null)
+                raw.put(productId, entry);
+            else
+                raw.remove(productId);
+
+            Map<Long, List<Long>> idsByCategory = new HashMap<>(current.idsByCategory);
+            if (old != null)
+                idsByCategory.computeIfPresent(old.categoryId, (k, ids) -> without(ids, productId));
+            if (entry != null)
+                idsByCategory.merge(entry.categoryId, List.of(productId), (ids, add) -> with(without(ids, productId), productId));
+
+            Map<Long, ProductStats> products = new HashMap<>(current.products);
+            Map<Long, List<Long>> topByCategory = new HashMap<>(current.topByCategory);
+            products.remove(productId);
+            Set<Long> affected = new HashSet<>();
+            if (old != null)
+                affected.add(old.categoryId);
+            if (entry != null)
+                affected.add(entry.categoryId);
+            for (Long categoryId : affected) {
+                List<Long> ids = idsByCategory.getOrDefault(categoryId, List.of());
+                topByCategory.remove(categoryId);
+                if (ids.isEmpty())
+                    idsByCategory.remove(categoryId);
+                else
+                    computeCategory(categoryId, ids, raw, products, topByCategory);
+            }
+            snapshot = new Snapshot(raw, idsByCategory, products, topByCategory);
+        }
+    }
+
+    // Sorted distributions, per-product percentile vectors and the top list of one category
+    private static void computeCategory(Long categoryId, List<Long> ids, Map<Long, RawEntry> raw,
+            Map<Long, ProductStats> products, Map<Long, List<Long>> topByCategory) {
+        double[][] sorted = new double[DIMENSIONS][ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            double[] v = raw.get(ids.get(i)).values;
+            for (int d = 0; d < DIMENSIONS; d++)
+                sorted[d][i] = v[d];
+        }
+        for (double[] column : sorted)
+            Arrays.sort(column);
+
+        Map<Long, Double> composite = new HashMap<>();
+        for (Long id : ids) {
+            double[] v = raw.get(id).values;
+            double[] pct = new double[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++)
+                pct[d] = percentile(sorted[d], v[d]);
+            products.put(id, new ProductStats(categoryId, pct));
+            composite.put(id, compositeScore(pct));
+        }
+        topByCategory.put(categoryId, composite.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(TOP_N)
+                .map(Map.Entry::getKey)
+                .toList());
+    }
+
+    private static List<Long> without(List<Long> ids, Long id) {
+        return ids.stream().filter(i -> !i.equals(id)).toList();
+    }
+
+    private static List<Long> with(List<Long> ids, Long id) {
+        List<Long> copy = new ArrayList<>(ids);
+        copy.add(id);
+        return copy;
+    }
+
+    /**
+     * Cheaper, better rated, more reviewed and broader products rank higher.
+     */
+    static double compositeScore(double[] pct) {
+        return 0.25 * (1 - pct[PRICE]) + 0.35 * pct[RATING] + 0.25 * pct[REVIEWS] + 0.15 * pct[GOALS];
+    }
+
+    // Mid-rank percentile: share of values below plus half of the ties
+    private static double percentile(double[] sorted, double value) {
+        if (sorted.length <= 1)
+            return 0.5;
+        int below = lowerBound(sorted, value);
+        int ties = lowerBound(sorted, Math.nextUp(value)) - below;
+        return (below + 0.5 * ties) / sorted.length;
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // ===== Helper classes =====
+
+    private static class ProductStats {
+        final Long categoryId;
+        final double[] percentiles;
+
+        ProductStats(Long categoryId, double[] percentiles) {
+            this.categoryId = categoryId;
+            this.percentiles = percentiles;
+        }
+    }
+
+    private static class RawEntry {
+        final Long categoryId;
+        final double[] values;
+
+        RawEntry(Long categoryId, double[] values) {
+            this.categoryId = categoryId;
+            this.values = values;
+        }
+
+        // Row of findScoringProjection: id, category id, price, discount price, rating, reviews, goals
+        static RawEntry of(Object[] row) {
+            Double price = (Double) row[2];
+            Double discountPrice = (Double) row[3];
+            Double rating = (Double) row[4];
+            Integer reviews = (Integer) row[5];
+            String goals = (String) row[6];
+
+            double[] v = new double[DIMENSIONS];
+            v[PRICE] = discountPrice != null ? discountPrice : (price != null ? price : 0);
+            v[RATING] = rating != null ? rating : 0;
+            v[REVIEWS] = reviews != null ? reviews : 0;
+            v[GOALS] = goals == null || goals.isBlank() ? 0
+                    : Arrays.stream(goals.split(",")).filter(g -> !g.isBlank()).count();
+            return new RawEntry(row[1] != null ? (Long) row[1] : NO_CATEGORY, v);
+        }
+    }
+
+    private static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of(), Map.of());
+
+        final Map<Long, RawEntry> raw;
+        final Map<Long, List<Long>> idsByCategory;
+        final Map<Long, ProductStats> products;
+        final Map<Long, List<Long>> topByCategory;
+
+        Snapshot(Map<Long, RawEntry> raw, Map<Long, List<Long>> idsByCategory, Map<Long, ProductStats> products,
+                Map<Long, List<Long>> topByCategory) {
+            this.raw = Map.copyOf(raw);
+            this.idsByCategory = Map.copyOf(idsByCategory);
+            this.products = Map.copyOf(products);
+            this.topByCategory = Map.copyOf(topByCategory);
+        }
+    }
+}
@@ -1,26 +1,47 @@
 package com.healthshop.ai;
 
 import com.healthshop.dto.AIDTO;
+import com.healthshop.event.ProductChangedEvent;
 import com.healthshop.model.*;
 import com.healthshop.repository.*;
+import com.healthshop.service.AIAnalyticsService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Personalized Dosage Calculator
  * Provides AI-calibrated dosage recommendations based on user profile + product
- * data.
+ * data. The knowledge base entry for each product is resolved at write time.
  */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Transactional(readOnly = true)
 public class DosageCalculator {
 
         private final ProductRepository productRepository;
         private final UserHealthProfileRepository healthProfileRepository;
+        private final CartItemRepository cartItemRepository;
+        private final InteractionChecker interactionChecker;
+        private final AIAnalyticsService analyticsService;
+
+        private static final String MORNING = "Morning";
+        private static final String MIDDAY = "Midday (with lunch)";
+        private static final String EVENING = "Evening";
+        private static final String BEDTIME = "Bedtime";
+        private static final List<String> SLOTS = List.of(MORNING, MIDDAY, EVENING, BEDTIME);
+
+        // productId -> knowledge base entry name (null = no entry), with the product version it was resolved from
+        private final Map<Long, DosageMatch> dosageMatches = new ConcurrentHashMap<>();
 
         // ========== DOSAGE KNOWLEDGE BASE ==========
         private static final Map<String, DosageInfo> DOSAGE_DB = new LinkedHashMap<>();
@@ -92,21 +113,48 @@ public class DosageCalculator {
                 Optional<UserHealthProfile> profileOpt = userId != null ? healthProfileRepository.findByUserId(userId)
                                 : Optional.empty();
 
-                // Search product data for matching supplement in our knowledge base
-                String searchable = buildSearchString(product);
-                DosageInfo matched = null;
-                String matchedName = null;
+                AIDTO.DosageResponse response = buildDosage(product, profileOpt);
+                analyticsService.record(AIAnalyticsService.DOSAGE, userId, null, null, List.of(productId));
+                return response;
+        }
 
-                for (Map.Entry<String, DosageInfo> entry : DOSAGE_DB.entrySet()) {
-                        if (searchable.contains(entry.getKey().toLowerCase())) {
-                                matched = entry.getValue();
-                                matchedName = entry.getKey();
-                                break;
-                        }
+        /**
+         * Personalized dosages for every product in the user's cart plus a daily
+         * schedule that keeps interacting supplements in different time slots.
+         */
+        public AIDTO.CartDosageResponse calculateCartDosages(Long userId) {
+                List<Product> products = cartItemRepository.findByUserId(userId).stream()
+                                .map(CartItem::getProduct)
+                                .filter(distinctById())
+                                .collect(Collectors.toList());
+                Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
+
+                Map<Long, AIDTO.DosageResponse> dosages = new LinkedHashMap<>();
+                for (Product product : products) {
+                        dosages.put(product.getId(), buildDosage(product, profileOpt));
                 }
 
+                List<String> notes = new ArrayList<>();
+                List<AIDTO.ScheduleSlot> schedule = buildSchedule(products, dosages,
+                                interactionChecker.conflicts(products), notes);
+
+                analyticsService.record(AIAnalyticsService.DOSAGE, userId, null, null,
+                                new ArrayList<>(dosages.keySet()));
+                return AIDTO.CartDosageResponse.builder()
+                                .dosages(new ArrayList<>(dosages.values()))
+                                .schedule(schedule)
+                                .scheduleNotes(notes)
+                                .build();
+        }
+
+        private AIDTO.DosageResponse buildDosage(Product product, Optional<UserHealthProfile> profileOpt) {
+                // Knowledge base entry resolved when the product was written (see resolveMatch)
+                String matchedName = matchFor(product);
+                DosageInfo matched = matchedName != null ? DOSAGE_DB.get(matchedName) : null;
+
                 // Build response
                 AIDTO.DosageResponse.DosageResponseBuilder builder = AIDTO.DosageResponse.builder()
+                                .productId(product.getId())
                                 .productName(product.getName());
 
                 if (matched != null) {
@@ -140,6 +188,130 @@ public class DosageCalculator {
                 return builder.build();
         }
 
+        // ========== PRECOMPUTED PRODUCT → KNOWLEDGE BASE MATCH ==========
+
+        @EventListener(ApplicationReadyEvent.class)
+        public void warmUp() {
+                for (Product product : productRepository.findAll()) {
+                        resolveMatch(product);
+                }
+                log.info("Resolved dosage entries for {} products", dosageMatches.size());
+        }
+
+        @TransactionalEventListener(fallbackExecution = true)
+        public void onProductChanged(ProductChangedEvent event) {
+                if (event.isDeleted()) {
+                        dosageMatches.remove(event.getProductId());
+                } else {
+                        productRepository.findById(event.getProductId()).ifPresent(this::resolveMatch);
+                }
+        }
+
+        private String matchFor(Product product) {
+                DosageMatch cached = dosageMatches.get(product.getId());
+                if (cached != null && cached.version == productVersion(product)) {
+                        return cached.name;
+                }
+                return resolveMatch(product);
+        }
+
+        private String resolveMatch(Product product) {
+                // Search product data for matching supplement in our knowledge base
+                String searchable = buildSearchString(product);
+                String matchedName = null;
+                for (String name : DOSAGE_DB.keySet()) {
+                        if (searchable.contains(name.toLowerCase())) {
+                                matchedName = name;
+                                break;
+                        }
+                }
+                dosageMatches.put(product.getId(), new DosageMatch(productVersion(product), matchedName));
+                return matchedName;
+        }
+
+        private static int productVersion(Product p) {
+                return Objects.hash(p.getName(), p.getIngredients(), p.getTags());
+        }
+
+        // ========== CONFLICT-AWARE DAILY SCHEDULE ==========
+
+        private List<AIDTO.ScheduleSlot> buildSchedule(List<Product> products,
+                        Map<Long, AIDTO.DosageResponse> dosages, Map<Long, Set<Long>> conflicts,
+                        List<String> notes) {
+                Map<String, List<Product>> slots = new LinkedHashMap<>();
+                for (String slot : SLOTS) {
+                        slots.put(slot, new ArrayList<>());
+                }
+
+                // Products with a fixed timing are placed first, flexible ones fill in around them
+                List<Product> ordered = new ArrayList<>(products);
+                ordered.sort(Comparator.comparingInt(p -> preferredSlots(dosages.get(p.getId()).getTiming()).size()));
+
+                for (Product product : ordered) {
+                        Set<Long> avoid = conflicts.getOrDefault(product.getId(), Set.of());
+                        List<String> preferred = preferredSlots(dosages.get(product.getId()).getTiming());
+                        String chosen = null;
+                        for (String slot : preferred) {
+                                if (slots.get(slot).stream().noneMatch(p -> avoid.contains(p.getId()))) {
+                                        chosen = slot;
+                                        break;
+                                }
+                        }
+                        if (chosen == null) {
+                                // Fall back to any slot that keeps the conflicting products apart
+                                for (String slot : SLOTS) {
+                                        if (slots.get(slot).stream().noneMatch(p -> avoid.contains(p.getId()))) {
+                                                chosen = slot;
+                                                break;
+                                        }
+                                }
+                                if (chosen != null) {
+                                        notes.add(product.getName() + " moved to " + chosen
+                                                        + " to keep it apart from an interacting product");
+                                } else {
+                                        chosen = preferred.get(0);
+                                        notes.add(product.getName()
+                                                        + " could not be separated from every interacting product — space doses at least 2 hours apart");
+                                }
+                        }
+                        slots.get(chosen).add(product);
+                }
+
+                List<AIDTO.ScheduleSlot> schedule = new ArrayList<>();
+                for (Map.Entry<String, List<Product>> e : slots.entrySet()) {
+                        if (e.getValue().isEmpty())
+                                continue;
+                        schedule.add(AIDTO.ScheduleSlot.builder()
+                                        .slot(e.getKey())
+                                        .productIds(e.getValue().stream().map(Product::getId)
+                                                        .collect(Collectors.toList()))
+                                        .productNames(e.getValue().stream().map(Product::getName)
+                                                        .collect(Collectors.toList()))
+                                        .build());
+                }
+                return schedule;
+        }
+
+        private static List<String> preferredSlots(String timing) {
+                String t = timing != null ? timing.toLowerCase() : "";
+                if (t.contains("bed"))
+                        return List.of(BEDTIME);
+                if (t.contains("morning or evening"))
+                        return List.of(MORNING, EVENING);
+                if (t.contains("morning") || t.contains("empty stomach"))
+                        return List.of(MORNING);
+                if (t.contains("evening"))
+                        return List.of(EVENING);
+                if (t.contains("meal") || t.contains("food"))
+                        return List.of(MIDDAY, EVENING, MORNING);
+                return SLOTS; // "Any time", "As directed"
+        }
+
+        private static java.util.function.Predicate<Product> distinctById() {
+                Set<Long> seen = new HashSet<>();
+                return p -> seen.add(p.getId());
+        }
+
         private String generatePersonalizedNote(UserHealthProfile profile, String nutrient, Product product) {
                 List<String> notes = new ArrayList<>();
 
@@ -188,6 +360,16 @@ public class DosageCalculator {
         }
 
         // ===== Helper =====
+        private static class DosageMatch {
+                final int version;
+                final String name;
+
+                DosageMatch(int version, String name) {
+                        this.version = version;
+                        this.name = name;
+                }
+        }
+
         private static class DosageInfo {
                 String dosage;
                 String timing;
@@ -0,0 +1,33 @@
+package com.healthshop.ai;
+
+/**
+ * SQL form of {@link com.healthshop.model.GapStats#add}: the SET clauses that
+ * fold one more gap into the embedded Welford columns inside an upsert, so
+ * concurrent writers for the same row cannot lose a gap.
+ */
+final class GapStatsSql {
+
+    private GapStatsSql() {
+    }
+
+    /**
+     * SET clauses for {@code gap_count}, {@code gap_mean_days} and {@code gap_m2}.
+     * The gap is added only where {@code newer} holds; both expressions may refer
+     * to the existing row through {@code alias} and to the new values through EXCLUDED.
+     */
+    static String foldGap(String alias, String newer, String gapDays) {
+        String n = "(COALESCE(" + alias + ".gap_count, 0) + 1)";
+        String mean = "COALESCE(" + alias + ".gap_mean_days, 0)";
+        String delta = "(" + gapDays + " - " + mean + ")";
+        String newMean = "(" + mean + " + " + delta + " / " + n + ")";
+        return "gap_count = CASE WHEN " + newer + " THEN " + n + " ELSE " + alias + ".gap_count END, "
+                + "gap_mean_days = CASE WHEN " + newer + " THEN " + newMean + " ELSE " + alias + ".gap_mean_days END, "
+                + "gap_m2 = CASE WHEN " + newer + " THEN COALESCE(" + alias + ".gap_m2, 0) + " + delta + " * ("
+                + gapDays + " - " + newMean + ") ELSE " + alias + ".gap_m2 END";
+    }
+
+    // Whole hours between two timestamps, in days: ChronoUnit.HOURS.between(from, to) / 24.0
+    static String daysBetween(String from, String to) {
+        return "(FLOOR(EXTRACT(EPOCH FROM (" + to + " - " + from + ")) / 3600) / 24.0)";
+    }
+}
@@ -7,18 +7,27 @@ import com.healthshop.repository.*;
 import com.healthshop.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * AI Health Insights Engine
  * Aggregates health score, nutrition gap analysis, daily tips, and personalized
  * picks
- * into a comprehensive health dashboard.
+ * into a comprehensive health dashboard. The dashboard loads the user context
+ * once and runs its parts concurrently, each with its own timeout.
  */
 @Service
 @RequiredArgsConstructor
@@ -32,9 +41,15 @@ public class HealthInsightsEngine {
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     private final ProductService productService;
+    private final UserFeatureStore featureStore;
+    private final NutrientIndex nutrientIndex;
+    private final ThreadPoolTaskExecutor insightsPartExecutor;
+
+    @Value("${healthshop.insights.part-timeout-millis:3000}")
+    private long partTimeoutMillis;
 
     // ========== NUTRITION KNOWLEDGE BASE ==========
-    private static final Map<String, NutrientInfo> ESSENTIAL_NUTRIENTS = new LinkedHashMap<>();
+    static final Map<String, NutrientInfo> ESSENTIAL_NUTRIENTS = new LinkedHashMap<>();
     static {
         ESSENTIAL_NUTRIENTS.put("Vitamin D", new NutrientInfo("bone health, immunity, mood",
                 List.of("Bone Health", "Immunity", "Sleep"), "vitamin d"));
@@ -99,43 +114,95 @@ public class HealthInsightsEngine {
             tip("🍵", "Limit Caffeine After 2PM",
                     "Late caffeine interferes with sleep quality and melatonin production.", "sleep"));
 
+    // No surrounding transaction: the parts run on pool threads and would otherwise
+    // pin this request's connection while waiting for them
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AIDTO.HealthInsightsResponse getHealthInsights(Long userId) {
         log.info("Generating health insights for user: {}", userId);
 
-        // Health score
-        AIDTO.HealthScoreResponse healthScore = healthScoreCalculator.calculateHealthScore(userId);
-
-        // Purchase insights
-        AIDTO.PurchaseInsights purchaseInsights = purchasePatternAnalyzer.analyzePurchasePattern(userId);
+        // One load shared by all five parts, which then run concurrently
+        UserHealthContext context = loadContext(userId);
+        List<String> unavailable = Collections.synchronizedList(new ArrayList<>());
 
+        CompletableFuture<AIDTO.HealthScoreResponse> healthScore = part("healthScore", unavailable,
+                () -> healthScoreCalculator.calculateHealthScore(context.getFeatures()), null);
+        CompletableFuture<AIDTO.PurchaseInsights> purchaseInsights = part("purchaseInsights", unavailable,
+                () -> purchasePatternAnalyzer.analyzePurchasePattern(context), null);
         // Personalized picks (products not yet purchased but matching goals)
-        List<ProductDTO.ProductResponse> personalizedPicks = getPersonalizedPicks(userId);
-
+        CompletableFuture<List<ProductDTO.ProductResponse>> personalizedPicks = part("personalizedPicks",
+                unavailable, () -> getPersonalizedPicks(context), List.of());
         // Daily tips (rotate based on day of year for variety)
-        List<AIDTO.HealthTip> dailyTips = getDailyTips(userId);
+        CompletableFuture<List<AIDTO.HealthTip>> dailyTips = part("dailyTips", unavailable,
+                () -> getDailyTips(context), List.of());
+        CompletableFuture<AIDTO.NutritionGapAnalysis> nutritionGaps = part("nutritionGaps", unavailable,
+                () -> analyzeNutritionGaps(context), null);
 
-        // Nutrition gap analysis
-        AIDTO.NutritionGapAnalysis nutritionGaps = analyzeNutritionGaps(userId);
+        CompletableFuture.allOf(healthScore, purchaseInsights, personalizedPicks, dailyTips, nutritionGaps).join();
 
         return AIDTO.HealthInsightsResponse.builder()
-                .healthScore(healthScore)
-                .purchaseInsights(purchaseInsights)
-                .personalizedPicks(personalizedPicks)
-                .dailyTips(dailyTips)
-                .nutritionGaps(nutritionGaps)
+                .healthScore(healthScore.join())
+                .purchaseInsights(purchaseInsights.join())
+                .personalizedPicks(personalizedPicks.join())
+                .dailyTips(dailyTips.join())
+                .nutritionGaps(nutritionGaps.join())
+                .unavailableParts(unavailable.isEmpty() ? null : List.copyOf(unavailable))
                 .build();
     }
 
-    public List<ProductDTO.ProductResponse> getPersonalizedPicks(Long userId) {
-        Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
+    /**
+     * Profile, feature record and purchased products for one user.
+     */
+    public UserHealthContext loadContext(Long userId) {
+        UserHealthProfile profile = healthProfileRepository.findByUserId(userId).orElse(null);
+        UserFeatureStore.UserFeatures features = featureStore.get(userId);
         List<Long> purchasedIds = orderRepository.findProductIdsPurchasedByUser(userId);
-        Set<Long> purchasedSet = new HashSet<>(purchasedIds);
+        Map<Long, Product> products = productRepository.findAllById(new HashSet<>(purchasedIds)).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return new UserHealthContext(userId, profile, features, purchasedIds, products);
+    }
+
+    // Runs one dashboard part on its own pool; on timeout, failure or a full pool it
+    // is reported as unavailable and the fallback is used instead. A timed-out part
+    // is cancelled and its thread interrupted, so stalled parts do not pile up
+    private <T> CompletableFuture<T> part(String name, List<String> unavailable, Supplier<T> task, T fallback) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = insightsPartExecutor.submit(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running = null;
+            result.completeExceptionally(e);
+        }
+        Future<?> submitted = running;
+        return result
+                .orTimeout(partTimeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    if (submitted != null)
+                        submitted.cancel(true);
+                    log.warn("Health insights part '{}' unavailable: {}", name, e.toString());
+                    unavailable.add(name);
+                    return fallback;
+                });
+    }
+
+    public List<ProductDTO.ProductResponse> getPersonalizedPicks(Long userId) {
+        return getPersonalizedPicks(loadContext(userId));
+    }
+
+    private List<ProductDTO.ProductResponse> getPersonalizedPicks(UserHealthContext context) {
+        Set<Long> purchasedSet = new HashSet<>(context.getPurchasedProductIds());
 
-        if (profileOpt.isEmpty() || profileOpt.get().getHealthGoals() == null) {
+        if (!context.hasHealthGoals()) {
             return productService.getTrendingProducts().stream().limit(6).collect(Collectors.toList());
         }
 
-        UserHealthProfile profile = profileOpt.get();
+        UserHealthProfile profile = context.getProfile();
         String[] goals = profile.getHealthGoals().split(",");
         List<ProductDTO.ProductResponse> picks = new ArrayList<>();
 
@@ -157,8 +224,14 @@ public class HealthInsightsEngine {
     }
 
     public List<AIDTO.HealthTip> getDailyTips(Long userId) {
-        Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
+        return getDailyTips(healthProfileRepository.findByUserId(userId));
+    }
+
+    private List<AIDTO.HealthTip> getDailyTips(UserHealthContext context) {
+        return getDailyTips(Optional.ofNullable(context.getProfile()));
+    }
 
+    private List<AIDTO.HealthTip> getDailyTips(Optional<UserHealthProfile> profileOpt) {
         // Use day-of-year to rotate tips
         int dayIndex = LocalDate.now().getDayOfYear();
 
@@ -187,24 +260,18 @@ public class HealthInsightsEngine {
     }
 
     public AIDTO.NutritionGapAnalysis analyzeNutritionGaps(Long userId) {
-        List<Long> purchasedIds = orderRepository.findProductIdsPurchasedByUser(userId);
-        Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
-
-        // Determine which nutrients the user's purchases already cover
-        Set<String> coveredNutrients = new HashSet<>();
-        for (Long pid : purchasedIds) {
-            productRepository.findById(pid).ifPresent(p -> {
-                String searchable = ((p.getName() != null ? p.getName() : "") + " " +
-                        (p.getIngredients() != null ? p.getIngredients() : "") + " " +
-                        (p.getTags() != null ? p.getTags() : "")).toLowerCase();
-                for (Map.Entry<String, NutrientInfo> entry : ESSENTIAL_NUTRIENTS.entrySet()) {
-                    for (String keyword : entry.getValue().keywords.split(",")) {
-                        if (searchable.contains(keyword.trim())) {
-                            coveredNutrients.add(entry.getKey());
-                        }
-                    }
-                }
-            });
+        return analyzeNutritionGaps(loadContext(userId));
+    }
+
+    private AIDTO.NutritionGapAnalysis analyzeNutritionGaps(UserHealthContext context) {
+        List<Long> purchasedIds = context.getPurchasedProductIds();
+        Optional<UserHealthProfile> profileOpt = Optional.ofNullable(context.getProfile());
+
+        // Determine which nutrients the user's purchases already cover (OR of product masks)
+        int coveredMask = 0;
+        for (Product p : context.getPurchasedProducts().values()) {
+            Integer mask = nutrientIndex.nutrientMask(p.getId());
+            coveredMask |= mask != null ? mask : NutrientIndex.maskOf(p);
         }
 
         // Determine relevant nutrients based on health goals
@@ -228,7 +295,7 @@ public class HealthInsightsEngine {
         int[] demoFulfillments = { 10, 22, 35, 8, 18, 28, 42, 12, 25, 30 };
         int idx = 0;
         for (String nutrient : relevantNutrients) {
-            boolean covered = coveredNutrients.contains(nutrient);
+            boolean covered = (coveredMask & NutrientIndex.bitOf(nutrient)) != 0;
             NutrientInfo info = ESSENTIAL_NUTRIENTS.get(nutrient);
             String status;
             int fulfillment;
@@ -269,25 +336,26 @@ public class HealthInsightsEngine {
                     .build());
         }
 
-        // Suggest products for uncovered nutrients
-        List<ProductDTO.ProductResponse> suggestions = new ArrayList<>();
+        // Suggest products for uncovered nutrients: walk each gap's ranked posting list
+        List<Long> suggestionIds = new ArrayList<>();
         Set<Long> purchasedSet = new HashSet<>(purchasedIds);
         for (AIDTO.NutritionGap gap : gaps) {
             if ("low".equals(gap.getCurrentStatus()) || "deficient".equals(gap.getCurrentStatus())) {
-                NutrientInfo info = ESSENTIAL_NUTRIENTS.get(gap.getNutrient());
-                if (info != null) {
-                    for (String keyword : info.keywords.split(",")) {
-                        List<Product> matches = productRepository.findByTag(keyword.trim());
-                        for (Product p : matches) {
-                            if (!purchasedSet.contains(p.getId()) && suggestions.size() < 8) {
-                                suggestions.add(productService.toResponse(p));
-                                purchasedSet.add(p.getId());
-                            }
-                        }
-                    }
+                for (long id : productIdsForNutrient(gap.getNutrient())) {
+                    if (suggestionIds.size() >= 8)
+                        break;
+                    if (purchasedSet.add(id))
+                        suggestionIds.add(id);
                 }
             }
         }
+        Map<Long, Product> suggested = productRepository.findAllById(suggestionIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        List<ProductDTO.ProductResponse> suggestions = suggestionIds.stream()
+                .map(suggested::get)
+                .filter(Objects::nonNull)
+                .map(productService::toResponse)
+                .collect(Collectors.toList());
 
         return AIDTO.NutritionGapAnalysis.builder()
                 .gaps(gaps)
@@ -295,6 +363,17 @@ public class HealthInsightsEngine {
                 .build();
     }
 
+    // Falls back to keyword LIKE scans until the nutrient index is built
+    private long[] productIdsForNutrient(String nutrient) {
+        if (nutrientIndex.isReady())
+            return nutrientIndex.productIdsForNutrient(nutrient);
+        return Arrays.stream(ESSENTIAL_NUTRIENTS.get(nutrient).keywords.split(","))
+                .flatMap(keyword -> productRepository.findByTag(keyword.trim()).stream())
+                .mapToLong(Product::getId)
+                .distinct()
+                .toArray();
+    }
+
     private boolean isRelatedToGoals(AIDTO.HealthTip tip, String goals) {
         if ("fitness".equals(tip.getCategory()) && (goals.contains("fitness") || goals.contains("weight")))
             return true;
@@ -322,7 +401,7 @@ public class HealthInsightsEngine {
     }
 
     // Helper class
-    private static class NutrientInfo {
+    static class NutrientInfo {
         String description;
         List<String> relatedGoals;
         String keywords;
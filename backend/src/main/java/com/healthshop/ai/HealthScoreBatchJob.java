@@ -0,0 +1,270 @@
+package com.healthshop.ai;
+
+import com.healthshop.dto.AIDTO;
+import com.healthshop.model.UserHealthProfile;
+import com.healthshop.repository.OrderItemRepository;
+import com.healthshop.repository.UserHealthProfileRepository;
+import com.healthshop.repository.UserHealthScoreRepository;
+import com.healthshop.repository.UserRepository;
+import com.healthshop.service.HealthScoreHistoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Health Score Batch Job
+ * Nightly job that scores every user. User ids are split into keyset
+ * partitions scored in parallel on a fork-join pool; each partition streams its
+ * users' order lines and profiles in two queries, scores them in memory and
+ * upserts {@code user_health_scores}. A semaphore bounds how many partitions
+ * touch the database at once. Also appends the day's health-score history and
+ * keeps the score distribution shown on the AI admin page.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HealthScoreBatchJob {
+
+    private static final int PARTITION_SIZE = 500;
+    private static final String UPSERT_SQL = "INSERT INTO user_health_scores (user_id, overall_score, grade, "
+            + "profile_completeness, goal_alignment, nutrition_coverage, purchase_consistency, product_diversity, "
+            + "computed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (user_id) DO UPDATE SET "
+            + "overall_score = EXCLUDED.overall_score, grade = EXCLUDED.grade, "
+            + "profile_completeness = EXCLUDED.profile_completeness, goal_alignment = EXCLUDED.goal_alignment, "
+            + "nutrition_coverage = EXCLUDED.nutrition_coverage, purchase_consistency = EXCLUDED.purchase_consistency, "
+            + "product_diversity = EXCLUDED.product_diversity, computed_at = EXCLUDED.computed_at";
+    private static final List<String> GRADES = List.of("A+", "A", "B+", "B", "C", "D");
+
+    private final UserRepository userRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final UserHealthProfileRepository healthProfileRepository;
+    private final UserHealthScoreRepository userHealthScoreRepository;
+    private final UserFeatureStore featureStore;
+    private final HealthScoreCalculator healthScoreCalculator;
+    private final HealthScoreHistoryService healthScoreHistoryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor healthScoreBatchExecutor;
+
+    @Value("${healthshop.health-score.batch-db-concurrency:4}")
+    private int dbConcurrency;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress;
+    private volatile AIDTO.HealthScoreDistribution distribution;
+
+    @Scheduled(cron = "${healthshop.health-score.batch-cron:0 30 2 * * *}")
+    public void runScheduled() {
+        run();
+    }
+
+    /**
+     * Start a run in the background. Returns false if one is already running.
+     */
+    public boolean start() {
+        if (running.get())
+            return false;
+        try {
+            healthScoreBatchExecutor.execute(this::run);
+        } catch (TaskRejectedException e) {
+            return false; // the previous run is still winding down
+        }
+        return true;
+    }
+
+    public void run() {
+        if (!running.compareAndSet(false, true))
+            return;
+        Progress p = new Progress(userRepository.count());
+        progress = p;
+        AtomicLongArray histogram = new AtomicLongArray(101); // users per overall score
+        LocalDate today = LocalDate.now();
+        Semaphore dbPermits = new Semaphore(Math.max(1, dbConcurrency));
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<ForkJoinTask<?>> partitions = new ArrayList<>();
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = userRepository.findIdsAfter(afterId, PageRequest.of(0, PARTITION_SIZE));
+                if (ids.isEmpty())
+                    break;
+                afterId = ids.get(ids.size() - 1);
+                partitions.add(pool.submit(() -> scorePartition(ids, today, dbPermits, histogram, p)));
+            }
+            for (ForkJoinTask<?> task : partitions)
+                task.join();
+            distribution = distribution(histogram, LocalDateTime.now());
+            log.info("Scored {} users ({} failed) in {} partitions in {} ms", p.processed.get(), p.failed.get(),
+                    partitions.size(), Duration.between(p.startedAt, LocalDateTime.now()).toMillis());
+        } catch (Exception e) {
+            log.error("Health score batch failed: {}", e.getMessage(), e);
+        } finally {
+            pool.shutdown();
+            p.finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    public AIDTO.HealthScoreBatchStatus status() {
+        Progress p = progress;
+        if (p == null)
+            return AIDTO.HealthScoreBatchStatus.builder().running(running.get()).build();
+        long done = p.processed.get() + p.failed.get();
+        return AIDTO.HealthScoreBatchStatus.builder()
+                .running(running.get())
+                .startedAt(p.startedAt)
+                .finishedAt(p.finishedAt)
+                .totalUsers(p.totalUsers)
+                .processedUsers(p.processed.get())
+                .failedUsers(p.failed.get())
+                .partitionsDone(p.partitionsDone.get())
+                .percentComplete(p.totalUsers == 0 ? 100.0
+                        : Math.min(100.0, Math.round(done * 1000.0 / p.totalUsers) / 10.0))
+                .build();
+    }
+
+    /**
+     * Distribution of the latest batch results; read from the persisted scores
+     * after a restart. Null if no user has been scored yet.
+     */
+    public AIDTO.HealthScoreDistribution distribution() {
+        AIDTO.HealthScoreDistribution current = distribution;
+        if (current != null)
+            return current;
+        AtomicLongArray histogram = new AtomicLongArray(101);
+        for (Object[] row : userHealthScoreRepository.countByOverallScore()) {
+            int score = Math.max(0, Math.min(100, (Integer) row[0]));
+            histogram.addAndGet(score, (Long) row[1]);
+        }
+        current = distribution(histogram, userHealthScoreRepository.findLatestComputedAt());
+        distribution = current;
+        return current;
+    }
+
+    private void scorePartition(List<Long> userIds, LocalDate day, Semaphore dbPermits, AtomicLongArray histogram,
+            Progress p) {
+        try {
+            Map<Long, UserFeatureStore.UserFeatures> features;
+            dbPermits.acquire();
+            try {
+                Map<Long, UserHealthProfile> profiles = healthProfileRepository.findByUserIdIn(userIds).stream()
+                        .collect(Collectors.toMap(hp -> hp.getUser().getId(), hp -> hp));
+                Map<Long, List<Object[]>> rows = new HashMap<>();
+                for (Object[] row : orderItemRepository.findPurchaseRowsByUsers(userIds)) {
+                    rows.computeIfAbsent((Long) row[0], k -> new ArrayList<>())
+                            .add(new Object[] { row[1], row[2], row[3] });
+                }
+                features = new HashMap<>();
+                for (Long userId : userIds) {
+                    features.put(userId,
+                            featureStore.compute(profiles.get(userId), rows.getOrDefault(userId, List.of())));
+                }
+            } finally {
+                dbPermits.release();
+            }
+
+            Map<Long, int[]> vectors = new HashMap<>();
+            List<Object[]> upserts = new ArrayList<>();
+            Timestamp computedAt = Timestamp.valueOf(LocalDateTime.now());
+            for (Long userId : userIds) {
+                try {
+                    int[] v = healthScoreCalculator.scoreVector(features.get(userId));
+                    vectors.put(userId, v);
+                    upserts.add(new Object[] { userId, v[0], HealthScoreCalculator.computeGrade(v[0]),
+                            v[1], v[2], v[3], v[4], v[5], computedAt });
+                    histogram.incrementAndGet(Math.max(0, Math.min(100, v[0])));
+                } catch (Exception e) {
+                    p.failed.incrementAndGet();
+                    log.warn("Could not score user {}: {}", userId, e.getMessage());
+                }
+            }
+
+            dbPermits.acquire();
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+                healthScoreHistoryService.record(vectors, day);
+            } finally {
+                dbPermits.release();
+            }
+            p.processed.addAndGet(vectors.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.failed.addAndGet(userIds.size());
+        } catch (Exception e) {
+            p.failed.addAndGet(userIds.size());
+            log.warn("Health score partition starting at user {} failed: {}", userIds.get(0), e.getMessage());
+        } finally {
+            p.partitionsDone.incrementAndGet();
+        }
+    }
+
+    private static AIDTO.HealthScoreDistribution distribution(AtomicLongArray histogram, LocalDateTime computedAt) {
+        long total = 0;
+        long sum = 0;
+        long[] grades = new long[GRADES.size()];
+        for (int score = 0; score <= 100; score++) {
+            long n = histogram.get(score);
+            total += n;
+            sum += n * score;
+            grades[GRADES.indexOf(HealthScoreCalculator.computeGrade(score))] += n;
+        }
+        if (total == 0)
+            return null;
+        List<AIDTO.LabelValue> gradeHistogram = new ArrayList<>();
+        for (int g = 0; g < GRADES.size(); g++)
+            gradeHistogram.add(new AIDTO.LabelValue(GRADES.get(g), grades[g]));
+        return AIDTO.HealthScoreDistribution.builder()
+                .usersScored(total)
+                .mean(Math.round(sum * 10.0 / total) / 10.0)
+                .p10(percentile(histogram, total, 0.10))
+                .p25(percentile(histogram, total, 0.25))
+                .median(percentile(histogram, total, 0.50))
+                .p75(percentile(histogram, total, 0.75))
+                .p90(percentile(histogram, total, 0.90))
+                .gradeHistogram(gradeHistogram)
+                .computedAt(computedAt)
+                .build();
+    }
+
+    // Nearest-rank percentile over the score histogram
+    private static int percentile(AtomicLongArray histogram, long total, double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int score = 0; score <= 100; score++) {
+            seen += histogram.get(score);
+            if (seen >= rank)
+                return score;
+        }
+        return 100;
+    }
+
+    private static final class Progress {
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long totalUsers;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicInteger partitionsDone = new AtomicInteger();
+        volatile LocalDateTime finishedAt;
+
+        Progress(long totalUsers) {
+            this.totalUsers = totalUsers;
+        }
+    }
+}
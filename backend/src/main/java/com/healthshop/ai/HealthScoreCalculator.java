@@ -3,7 +3,7 @@ package com.healthshop.ai;
 import com.healthshop.dto.AIDTO;
 import com.healthshop.dto.ProductDTO;
 import com.healthshop.model.*;
-import com.healthshop.repository.*;
+import com.healthshop.repository.ProductRepository;
 import com.healthshop.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,7 +16,8 @@ import java.util.stream.Collectors;
 /**
  * AI Health Score Calculator
  * Computes a composite health score based on user profile, purchase history,
- * and health goals.
+ * and health goals. Scoring reads the user's cached feature record from
+ * {@link UserFeatureStore}.
  */
 @Service
 @RequiredArgsConstructor
@@ -24,13 +25,23 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class HealthScoreCalculator {
 
-    private final UserHealthProfileRepository healthProfileRepository;
-    private final OrderRepository orderRepository;
+    private final UserFeatureStore featureStore;
     private final ProductRepository productRepository;
     private final ProductService productService;
 
+    // ========== SCORE DIMENSIONS ==========
+    public static final List<String> DIMENSIONS = List.of("Profile Completeness", "Goal Alignment",
+            "Nutrition Coverage", "Purchase Consistency", "Product Diversity");
+
+    private static final List<String> DIMENSION_TIPS = List.of(
+            "How complete your health profile is for better AI recommendations",
+            "How well your purchases align with your health goals",
+            "How well your supplements cover nutritional needs",
+            "How regularly you maintain your health supplement routine",
+            "Variety of health categories in your purchases");
+
     // ========== NUTRIENT IMPORTANCE BY GOAL ==========
-    private static final Map<String, List<String>> GOAL_NUTRIENTS = new LinkedHashMap<>();
+    static final Map<String, List<String>> GOAL_NUTRIENTS = new LinkedHashMap<>();
     static {
         GOAL_NUTRIENTS.put("Heart Health", List.of("Omega-3", "CoQ10", "Magnesium", "Fiber", "Garlic"));
         GOAL_NUTRIENTS.put("Immunity", List.of("Vitamin C", "Zinc", "Vitamin D", "Elderberry", "Echinacea"));
@@ -52,38 +63,24 @@ public class HealthScoreCalculator {
 
     public AIDTO.HealthScoreResponse calculateHealthScore(Long userId) {
         log.info("Calculating health score for user: {}", userId);
+        return calculateHealthScore(featureStore.get(userId));
+    }
 
-        Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
-        List<Long> purchasedProductIds = orderRepository.findProductIdsPurchasedByUser(userId);
-
-        // Dimension scores
-        int profileCompleteness = calculateProfileCompleteness(profileOpt.orElse(null));
-        int goalAlignment = calculateGoalAlignment(profileOpt.orElse(null), purchasedProductIds);
-        int nutritionCoverage = calculateNutritionCoverage(profileOpt.orElse(null), purchasedProductIds);
-        int consistencyScore = calculateConsistencyScore(userId);
-        int diversityScore = calculateDiversityScore(purchasedProductIds);
-
-        List<AIDTO.ScoreDimension> dimensions = List.of(
-                buildDimension("Profile Completeness", profileCompleteness,
-                        "How complete your health profile is for better AI recommendations"),
-                buildDimension("Goal Alignment", goalAlignment,
-                        "How well your purchases align with your health goals"),
-                buildDimension("Nutrition Coverage", nutritionCoverage,
-                        "How well your supplements cover nutritional needs"),
-                buildDimension("Purchase Consistency", consistencyScore,
-                        "How regularly you maintain your health supplement routine"),
-                buildDimension("Product Diversity", diversityScore,
-                        "Variety of health categories in your purchases"));
+    public AIDTO.HealthScoreResponse calculateHealthScore(UserFeatureStore.UserFeatures features) {
+        int[] scores = dimensionScores(features);
+        List<AIDTO.ScoreDimension> dimensions = new ArrayList<>();
+        for (int d = 0; d < DIMENSIONS.size(); d++) {
+            dimensions.add(buildDimension(DIMENSIONS.get(d), scores[d], DIMENSION_TIPS.get(d)));
+        }
 
-        int overall = (int) dimensions.stream().mapToInt(AIDTO.ScoreDimension::getScore).average().orElse(0);
+        int overall = overallScore(scores);
         String grade = computeGrade(overall);
 
         // Generate improvement suggestions
-        List<String> improvements = generateImprovements(dimensions, profileOpt.orElse(null));
+        List<String> improvements = generateImprovements(dimensions, features.isHasProfile());
 
         // Recommended products to improve score
-        List<ProductDTO.ProductResponse> recommended = getScoreImprovementProducts(profileOpt.orElse(null),
-                purchasedProductIds);
+        List<ProductDTO.ProductResponse> recommended = getScoreImprovementProducts(features);
 
         return AIDTO.HealthScoreResponse.builder()
                 .overallScore(overall)
@@ -95,116 +92,92 @@ public class HealthScoreCalculator {
                 .build();
     }
 
-    private int calculateProfileCompleteness(UserHealthProfile profile) {
-        if (profile == null)
-            return 10;
-        int score = 10; // base for having a profile
-        if (profile.getAge() != null)
-            score += 15;
-        if (profile.getGender() != null && !profile.getGender().isEmpty())
-            score += 10;
-        if (profile.getHeight() != null)
-            score += 10;
-        if (profile.getWeight() != null)
-            score += 10;
-        if (profile.getHealthGoals() != null && !profile.getHealthGoals().isEmpty())
-            score += 20;
-        if (profile.getAllergies() != null && !profile.getAllergies().isEmpty())
-            score += 10;
-        if (profile.getDietaryPreferences() != null && !profile.getDietaryPreferences().isEmpty())
-            score += 10;
-        if (profile.getMedicalConditions() != null && !profile.getMedicalConditions().isEmpty())
-            score += 5;
-        return Math.min(100, score);
+    /**
+     * Overall score followed by the dimension scores in {@link #DIMENSIONS} order.
+     * Skips the product suggestions, for batch snapshots.
+     */
+    public int[] scoreVector(Long userId) {
+        return scoreVector(featureStore.get(userId));
     }
 
-    private int calculateGoalAlignment(UserHealthProfile profile, List<Long> purchasedIds) {
-        if (profile == null || profile.getHealthGoals() == null || purchasedIds.isEmpty())
-            return 45;
+    public int[] scoreVector(UserFeatureStore.UserFeatures features) {
+        int[] scores = dimensionScores(features);
+        int[] vector = new int[scores.length + 1];
+        vector[0] = overallScore(scores);
+        System.arraycopy(scores, 0, vector, 1, scores.length);
+        return vector;
+    }
 
-        String[] goals = profile.getHealthGoals().split(",");
-        int aligned = 0;
-        int total = 0;
+    public static String computeGrade(int score) {
+        if (score >= 90)
+            return "A+";
+        if (score >= 80)
+            return "A";
+        if (score >= 70)
+            return "B+";
+        if (score >= 60)
+            return "B";
+        if (score >= 50)
+            return "C";
+        return "D";
+    }
 
-        for (Long pid : purchasedIds) {
-            Optional<Product> prod = productRepository.findById(pid);
-            if (prod.isPresent() && prod.get().getHealthGoals() != null) {
-                total++;
-                for (String goal : goals) {
-                    if (prod.get().getHealthGoals().toLowerCase().contains(goal.trim().toLowerCase())) {
-                        aligned++;
-                        break;
-                    }
-                }
-            }
-        }
-        if (total == 0)
-            return 50;
-        return Math.min(100, (int) ((aligned / (double) total) * 100));
+    // Scores in DIMENSIONS order
+    private int[] dimensionScores(UserFeatureStore.UserFeatures f) {
+        return new int[] {
+                f.getProfileCompleteness(),
+                calculateGoalAlignment(f),
+                calculateNutritionCoverage(f),
+                calculateConsistencyScore(f),
+                calculateDiversityScore(f)
+        };
     }
 
-    private int calculateNutritionCoverage(UserHealthProfile profile, List<Long> purchasedIds) {
-        if (profile == null || profile.getHealthGoals() == null)
-            return 45;
+    private int overallScore(int[] scores) {
+        return (int) Arrays.stream(scores).average().orElse(0);
+    }
 
-        String[] goals = profile.getHealthGoals().split(",");
-        Set<String> neededNutrients = new HashSet<>();
-        for (String goal : goals) {
-            List<String> nutrients = GOAL_NUTRIENTS.get(goal.trim());
-            if (nutrients != null)
-                neededNutrients.addAll(nutrients);
-        }
-        if (neededNutrients.isEmpty())
+    private int calculateGoalAlignment(UserFeatureStore.UserFeatures f) {
+        if (f.getHealthGoals().isEmpty() || f.getLineCount() == 0)
+            return 45;
+        if (f.getGoalTaggedLines() == 0)
             return 50;
+        return Math.min(100, (int) ((f.getGoalAlignedLines() / (double) f.getGoalTaggedLines()) * 100));
+    }
 
-        Set<String> coveredNutrients = new HashSet<>();
-        for (Long pid : purchasedIds) {
-            Optional<Product> prod = productRepository.findById(pid);
-            prod.ifPresent(p -> {
-                String searchable = ((p.getName() != null ? p.getName() : "") + " " +
-                        (p.getIngredients() != null ? p.getIngredients() : "") + " " +
-                        (p.getTags() != null ? p.getTags() : "")).toLowerCase();
-                for (String nutrient : neededNutrients) {
-                    if (searchable.contains(nutrient.toLowerCase())) {
-                        coveredNutrients.add(nutrient);
-                    }
-                }
-            });
-        }
-
-        return Math.min(100, (int) ((coveredNutrients.size() / (double) neededNutrients.size()) * 100));
+    private int calculateNutritionCoverage(UserFeatureStore.UserFeatures f) {
+        if (f.getHealthGoals().isEmpty())
+            return 45;
+        int needed = f.getNeededNutrients().cardinality();
+        if (needed == 0)
+            return 50;
+        return Math.min(100, (int) ((f.getCoveredNeededNutrientCount() / (double) needed) * 100));
     }
 
-    private int calculateConsistencyScore(Long userId) {
-        List<Long> purchasedIds = orderRepository.findProductIdsPurchasedByUser(userId);
-        if (purchasedIds.isEmpty())
+    private int calculateConsistencyScore(UserFeatureStore.UserFeatures f) {
+        int lines = f.getLineCount();
+        if (lines == 0)
             return 60; // demo: moderate consistency
-        if (purchasedIds.size() >= 10)
+        if (lines >= 10)
             return 95;
-        if (purchasedIds.size() >= 5)
+        if (lines >= 5)
             return 80;
-        if (purchasedIds.size() >= 3)
+        if (lines >= 3)
             return 65;
         return 45;
     }
 
-    private int calculateDiversityScore(List<Long> purchasedIds) {
-        if (purchasedIds.isEmpty())
+    private int calculateDiversityScore(UserFeatureStore.UserFeatures f) {
+        if (f.getLineCount() == 0)
             return 55; // demo: moderate diversity
-        Set<Long> categories = new HashSet<>();
-        for (Long pid : purchasedIds) {
-            productRepository.findById(pid).ifPresent(p -> {
-                if (p.getCategory() != null)
-                    categories.add(p.getCategory().getId());
-            });
-        }
-        if (categories.size() >= 5)
+        int categories = f.getCategoryCounts().size();
+        if (categories >= 5)
             return 95;
-        if (categories.size() >= 4)
+        if (categories >= 4)
             return 80;
-        if (categories.size() >= 3)
+        if (categories >= 3)
             return 65;
-        if (categories.size() >= 2)
+        if (categories >= 2)
             return 55;
         return 40;
     }
@@ -224,20 +197,6 @@ public class HealthScoreCalculator {
                 .name(name).score(score).status(status).tip(tip).build();
     }
 
-    private String computeGrade(int score) {
-        if (score >= 90)
-            return "A+";
-        if (score >= 80)
-            return "A";
-        if (score >= 70)
-            return "B+";
-        if (score >= 60)
-            return "B";
-        if (score >= 50)
-            return "C";
-        return "D";
-    }
-
     private String generateSummary(int score, String grade) {
         if (score >= 80)
             return "Excellent! Your health supplement routine is well-optimized. Keep it up!";
@@ -248,7 +207,7 @@ public class HealthScoreCalculator {
         return "Your wellness journey is just beginning! Complete your health profile, set your goals, and explore products aligned with your needs.";
     }
 
-    private List<String> generateImprovements(List<AIDTO.ScoreDimension> dimensions, UserHealthProfile profile) {
+    private List<String> generateImprovements(List<AIDTO.ScoreDimension> dimensions, boolean hasProfile) {
         List<String> improvements = new ArrayList<>();
         for (AIDTO.ScoreDimension dim : dimensions) {
             if (dim.getScore() < 60) {
@@ -269,24 +228,22 @@ public class HealthScoreCalculator {
                 }
             }
         }
-        if (profile == null) {
+        if (!hasProfile) {
             improvements.add(0, "🚀 Create your health profile to unlock personalized AI recommendations");
         }
         return improvements;
     }
 
-    private List<ProductDTO.ProductResponse> getScoreImprovementProducts(UserHealthProfile profile,
-            List<Long> purchasedIds) {
-        if (profile == null || profile.getHealthGoals() == null) {
+    private List<ProductDTO.ProductResponse> getScoreImprovementProducts(UserFeatureStore.UserFeatures f) {
+        if (f.getHealthGoals().isEmpty()) {
             return productService.getFeaturedProducts().stream().limit(6).collect(Collectors.toList());
         }
 
-        String[] goals = profile.getHealthGoals().split(",");
-        Set<Long> purchasedSet = new HashSet<>(purchasedIds);
+        Set<Long> purchasedSet = f.getPurchasedProductIds();
         List<ProductDTO.ProductResponse> results = new ArrayList<>();
 
-        for (String goal : goals) {
-            List<Product> products = productRepository.findByHealthGoal(goal.trim());
+        for (String goal : f.getHealthGoals()) {
+            List<Product> products = productRepository.findByHealthGoal(goal);
             for (Product p : products) {
                 if (!purchasedSet.contains(p.getId()) && results.size() < 8) {
                     results.add(productService.toResponse(p));
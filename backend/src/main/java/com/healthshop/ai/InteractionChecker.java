@@ -1,17 +1,35 @@
 package com.healthshop.ai;
 
+import com.healthshop.ai.InteractionRuleBase.Rule;
+import com.healthshop.ai.InteractionRuleBase.RuleSnapshot;
 import com.healthshop.dto.AIDTO;
+import com.healthshop.event.ProductChangedEvent;
 import com.healthshop.model.Product;
+import com.healthshop.repository.CartItemRepository;
+import com.healthshop.repository.OrderItemRepository;
 import com.healthshop.repository.ProductRepository;
+import com.healthshop.repository.UserHealthProfileRepository;
+import com.healthshop.service.AIAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * AI Drug/Supplement Interaction Checker
  * Checks for known interactions between supplements and medications.
+ * Each product is reduced once per version to a substance fingerprint — a bitset
+ * over the rule vocabulary — so every rule check is a pair of bit tests. Rules
+ * come from the hot-reloadable InteractionRuleBase snapshot. Both caches are
+ * keyed on the product's {@code @Version} column, never on a hash of its text,
+ * and products without a version are never cached.
  */
 @Service
 @RequiredArgsConstructor
@@ -19,94 +37,135 @@ import java.util.*;
 public class InteractionChecker {
 
     private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final UserHealthProfileRepository healthProfileRepository;
+    private final InteractionRuleBase ruleBase;
+    private final AIAnalyticsService analyticsService;
 
-    // ========== KNOWN INTERACTION DATABASE ==========
-    private static final List<InteractionRule> INTERACTION_RULES = new ArrayList<>();
-
-    static {
-        // Critical interactions
-        addRule("Vitamin K", "Warfarin", "critical",
-                "Vitamin K can reduce the effectiveness of blood thinners like Warfarin",
-                "Consult your doctor before combining. Maintain consistent Vitamin K intake.");
-        addRule("St. John's Wort", "Antidepressant", "critical",
-                "St. John's Wort can cause serotonin syndrome when combined with SSRIs/SNRIs",
-                "Do NOT combine. Consult your psychiatrist immediately.");
-        addRule("Ginkgo", "Blood Thinner", "critical",
-                "Ginkgo Biloba has blood-thinning properties that amplify anticoagulant effects",
-                "Avoid combination. Risk of excessive bleeding.");
-
-        // Moderate interactions
-        addRule("Calcium", "Iron", "moderate",
-                "Calcium can inhibit iron absorption when taken together",
-                "Take calcium and iron supplements at different times of day (at least 2 hours apart).");
-        addRule("Zinc", "Copper", "moderate",
-                "High-dose zinc can deplete copper levels over time",
-                "If taking zinc long-term, add a small copper supplement (2mg per 30mg zinc).");
-        addRule("Magnesium", "Antibiotics", "moderate",
-                "Magnesium can reduce absorption of certain antibiotics (tetracyclines, fluoroquinolones)",
-                "Take magnesium 2-3 hours before or after antibiotics.");
-        addRule("Fish Oil", "Blood Thinner", "moderate",
-                "Omega-3 fatty acids have mild blood-thinning effects",
-                "Monitor for unusual bruising. Inform your doctor about fish oil use.");
-        addRule("Vitamin E", "Blood Thinner", "moderate",
-                "High-dose Vitamin E may increase bleeding risk with anticoagulants",
-                "Limit Vitamin E to recommended dose. Consult doctor if on blood thinners.");
-        addRule("Turmeric", "Blood Thinner", "moderate",
-                "Curcumin in turmeric has anti-platelet properties",
-                "Use caution if on anticoagulants. Consult your doctor.");
-        addRule("Melatonin", "Blood Pressure Medication", "moderate",
-                "Melatonin may affect blood pressure regulation",
-                "Monitor blood pressure closely. Take melatonin at bedtime only.");
-
-        // Mild interactions
-        addRule("Vitamin C", "B12", "mild",
-                "High-dose Vitamin C may slightly reduce B12 absorption",
-                "Take at different times if using high-dose Vitamin C (>1000mg).");
-        addRule("Green Tea", "Iron", "mild",
-                "Tannins in green tea can reduce iron absorption",
-                "Drink green tea between meals rather than with iron-rich foods or supplements.");
-        addRule("Fiber", "Medication", "mild",
-                "High fiber can slow absorption of various medications",
-                "Take fiber supplements 1-2 hours away from medications.");
-
-        // Beneficial combinations
-        addBeneficial("Vitamin D", "Calcium", "Vitamin D enhances calcium absorption — great combination for bone health");
-        addBeneficial("Vitamin C", "Iron", "Vitamin C significantly boosts iron absorption");
-        addBeneficial("Vitamin D", "Magnesium", "Magnesium is required for Vitamin D activation in the body");
-        addBeneficial("Turmeric", "Black Pepper", "Piperine in black pepper increases curcumin absorption by up to 2000%");
-        addBeneficial("Probiotics", "Prebiotics", "Prebiotics feed probiotics for enhanced gut health (synbiotic effect)");
-        addBeneficial("Omega-3", "Vitamin E", "Vitamin E helps prevent oxidation of omega-3 fatty acids");
-        addBeneficial("CoQ10", "Omega-3", "Fat-soluble CoQ10 is better absorbed when taken with omega-3");
-        addBeneficial("B12", "Folate", "B12 and folate work synergistically for red blood cell production");
-        addBeneficial("Zinc", "Vitamin C", "Both support immune function through complementary pathways");
-    }
+    private static final int MAX_CACHED_FINGERPRINTS = 10_000;
+
+    // productId -> fingerprint of the product version it was computed from (LRU)
+    private final Map<Long, Fingerprint> fingerprintCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Fingerprint> eldest) {
+            return size() > MAX_CACHED_FINGERPRINTS;
+        }
+    };
+
+    private static final int MAX_CACHED_RESULTS = 1_000;
+    private static final int REGIMEN_LOOKBACK_DAYS = 90;
+
+    // canonical regimen key -> result (LRU)
+    private final Map<String, AIDTO.InteractionCheckResponse> resultCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AIDTO.InteractionCheckResponse> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
 
     public AIDTO.InteractionCheckResponse checkInteractions(AIDTO.InteractionCheckRequest request) {
         log.info("Checking interactions for {} products and {} medications",
                 request.getProductIds().size(),
                 request.getCurrentMedications() != null ? request.getCurrentMedications().size() : 0);
 
+        Map<Long, Product> byId = productRepository.findAllById(request.getProductIds()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
         List<Product> products = new ArrayList<>();
         for (Long id : request.getProductIds()) {
-            productRepository.findById(id).ifPresent(products::add);
+            Product p = byId.get(id);
+            if (p != null)
+                products.add(p);
         }
-
         List<String> medications = request.getCurrentMedications() != null ? request.getCurrentMedications() : List.of();
 
+        AIDTO.InteractionCheckResponse response = evaluate(products, medications);
+
+        analyticsService.record(AIAnalyticsService.INTERACTION_CHECK, null, null, response.getOverallRisk(),
+                products.stream().map(Product::getId).collect(Collectors.toList()));
+        return response;
+    }
+
+    /**
+     * Whole-regimen check: everything in the user's cart, everything bought in the
+     * last 90 days and the medical conditions stored on their health profile.
+     * Never joins the caller's transaction: at checkout a failure here must not
+     * mark the order transaction rollback-only.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.NOT_SUPPORTED)
+    public AIDTO.RegimenCheckResponse checkRegimen(Long userId) {
+        List<Long> cartIds = cartItemRepository.findByUserId(userId).stream()
+                .map(ci -> ci.getProduct().getId())
+                .distinct()
+                .collect(Collectors.toList());
+        List<Long> recentIds = orderItemRepository.findPurchasedProductIdsSince(userId,
+                LocalDateTime.now().minusDays(REGIMEN_LOOKBACK_DAYS));
+        List<String> medications = healthProfileRepository.findByUserId(userId)
+                .map(p -> parseList(p.getMedicalConditions()))
+                .orElse(List.of());
+
+        Set<Long> allIds = new LinkedHashSet<>(cartIds);
+        allIds.addAll(recentIds);
+        List<Product> products = productRepository.findAllById(allIds);
+
+        AIDTO.InteractionCheckResponse result = evaluate(products, medications);
+        analyticsService.record(AIAnalyticsService.INTERACTION_CHECK, userId, null, result.getOverallRisk(),
+                products.stream().map(Product::getId).collect(Collectors.toList()));
+
+        return AIDTO.RegimenCheckResponse.builder()
+                .cartProductIds(cartIds)
+                .recentProductIds(recentIds.stream().filter(id -> !cartIds.contains(id)).collect(Collectors.toList()))
+                .medications(medications)
+                .result(result)
+                .build();
+    }
+
+    /**
+     * Check a product set against a medication list in one pass over all pairs.
+     * Results are cached under a canonical key of the sorted product versions and
+     * medications, so repeated checks of the same regimen (e.g. at checkout) are free.
+     * Products are evaluated in id order, so warnings come out ordered by the
+     * product ids involved regardless of input order; a cached result is then
+     * identical for every ordering of the same regimen.
+     */
+    public AIDTO.InteractionCheckResponse evaluate(Collection<Product> productSet, List<String> medications) {
+        List<Product> products = productSet.stream()
+                .filter(distinctById())
+                .sorted(Comparator.comparing(Product::getId))
+                .collect(Collectors.toList());
+        RuleSnapshot rules = ruleBase.current();
+        String key = products.stream().allMatch(p -> p.getVersion() != null)
+                ? canonicalKey(rules, products, medications)
+                : null;
+        if (key != null) {
+            synchronized (resultCache) {
+                AIDTO.InteractionCheckResponse cached = resultCache.get(key);
+                if (cached != null)
+                    return cached;
+            }
+        }
+
+        List<BitSet> fingerprints = products.stream().map(p -> fingerprint(rules, p)).collect(Collectors.toList());
+
         List<AIDTO.InteractionWarning> warnings = new ArrayList<>();
         List<AIDTO.InteractionInfo> safeCombos = new ArrayList<>();
 
         // Check product-product interactions
         for (int i = 0; i < products.size(); i++) {
             for (int j = i + 1; j < products.size(); j++) {
-                checkPairInteractions(products.get(i), products.get(j), warnings, safeCombos);
+                checkPairInteractions(rules, products.get(i), fingerprints.get(i), products.get(j),
+                        fingerprints.get(j), warnings, safeCombos);
             }
         }
 
-        // Check product-medication interactions
-        for (Product product : products) {
-            for (String medication : medications) {
-                checkMedicationInteractions(product, medication, warnings);
+        // Check product-medication interactions (medication fingerprints computed once)
+        List<BitSet> medicationFingerprints = medications.stream()
+                .map(m -> rules.fingerprintOf(m.toLowerCase()))
+                .collect(Collectors.toList());
+        for (int i = 0; i < products.size(); i++) {
+            for (int m = 0; m < medications.size(); m++) {
+                checkMedicationInteractions(rules, products.get(i), fingerprints.get(i), medications.get(m),
+                        medicationFingerprints.get(m), warnings);
             }
         }
 
@@ -119,48 +178,98 @@ public class InteractionChecker {
         // General advice
         List<String> advice = generateAdvice(warnings, overallRisk);
 
-        return AIDTO.InteractionCheckResponse.builder()
-                .warnings(warnings)
-                .safeCombinatons(safeCombos)
+        AIDTO.InteractionCheckResponse response = AIDTO.InteractionCheckResponse.builder()
+                .warnings(List.copyOf(warnings))
+                .safeCombinatons(List.copyOf(safeCombos))
                 .overallRisk(overallRisk)
-                .generalAdvice(advice)
+                .generalAdvice(List.copyOf(advice))
                 .build();
+        if (key != null) {
+            synchronized (resultCache) {
+                resultCache.put(key, response);
+            }
+        }
+        return response;
     }
 
-    private void checkPairInteractions(Product p1, Product p2,
+    /**
+     * Pairs of products that should not be taken together (any non-beneficial
+     * rule), as an adjacency map by product id. Used for dosage scheduling.
+     */
+    public Map<Long, Set<Long>> conflicts(List<Product> products) {
+        RuleSnapshot rules = ruleBase.current();
+        List<BitSet> fingerprints = products.stream().map(p -> fingerprint(rules, p)).collect(Collectors.toList());
+        Map<Long, Set<Long>> conflicts = new HashMap<>();
+        for (int i = 0; i < products.size(); i++) {
+            for (int j = i + 1; j < products.size(); j++) {
+                BitSet f1 = fingerprints.get(i);
+                BitSet f2 = fingerprints.get(j);
+                if (f1.isEmpty() || f2.isEmpty()) continue;
+                for (Rule rule : rules.rules) {
+                    if (!rule.beneficial && rule.matches(f1, f2)) {
+                        Long a = products.get(i).getId();
+                        Long b = products.get(j).getId();
+                        conflicts.computeIfAbsent(a, k -> new HashSet<>()).add(b);
+                        conflicts.computeIfAbsent(b, k -> new HashSet<>()).add(a);
+                        break;
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private String canonicalKey(RuleSnapshot rules, List<Product> sortedProducts, List<String> medications) {
+        StringBuilder sb = new StringBuilder().append('v').append(rules.version).append('|');
+        for (Product p : sortedProducts) {
+            sb.append(p.getId()).append(':').append(p.getVersion()).append(',');
+        }
+        sb.append('|');
+        medications.stream().map(m -> m.trim().toLowerCase()).sorted().forEach(m -> sb.append(m).append('\u0000'));
+        return sb.toString();
+    }
+
+    private static java.util.function.Predicate<Product> distinctById() {
+        Set<Long> seen = new HashSet<>();
+        return p -> seen.add(p.getId());
+    }
+
+    private static List<String> parseList(String csv) {
+        if (csv == null || csv.isBlank())
+            return List.of();
+        return Arrays.stream(csv.replaceAll("[\\[\\]\"]", "").split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private void checkPairInteractions(RuleSnapshot rules, Product p1, BitSet f1, Product p2, BitSet f2,
                                        List<AIDTO.InteractionWarning> warnings,
                                        List<AIDTO.InteractionInfo> safeCombos) {
-        String p1Search = buildSearchString(p1);
-        String p2Search = buildSearchString(p2);
+        if (f1.isEmpty() || f2.isEmpty()) return;
 
-        for (InteractionRule rule : INTERACTION_RULES) {
+        for (Rule rule : rules.rules) {
+            if (!rule.matches(f1, f2)) continue;
             if (rule.beneficial) {
-                if ((p1Search.contains(rule.substance1Lower) && p2Search.contains(rule.substance2Lower)) ||
-                    (p1Search.contains(rule.substance2Lower) && p2Search.contains(rule.substance1Lower))) {
-                    safeCombos.add(AIDTO.InteractionInfo.builder()
-                            .product1(p1.getName()).product2(p2.getName())
-                            .benefit(rule.description).build());
-                }
+                safeCombos.add(AIDTO.InteractionInfo.builder()
+                        .product1(p1.getName()).product2(p2.getName())
+                        .benefit(rule.description).build());
             } else {
-                if ((p1Search.contains(rule.substance1Lower) && p2Search.contains(rule.substance2Lower)) ||
-                    (p1Search.contains(rule.substance2Lower) && p2Search.contains(rule.substance1Lower))) {
-                    warnings.add(AIDTO.InteractionWarning.builder()
-                            .severity(rule.severity).product1(p1.getName()).product2(p2.getName())
-                            .description(rule.description).recommendation(rule.recommendation).build());
-                }
+                warnings.add(AIDTO.InteractionWarning.builder()
+                        .severity(rule.severity).product1(p1.getName()).product2(p2.getName())
+                        .description(rule.description).recommendation(rule.recommendation).build());
             }
         }
     }
 
-    private void checkMedicationInteractions(Product product, String medication,
+    private void checkMedicationInteractions(RuleSnapshot rules, Product product, BitSet productBits,
+                                             String medication, BitSet medicationBits,
                                              List<AIDTO.InteractionWarning> warnings) {
-        String prodSearch = buildSearchString(product);
-        String medLower = medication.toLowerCase();
+        if (productBits.isEmpty() || medicationBits.isEmpty()) return;
 
-        for (InteractionRule rule : INTERACTION_RULES) {
+        for (Rule rule : rules.rules) {
             if (rule.beneficial) continue;
-            if ((prodSearch.contains(rule.substance1Lower) && medLower.contains(rule.substance2Lower)) ||
-                (prodSearch.contains(rule.substance2Lower) && medLower.contains(rule.substance1Lower))) {
+            if (rule.matches(productBits, medicationBits)) {
                 warnings.add(AIDTO.InteractionWarning.builder()
                         .severity(rule.severity).product1(product.getName()).product2(medication + " (medication)")
                         .description(rule.description).recommendation(rule.recommendation).build());
@@ -168,6 +277,40 @@ public class InteractionChecker {
         }
     }
 
+    /**
+     * Substance fingerprint of a product, recomputed only when its version changes.
+     */
+    private BitSet fingerprint(RuleSnapshot rules, Product p) {
+        Long version = p.getVersion();
+        if (version != null) {
+            synchronized (fingerprintCache) {
+                Fingerprint cached = fingerprintCache.get(p.getId());
+                if (cached != null && cached.version == version && cached.rulesVersion == rules.version)
+                    return cached.bits;
+            }
+        }
+        BitSet bits = rules.fingerprintOf(buildSearchString(p));
+        if (version != null) {
+            synchronized (fingerprintCache) {
+                fingerprintCache.put(p.getId(), new Fingerprint(rules.version, version, bits));
+            }
+        }
+        return bits;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (fingerprintCache) {
+            fingerprintCache.remove(event.getProductId());
+        }
+        // Keys list products as "id:version" after '|' or ',' (see canonicalKey)
+        String first = "|" + event.getProductId() + ":";
+        String next = "," + event.getProductId() + ":";
+        synchronized (resultCache) {
+            resultCache.keySet().removeIf(key -> key.contains(first) || key.contains(next));
+        }
+    }
+
     private String buildSearchString(Product p) {
         return ((p.getName() != null ? p.getName() : "") + " " +
                 (p.getIngredients() != null ? p.getIngredients() : "") + " " +
@@ -194,32 +337,15 @@ public class InteractionChecker {
     }
 
     // ===== Helper classes =====
-    private static class InteractionRule {
-        String substance1Lower;
-        String substance2Lower;
-        String severity;
-        String description;
-        String recommendation;
-        boolean beneficial;
-    }
+    private static class Fingerprint {
+        final long rulesVersion;
+        final long version;
+        final BitSet bits;
 
-    private static void addRule(String s1, String s2, String severity, String desc, String rec) {
-        InteractionRule rule = new InteractionRule();
-        rule.substance1Lower = s1.toLowerCase();
-        rule.substance2Lower = s2.toLowerCase();
-        rule.severity = severity;
-        rule.description = desc;
-        rule.recommendation = rec;
-        rule.beneficial = false;
-        INTERACTION_RULES.add(rule);
-    }
-
-    private static void addBeneficial(String s1, String s2, String benefit) {
-        InteractionRule rule = new InteractionRule();
-        rule.substance1Lower = s1.toLowerCase();
-        rule.substance2Lower = s2.toLowerCase();
-        rule.description = benefit;
-        rule.beneficial = true;
-        INTERACTION_RULES.add(rule);
+        Fingerprint(long rulesVersion, long version, BitSet bits) {
+            this.rulesVersion = rulesVersion;
+            this.version = version;
+            this.bits = bits;
+        }
     }
 }
@@ -0,0 +1,184 @@
+package com.healthshop.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Interaction Rule Base
+ * Loads the versioned interaction rules file and compiles it into an immutable
+ * snapshot (rules + substance vocabulary with bit indices). A new version is
+ * published with a single reference swap, so checks in flight keep using the
+ * snapshot they started with and never wait on a reload.
+ */
+@Component
+@Slf4j
+public class InteractionRuleBase {
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final String location;
+
+    private final AtomicReference<RuleSnapshot> snapshot = new AtomicReference<>();
+
+    public InteractionRuleBase(ResourceLoader resourceLoader, ObjectMapper objectMapper,
+            @Value("${healthshop.interaction-rules.location:classpath:interaction-rules.json}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.location = location;
+    }
+
+    @PostConstruct
+    void init() {
+        RuleSnapshot initial = load();
+        snapshot.set(initial);
+        log.info("Loaded interaction rules v{} ({} rules) from {}", initial.version, initial.rules.size(), location);
+    }
+
+    /**
+     * The current compiled rule set. Callers should read it once per check.
+     */
+    RuleSnapshot current() {
+        return snapshot.get();
+    }
+
+    /**
+     * Re-read the rules file and publish it if its version changed.
+     * Returns the version in effect afterwards.
+     */
+    public long reload() {
+        RuleSnapshot next = load();
+        RuleSnapshot previous = snapshot.get();
+        if (previous.version != next.version && snapshot.compareAndSet(previous, next)) {
+            log.info("Interaction rules updated v{} -> v{} ({} rules)", previous.version, next.version,
+                    next.rules.size());
+        }
+        return snapshot.get().version;
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${healthshop.interaction-rules.poll-millis:60000}")
+    public void poll() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Could not reload interaction rules from {}: {}", location, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> status() {
+        RuleSnapshot current = snapshot.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("version", current.version);
+        status.put("rules", current.rules.size());
+        status.put("substances", current.substances.size());
+        status.put("location", location);
+        return status;
+    }
+
+    private RuleSnapshot load() {
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream in = resource.getInputStream()) {
+            JsonNode root = objectMapper.readTree(in);
+            if (!root.hasNonNull("version")) {
+                throw new RuntimeException("Interaction rules file has no version");
+            }
+            List<Rule> rules = new ArrayList<>();
+            for (JsonNode n : root.path("interactions")) {
+                rules.add(new Rule(text(n, "substance1"), text(n, "substance2"), text(n, "severity"),
+                        text(n, "description"), text(n, "recommendation"), false));
+            }
+            for (JsonNode n : root.path("beneficial")) {
+                rules.add(new Rule(text(n, "substance1"), text(n, "substance2"), null,
+                        text(n, "benefit"), null, true));
+            }
+            return RuleSnapshot.compile(root.get("version").asLong(), rules);
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Could not read interaction rules from " + location + ": " + e.getMessage());
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            throw new RuntimeException("Interaction rule is missing '" + field + "'");
+        }
+        return value.asText();
+    }
+
+    // ===== Compiled structures =====
+
+    static final class Rule {
+        final String substance1Lower;
+        final String substance2Lower;
+        final String severity;
+        final String description;
+        final String recommendation;
+        final boolean beneficial;
+        int bit1;
+        int bit2;
+
+        Rule(String s1, String s2, String severity, String description, String recommendation, boolean beneficial) {
+            this.substance1Lower = s1.toLowerCase();
+            this.substance2Lower = s2.toLowerCase();
+            this.severity = severity;
+            this.description = description;
+            this.recommendation = recommendation;
+            this.beneficial = beneficial;
+        }
+
+        boolean matches(BitSet a, BitSet b) {
+            return (a.get(bit1) && b.get(bit2)) || (a.get(bit2) && b.get(bit1));
+        }
+    }
+
+    /**
+     * Immutable once published: every distinct substance gets one bit and each rule
+     * is resolved to its pair of bit indices.
+     */
+    static final class RuleSnapshot {
+        final long version;
+        final List<Rule> rules;
+        final List<String> substances;
+
+        private RuleSnapshot(long version, List<Rule> rules, List<String> substances) {
+            this.version = version;
+            this.rules = rules;
+            this.substances = substances;
+        }
+
+        static RuleSnapshot compile(long version, List<Rule> rules) {
+            List<String> substances = new ArrayList<>();
+            Map<String, Integer> bitOf = new HashMap<>();
+            for (Rule rule : rules) {
+                rule.bit1 = bitOf.computeIfAbsent(rule.substance1Lower, k -> {
+                    substances.add(k);
+                    return substances.size() - 1;
+                });
+                rule.bit2 = bitOf.computeIfAbsent(rule.substance2Lower, k -> {
+                    substances.add(k);
+                    return substances.size() - 1;
+                });
+            }
+            return new RuleSnapshot(version, List.copyOf(rules), List.copyOf(substances));
+        }
+
+        BitSet fingerprintOf(String lowerText) {
+            BitSet bits = new BitSet(substances.size());
+            for (int i = 0; i < substances.size(); i++) {
+                if (lowerText.contains(substances.get(i)))
+                    bits.set(i);
+            }
+            return bits;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.healthshop.ai;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Compiled Aho-Corasick keyword automaton
+ * Finds every registered keyword in one left-to-right pass over lowercase text.
+ * Matches are word-boundary aware: a keyword must start on a word boundary and
+ * end on one or on a common inflection ("sleep" matches "sleeping", but "fat"
+ * does not fire inside "fatigue"). Instances are immutable and thread-safe.
+ */
+public final class KeywordAutomaton {
+
+    // Inflections allowed between a keyword and the following word boundary
+    private static final String[] SUFFIXES = { "s", "es", "d", "ed", "ing", "y", "ly", "ful", "ness", "less" };
+
+    private final int[] charIndex; // ASCII char -> alphabet index, -1 if not in any keyword
+    private final Map<Character, Integer> extendedCharIndex;
+    private final int alphabetSize;
+    private final int[][] delta; // state x alphabet -> next state (full DFA, failure links folded in)
+    private final int[][] outputs; // state -> keyword ids ending here
+    private final String[] keywords;
+    private final int[] groups;
+    private final int[] categories;
+
+    private KeywordAutomaton(Builder b) {
+        this.keywords = b.keywords.toArray(new String[0]);
+        this.groups = b.groups.stream().mapToInt(Integer::intValue).toArray();
+        this.categories = b.categories.stream().mapToInt(Integer::intValue).toArray();
+
+        // Alphabet
+        this.charIndex = new int[128];
+        Arrays.fill(charIndex, -1);
+        this.extendedCharIndex = new HashMap<>();
+        int size = 0;
+        for (String k : keywords) {
+            for (char c : k.toCharArray()) {
+                if (c < 128) {
+                    if (charIndex[c] < 0)
+                        charIndex[c] = size++;
+                } else if (!extendedCharIndex.containsKey(c)) {
+                    extendedCharIndex.put(c, size++);
+                }
+            }
+        }
+        this.alphabetSize = size;
+
+        // Trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoTable.add(newRow());
+        out.add(new ArrayList<>());
+        for (int id = 0; id < keywords.length; id++) {
+            int state = 0;
+            for (char c : keywords[id].toCharArray()) {
+                int a = indexOf(c);
+                if (gotoTable.get(state)[a] < 0) {
+                    gotoTable.get(state)[a] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    out.add(new ArrayList<>());
+                }
+                state = gotoTable.get(state)[a];
+            }
+            out.get(state).add(id);
+        }
+
+        // Failure links (BFS), folded into a complete transition table
+        int states = gotoTable.size();
+        int[] fail = new int[states];
+        this.delta = new int[states][];
+        Deque<Integer> queue = new ArrayDeque<>();
+        delta[0] = gotoTable.get(0).clone();
+        for (int a = 0; a < alphabetSize; a++) {
+            if (delta[0][a] < 0) {
+                delta[0][a] = 0;
+            } else {
+                fail[delta[0][a]] = 0;
+                queue.add(delta[0][a]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out.get(state).addAll(out.get(fail[state]));
+            delta[state] = gotoTable.get(state).clone();
+            for (int a = 0; a < alphabetSize; a++) {
+                int next = delta[state][a];
+                if (next < 0) {
+                    delta[state][a] = delta[fail[state]][a];
+                } else {
+                    fail[next] = delta[fail[state]][a];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.outputs = new int[states][];
+        for (int s = 0; s < states; s++) {
+            outputs[s] = out.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * All keyword occurrences in the (already lowercased) text, in text order.
+     */
+    public List<Match> findAll(String lowerText) {
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < lowerText.length(); i++) {
+            int a = indexOf(lowerText.charAt(i));
+            state = a < 0 ? 0 : delta[state][a];
+            for (int id : outputs[state]) {
+                int start = i + 1 - keywords[id].length();
+                int end = i + 1;
+                if (isBoundaryBefore(lowerText, start) && isBoundaryAfter(lowerText, end)) {
+                    matches.add(new Match(id, keywords[id], groups[id], categories[id], start, end));
+                }
+            }
+        }
+        return matches;
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    private int indexOf(char c) {
+        if (c < 128)
+            return charIndex[c];
+        Integer idx = extendedCharIndex.get(c);
+        return idx != null ? idx : -1;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isBoundaryBefore(String text, int start) {
+        return start == 0 || !isWordChar(text.charAt(start - 1));
+    }
+
+    private static boolean isBoundaryAfter(String text, int end) {
+        if (end == text.length() || !isWordChar(text.charAt(end)))
+            return true;
+        for (String suffix : SUFFIXES) {
+            int after = end + suffix.length();
+            if (text.startsWith(suffix, end) && (after == text.length() || !isWordChar(text.charAt(after))))
+                return true;
+        }
+        return false;
+    }
+
+    // ===== Builder & result =====
+
+    public static class Builder {
+        private final List<String> keywords = new ArrayList<>();
+        private final List<Integer> groups = new ArrayList<>();
+        private final List<Integer> categories = new ArrayList<>();
+
+        /**
+         * Register a keyword. {@code group} identifies the knowledge map it comes from
+         * and {@code category} the entry within that map.
+         */
+        public Builder add(String keyword, int group, int category) {
+            String k = keyword.trim().toLowerCase();
+            if (!k.isEmpty()) {
+                keywords.add(k);
+                groups.add(group);
+                categories.add(category);
+            }
+            return this;
+        }
+
+        public KeywordAutomaton build() {
+            return new KeywordAutomaton(this);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Match {
+        private final int keywordId;
+        private final String keyword;
+        private final int group;
+        private final int category;
+        private final int start;
+        private final int end;
+    }
+}
@@ -0,0 +1,237 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Nutrient ↔ Product Inverted Index
+ * Maps every product to a bitmask of the essential nutrients it provides
+ * (keyword match on name, ingredients and tags) and every nutrient to the
+ * active products providing it, most purchased first. Built from the catalog
+ * at startup and patched on product writes (only the posting lists of the
+ * product's nutrients are touched), so nutrition gap analysis is bitmask
+ * arithmetic plus posting-list lookups.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NutrientIndex {
+
+    // Bit i = i-th nutrient of HealthInsightsEngine.ESSENTIAL_NUTRIENTS
+    static final List<String> NUTRIENTS = List.copyOf(HealthInsightsEngine.ESSENTIAL_NUTRIENTS.keySet());
+
+    private final ProductRepository productRepository;
+
+    private volatile Snapshot snapshot;
+
+    // Guarded by this: product writes seen while a rebuild reads the catalog
+    private boolean rebuilding;
+    private final Set<Long> patchedDuringRebuild = new HashSet<>();
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Bitmask of nutrients the product provides (active or not), or {@code null} if
+     * the product is unknown or the index is not built yet.
+     */
+    public Integer nutrientMask(Long productId) {
+        Snapshot current = snapshot;
+        ProductEntry entry = current == null ? null : current.entries.get(productId);
+        return entry == null ? null : entry.mask;
+    }
+
+    /**
+     * Active products providing the nutrient, most purchased first (a copy).
+     */
+    public long[] productIdsForNutrient(String nutrient) {
+        Snapshot current = snapshot;
+        int bit = NUTRIENTS.indexOf(nutrient);
+        if (current == null || bit < 0)
+            return new long[0];
+        return current.postings[bit].clone();
+    }
+
+    public static int bitOf(String nutrient) {
+        return 1 << NUTRIENTS.indexOf(nutrient);
+    }
+
+    /**
+     * Nutrient bitmask for arbitrary product text (name, ingredients, tags).
+     */
+    public static int maskOf(Product p) {
+        String searchable = ((p.getName() != null ? p.getName() : "") + " " +
+                (p.getIngredients() != null ? p.getIngredients() : "") + " " +
+                (p.getTags() != null ? p.getTags() : "")).toLowerCase();
+        int mask = 0;
+        for (int i = 0; i < NUTRIENTS.size(); i++) {
+            for (String keyword : HealthInsightsEngine.ESSENTIAL_NUTRIENTS.get(NUTRIENTS.get(i)).keywords.split(",")) {
+                if (searchable.contains(keyword.trim())) {
+                    mask |= 1 << i;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 30 * 60 * 1000L, fixedDelay = 30 * 60 * 1000L) // re-rank by purchase count
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            rebuilding = true;
+            patchedDuringRebuild.clear();
+        }
+        Map<Long, ProductEntry> entries = new HashMap<>();
+        try {
+            for (Product p : productRepository.findAll())
+                entries.put(p.getId(), ProductEntry.of(p));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                rebuilding = false;
+            }
+            throw e;
+        }
+        Snapshot built = Snapshot.build(entries);
+        synchronized (this) {
+            snapshot = built;
+        }
+        // Products written while the catalog was being read may be stale in the new snapshot
+        while (true) {
+            List<Long> stale;
+            synchronized (this) {
+                if (patchedDuringRebuild.isEmpty()) {
+                    rebuilding = false;
+                    break;
+                }
+                stale = List.copyOf(patchedDuringRebuild);
+                patchedDuringRebuild.clear();
+            }
+            stale.forEach(this::patch);
+        }
+        log.info("Indexed {} essential nutrients across {} products in {} ms", NUTRIENTS.size(), entries.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (this) {
+            if (rebuilding)
+                patchedDuringRebuild.add(event.getProductId());
+        }
+        patch(event.getProductId());
+    }
+
+    private void patch(Long productId) {
+        if (snapshot == null)
+            return;
+        ProductEntry entry = productRepository.findById(productId).map(ProductEntry::of).orElse(null);
+        synchronized (this) {
+            snapshot = snapshot.with(productId, entry);
+        }
+    }
+
+    // ===== Helper classes =====
+
+    private static class ProductEntry {
+        final long id;
+        final int mask;
+        final boolean active;
+        final int purchaseCount;
+
+        ProductEntry(long id, int mask, boolean active, int purchaseCount) {
+            this.id = id;
+            this.mask = mask;
+            this.active = active;
+            this.purchaseCount = purchaseCount;
+        }
+
+        static ProductEntry of(Product p) {
+            return new ProductEntry(p.getId(), maskOf(p), Boolean.TRUE.equals(p.getActive()),
+                    p.getPurchaseCount() != null ? p.getPurchaseCount() : 0);
+        }
+    }
+
+    /**
+     * Immutable view of the index; writers publish a new one.
+     */
+    private static class Snapshot {
+        private static final Comparator<ProductEntry> RANKING = Comparator
+                .comparingInt((ProductEntry e) -> e.purchaseCount).reversed()
+                .thenComparingLong(e -> e.id);
+
+        final Map<Long, ProductEntry> entries;
+        final long[][] postings; // nutrient bit -> active product ids, ranked
+
+        private Snapshot(Map<Long, ProductEntry> entries, long[][] postings) {
+            this.entries = entries;
+            this.postings = postings;
+        }
+
+        static Snapshot build(Map<Long, ProductEntry> entries) {
+            List<ProductEntry> ranked = entries.values().stream().filter(e -> e.active).sorted(RANKING).toList();
+            long[][] postings = new long[NUTRIENTS.size()][];
+            for (int bit = 0; bit < NUTRIENTS.size(); bit++) {
+                int b = 1 << bit;
+                postings[bit] = ranked.stream().filter(e -> (e.mask & b) != 0).mapToLong(e -> e.id).toArray();
+            }
+            return new Snapshot(Map.copyOf(entries), postings);
+        }
+
+        /**
+         * Copy with one product changed ({@code null} = gone): only the posting lists
+         * of nutrients it was listed under or is listed under now are rewritten.
+         */
+        Snapshot with(long productId, ProductEntry changed) {
+            Map<Long, ProductEntry> newEntries = new HashMap<>(entries);
+            ProductEntry old = changed != null ? newEntries.put(productId, changed) : newEntries.remove(productId);
+            long[][] newPostings = postings.clone();
+            int affected = listedMask(old) | listedMask(changed);
+            for (int bit = 0; bit < NUTRIENTS.size(); bit++) {
+                if ((affected & (1 << bit)) == 0)
+                    continue;
+                boolean listed = (listedMask(changed) & (1 << bit)) != 0;
+                newPostings[bit] = repost(postings[bit], productId, listed ? changed : null, newEntries);
+            }
+            return new Snapshot(Collections.unmodifiableMap(newEntries), newPostings);
+        }
+
+        private static int listedMask(ProductEntry e) {
+            return e != null && e.active ? e.mask : 0;
+        }
+
+        // Posting list without the product, plus the product at its ranked position if given
+        private static long[] repost(long[] list, long productId, ProductEntry insert, Map<Long, ProductEntry> entries) {
+            long[] without = Arrays.stream(list).filter(id -> id != productId).toArray();
+            if (insert == null)
+                return without;
+            int lo = 0, hi = without.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (RANKING.compare(entries.get(without[mid]), insert) < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            long[] out = new long[without.length + 1];
+            System.arraycopy(without, 0, out, 0, lo);
+            out[lo] = productId;
+            System.arraycopy(without, lo, out, lo + 1, without.length - lo);
+            return out;
+        }
+    }
+}
@@ -12,8 +12,9 @@ import java.util.stream.Collectors;
 
 /**
  * AI Smart Product Comparison Engine
- * Compares 2-4 products across multiple AI-scored dimensions and provides a
- * recommendation.
+ * Compares 2-50 products across multiple AI-scored dimensions and provides a
+ * recommendation. Value, satisfaction and goal match are scored against the
+ * product's whole category using precomputed percentile distributions.
  */
 @Service
 @RequiredArgsConstructor
@@ -21,12 +22,24 @@ import java.util.stream.Collectors;
 public class ProductComparisonEngine {
 
     private final ProductRepository productRepository;
+    private final CategoryScoreDistributions distributions;
+
+    private static final int MAX_COMPARE = 50;
+
+    private static final List<String> DIMENSIONS = List.of("Value for Money", "Ingredient Quality",
+            "User Satisfaction", "Health Goal Match", "Brand Reputation", "Dosage Adequacy");
 
     public AIDTO.ComparisonResponse compareProducts(List<Long> productIds) {
         log.info("Comparing products: {}", productIds);
 
-        List<Product> products = productIds.stream()
-                .map(id -> productRepository.findById(id).orElse(null))
+        if (productIds == null || productIds.size() > MAX_COMPARE) {
+            throw new RuntimeException("Can compare at most " + MAX_COMPARE + " products");
+        }
+        List<Long> distinctIds = productIds.stream().distinct().collect(Collectors.toList());
+        Map<Long, Product> byId = productRepository.findAllById(distinctIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        List<Product> products = distinctIds.stream()
+                .map(byId::get)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
@@ -39,37 +52,13 @@ public class ProductComparisonEngine {
 
         for (Product p : products) {
             Map<String, String> scores = new HashMap<>();
+            double[] pct = distributions.percentiles(p.getId());
+            double[] dimensionScores = dimensionScores(p, pct, products);
             double totalScore = 0;
-
-            // Value for Money
-            double valueScore = computeValueScore(p, products);
-            scores.put("Value for Money", scoreLabel(valueScore));
-            totalScore += valueScore;
-
-            // Ingredient Quality
-            double ingredientScore = computeIngredientScore(p);
-            scores.put("Ingredient Quality", scoreLabel(ingredientScore));
-            totalScore += ingredientScore;
-
-            // User Satisfaction
-            double satisfactionScore = computeSatisfactionScore(p);
-            scores.put("User Satisfaction", scoreLabel(satisfactionScore));
-            totalScore += satisfactionScore;
-
-            // Health Goal Match
-            double goalScore = computeGoalMatchScore(p);
-            scores.put("Health Goal Match", scoreLabel(goalScore));
-            totalScore += goalScore;
-
-            // Brand Reputation
-            double brandScore = computeBrandScore(p);
-            scores.put("Brand Reputation", scoreLabel(brandScore));
-            totalScore += brandScore;
-
-            // Dosage Adequacy
-            double dosageScore = computeDosageScore(p);
-            scores.put("Dosage Adequacy", scoreLabel(dosageScore));
-            totalScore += dosageScore;
+            for (int d = 0; d < DIMENSIONS.size(); d++) {
+                scores.put(DIMENSIONS.get(d), scoreLabel(dimensionScores[d]));
+                totalScore += dimensionScores[d];
+            }
 
             totalScores.put(p.getId(), totalScore);
 
@@ -87,6 +76,7 @@ public class ProductComparisonEngine {
                     .dosage(p.getDosage())
                     .ingredients(p.getIngredients())
                     .scores(scores)
+                    .categoryPercentiles(pct != null ? percentileLabels(pct) : null)
                     .build());
         }
 
@@ -103,13 +93,13 @@ public class ProductComparisonEngine {
 
         List<AIDTO.ComparisonDimension> dimensionDescriptions = List.of(
                 AIDTO.ComparisonDimension.builder().name("Value for Money")
-                        .description("Price relative to ingredients, dosage, and servings").build(),
+                        .description("Price relative to the rest of the product's category").build(),
                 AIDTO.ComparisonDimension.builder().name("Ingredient Quality")
                         .description("Number and quality of active ingredients").build(),
                 AIDTO.ComparisonDimension.builder().name("User Satisfaction")
-                        .description("Average rating and review volume from customers").build(),
+                        .description("Average rating and review volume, ranked within the category").build(),
                 AIDTO.ComparisonDimension.builder().name("Health Goal Match")
-                        .description("Breadth of health goals the product addresses").build(),
+                        .description("Breadth of health goals the product addresses, ranked within the category").build(),
                 AIDTO.ComparisonDimension.builder().name("Brand Reputation")
                         .description("Brand recognition and product popularity").build(),
                 AIDTO.ComparisonDimension.builder().name("Dosage Adequacy")
@@ -123,7 +113,69 @@ public class ProductComparisonEngine {
                 .build();
     }
 
+    /**
+     * Overall AI quality score (0-100): the mean of the six comparison dimensions,
+     * scored against the product's category. Persisted as {@code Product.aiScore}.
+     */
+    public double qualityScore(Product p) {
+        double[] dimensionScores = dimensionScores(p, distributions.percentiles(p.getId()), List.of(p));
+        return Math.round(Arrays.stream(dimensionScores).average().orElse(0) * 10) / 10.0;
+    }
+
+    // Scores in DIMENSIONS order
+    private double[] dimensionScores(Product p, double[] pct, List<Product> peers) {
+        return new double[] {
+                pct != null ? computeValueScore(pct) : computeValueScore(p, peers),
+                computeIngredientScore(p),
+                pct != null ? computeSatisfactionScore(pct) : computeSatisfactionScore(p),
+                pct != null ? computeGoalMatchScore(pct) : computeGoalMatchScore(p),
+                computeBrandScore(p),
+                computeDosageScore(p)
+        };
+    }
+
+    /**
+     * This product against its category's top 10 (by composite percentile score).
+     */
+    public AIDTO.ComparisonResponse compareWithCategoryTop(Long productId) {
+        List<Long> ids = new ArrayList<>();
+        ids.add(productId);
+        distributions.categoryTop(productId).stream()
+                .filter(id -> !id.equals(productId))
+                .limit(10)
+                .forEach(ids::add);
+        if (ids.size() < 2) {
+            throw new RuntimeException("No other products in this product's category to compare against");
+        }
+        return compareProducts(ids);
+    }
+
+    // Category-relative scores (percentiles are 0-1 within the product's category)
+    private double computeValueScore(double[] pct) {
+        return (1 - pct[CategoryScoreDistributions.PRICE]) * 100;
+    }
+
+    private double computeSatisfactionScore(double[] pct) {
+        return pct[CategoryScoreDistributions.RATING] * 75 + pct[CategoryScoreDistributions.REVIEWS] * 25;
+    }
+
+    private double computeGoalMatchScore(double[] pct) {
+        return 20 + pct[CategoryScoreDistributions.GOALS] * 80;
+    }
+
+    private Map<String, Integer> percentileLabels(double[] pct) {
+        Map<String, Integer> labels = new LinkedHashMap<>();
+        labels.put("price", (int) Math.round(pct[CategoryScoreDistributions.PRICE] * 100));
+        labels.put("rating", (int) Math.round(pct[CategoryScoreDistributions.RATING] * 100));
+        labels.put("reviews", (int) Math.round(pct[CategoryScoreDistributions.REVIEWS] * 100));
+        labels.put("healthGoals", (int) Math.round(pct[CategoryScoreDistributions.GOALS] * 100));
+        return labels;
+    }
+
+    // Fallbacks for products not yet in the category distributions
     private double computeValueScore(Product p, List<Product> all) {
+        if (all.size() < 2)
+            return 50; // nothing to be relative to
         double effectivePrice = p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice();
         double maxPrice = all.stream()
                 .mapToDouble(pr -> pr.getDiscountPrice() != null ? pr.getDiscountPrice() : pr.getPrice())
@@ -0,0 +1,88 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.event.ScoreDistributionsRebuiltEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Product Quality Scorer
+ * Batch job that computes the comparison engine's six-dimension quality score
+ * for every product (in parallel, page by page) and writes it to the indexed
+ * {@code products.ai_score} column, so the catalog can sort by it without any
+ * scoring on the request path. Every product is rescored after each rebuild of
+ * the category distributions it scores against; single products when they change.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductQualityScorer {
+
+    private static final int PAGE_SIZE = 500;
+    private static final String UPDATE_SQL = "UPDATE products SET ai_score = ? WHERE id = ?";
+    // Matches the catalog's "ORDER BY ai_score DESC NULLS LAST"; JPA @Index cannot express the null ordering
+    private static final String SORT_INDEX_DDL =
+            "CREATE INDEX IF NOT EXISTS idx_products_ai_score_desc ON products (ai_score DESC NULLS LAST, id)";
+
+    private final ProductRepository productRepository;
+    private final ProductComparisonEngine comparisonEngine;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureSortIndex() {
+        try {
+            jdbcTemplate.execute(SORT_INDEX_DDL);
+        } catch (Exception e) {
+            log.warn("Could not create AI score sort index: {}", e.getMessage());
+        }
+    }
+
+    // Same single thread as the per-product rescoring, so a product write queued
+    // behind a full recompute is applied after it, never overwritten by it
+    @Async("indexUpdateExecutor")
+    @EventListener
+    public void onDistributionsRebuilt(ScoreDistributionsRebuiltEvent event) {
+        recomputeAll();
+    }
+
+    public void recomputeAll() {
+        long start = System.currentTimeMillis();
+        int scored = 0;
+        Page<Product> page = productRepository.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("id")));
+        while (true) {
+            List<Object[]> batch = page.getContent().parallelStream()
+                    .map(p -> new Object[] { comparisonEngine.qualityScore(p), p.getId() })
+                    .toList();
+            jdbcTemplate.batchUpdate(UPDATE_SQL, new ArrayList<>(batch));
+            scored += batch.size();
+            if (!page.hasNext())
+                break;
+            page = productRepository.findAll(page.nextPageable());
+        }
+        log.info("Recomputed AI scores for {} products in {} ms", scored, System.currentTimeMillis() - start);
+    }
+
+    // CategoryScoreDistributions has already re-ranked the product's category by now
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted())
+            return;
+        productRepository.findById(event.getProductId()).ifPresent(
+                p -> jdbcTemplate.update(UPDATE_SQL, comparisonEngine.qualityScore(p), p.getId()));
+    }
+}
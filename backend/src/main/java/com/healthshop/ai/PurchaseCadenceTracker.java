@@ -0,0 +1,136 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.OrderPlacedEvent;
+import com.healthshop.model.GapStats;
+import com.healthshop.model.UserPurchaseStats;
+import com.healthshop.repository.OrderRepository;
+import com.healthshop.repository.UserPurchaseStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Purchase Cadence Tracker
+ * Keeps running statistics of the gaps between a user's orders (count, mean
+ * and variance via Welford, first and last order time), updated once per
+ * committed order with one atomic upsert, so next-purchase predictions are a
+ * single-row lookup over the full order history.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseCadenceTracker {
+
+    private static final int BATCH_SIZE = 500;
+
+    // SQL form of apply(), so concurrent orders from one user cannot lose a gap
+    private static final String UPSERT_SQL = "INSERT INTO user_purchase_stats AS s (user_id, order_count, "
+            + "first_order_at, last_order_at) VALUES (?, 1, ?, ?) ON CONFLICT (user_id) DO UPDATE SET "
+            + GapStatsSql.foldGap("s", "EXCLUDED.last_order_at > s.last_order_at",
+                    GapStatsSql.daysBetween("s.last_order_at", "EXCLUDED.last_order_at")) + ", "
+            + "order_count = s.order_count + 1, "
+            + "first_order_at = LEAST(s.first_order_at, EXCLUDED.first_order_at), "
+            + "last_order_at = GREATEST(s.last_order_at, EXCLUDED.last_order_at)";
+    private static final String BACKFILL_SQL = "INSERT INTO user_purchase_stats (user_id, order_count, "
+            + "first_order_at, last_order_at, gap_count, gap_mean_days, gap_m2) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id) DO NOTHING";
+
+    private final UserPurchaseStatsRepository statsRepository;
+    private final OrderRepository orderRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<UserPurchaseStats> get(Long userId) {
+        return statsRepository.findById(userId);
+    }
+
+    @Async("orderEventExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Timestamp createdAt = Timestamp.valueOf(
+                event.getCreatedAt() != null ? event.getCreatedAt() : LocalDateTime.now());
+        jdbcTemplate.update(UPSERT_SQL, event.getUserId(), createdAt, createdAt);
+    }
+
+    // One-off backfill from order history when the table is first created. Orders are
+    // streamed by user, so only one user's stats are built at a time.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (statsRepository.count() > 0)
+            return;
+        long start = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long users = 0;
+        UserPurchaseStats stats = null;
+        try (Stream<Object[]> rows = orderRepository.streamOrderTimes()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] row = it.next();
+                Long userId = (Long) row[0];
+                if (row[1] == null)
+                    continue;
+                if (stats != null && !stats.getUserId().equals(userId)) {
+                    batch.add(backfillRow(stats));
+                    users++;
+                    if (batch.size() == BATCH_SIZE) {
+                        jdbcTemplate.batchUpdate(BACKFILL_SQL, batch);
+                        batch.clear();
+                    }
+                    stats = null;
+                }
+                stats = apply(stats, userId, (LocalDateTime) row[1]); // oldest first within the user
+            }
+        }
+        if (stats != null) {
+            batch.add(backfillRow(stats));
+            users++;
+        }
+        if (batch.isEmpty())
+            return;
+        jdbcTemplate.batchUpdate(BACKFILL_SQL, batch);
+        log.info("Backfilled purchase cadence for {} users in {} ms", users, System.currentTimeMillis() - start);
+    }
+
+    private static Object[] backfillRow(UserPurchaseStats s) {
+        return new Object[] { s.getUserId(), s.getOrderCount(), Timestamp.valueOf(s.getFirstOrderAt()),
+                Timestamp.valueOf(s.getLastOrderAt()), s.getGaps().getGapCount(), s.getGaps().getGapMeanDays(),
+                s.getGaps().getGapM2() };
+    }
+
+    static UserPurchaseStats apply(UserPurchaseStats stats, Long userId, LocalDateTime orderedAt) {
+        if (stats == null) {
+            stats = UserPurchaseStats.builder().userId(userId).orderCount(0).gaps(new GapStats()).build();
+        }
+        if (stats.getGaps() == null)
+            stats.setGaps(new GapStats());
+        if (stats.getLastOrderAt() != null) {
+            // An order older than the latest one only counts; its gap is unknown here
+            if (orderedAt.isAfter(stats.getLastOrderAt())) {
+                stats.getGaps().add(ChronoUnit.HOURS.between(stats.getLastOrderAt(), orderedAt) / 24.0);
+                stats.setLastOrderAt(orderedAt);
+            }
+        } else {
+            stats.setLastOrderAt(orderedAt);
+        }
+        if (stats.getFirstOrderAt() == null || orderedAt.isBefore(stats.getFirstOrderAt()))
+            stats.setFirstOrderAt(orderedAt);
+        stats.setOrderCount(stats.getOrderCount() + 1);
+        return stats;
+    }
+}
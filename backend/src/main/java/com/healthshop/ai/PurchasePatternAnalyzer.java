@@ -7,7 +7,6 @@ import com.healthshop.repository.*;
 import com.healthshop.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,25 +26,40 @@ import java.util.stream.Collectors;
 public class PurchasePatternAnalyzer {
 
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final ProductRepository productRepository;
     private final ProductService productService;
+    private final ReplenishmentScheduler replenishmentScheduler;
+    private final PurchaseCadenceTracker cadenceTracker;
 
-    // Average supplement supply durations (days)
-    private static final Map<String, Integer> SUPPLY_DURATION = Map.ofEntries(
-            Map.entry("vitamin", 30), Map.entry("supplement", 30), Map.entry("probiotic", 30),
-            Map.entry("protein", 20), Map.entry("pre-workout", 25), Map.entry("collagen", 30),
-            Map.entry("omega", 30), Map.entry("fish oil", 30), Map.entry("calcium", 30),
-            Map.entry("iron", 30), Map.entry("zinc", 30), Map.entry("magnesium", 30),
-            Map.entry("melatonin", 45), Map.entry("multivitamin", 30));
+    private static final int REORDER_HORIZON_DAYS = 7;
 
     public AIDTO.PurchaseInsights analyzePurchasePattern(Long userId) {
+        List<Long> dueProductIds = replenishmentScheduler.dueProductIds(userId, REORDER_HORIZON_DAYS);
+        Map<Long, Product> products = productRepository.findAllById(dueProductIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return analyzePurchasePattern(userId, dueProductIds, products);
+    }
+
+    /**
+     * Same analysis on an already-loaded user context (health dashboard).
+     */
+    public AIDTO.PurchaseInsights analyzePurchasePattern(UserHealthContext context) {
+        return analyzePurchasePattern(context.getUserId(),
+                replenishmentScheduler.dueProductIds(context.getUserId(), REORDER_HORIZON_DAYS),
+                context.getPurchasedProducts());
+    }
+
+    // Totals, trend, top category and goals come from aggregate queries, so the
+    // cost is a handful of rows however long the order history is
+    private AIDTO.PurchaseInsights analyzePurchasePattern(Long userId, List<Long> dueProductIds,
+            Map<Long, Product> products) {
         log.info("Analyzing purchase patterns for user: {}", userId);
 
-        List<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(0, 100))
-                .getContent();
-        List<Long> purchasedProductIds = orderRepository.findProductIdsPurchasedByUser(userId);
+        Object[] summary = orderRepository.summarizeByUser(userId).get(0);
+        int totalOrders = ((Number) summary[0]).intValue();
 
-        if (orders.size() <= 10) {
+        if (totalOrders <= 10) {
             // Return rich demo data when purchase history is too sparse for meaningful
             // charts
             YearMonth current = YearMonth.now();
@@ -81,23 +95,22 @@ public class PurchasePatternAnalyzer {
         }
 
         // Calculate basics
-        int totalOrders = orders.size();
-        double totalSpent = orders.stream().mapToDouble(o -> o.getTotalAmount() != null ? o.getTotalAmount() : 0).sum();
+        double totalSpent = ((Number) summary[1]).doubleValue();
 
         // Top category
-        String topCategory = findTopCategory(purchasedProductIds);
+        String topCategory = findTopCategory(userId);
 
         // Top health goals from purchased products
-        List<String> topHealthGoals = findTopHealthGoals(purchasedProductIds);
+        List<String> topHealthGoals = findTopHealthGoals(userId);
 
         // Monthly spending trend (last 6 months)
-        List<AIDTO.MonthlySpend> spendingTrend = calculateSpendingTrend(orders);
+        List<AIDTO.MonthlySpend> spendingTrend = calculateSpendingTrend(userId);
 
         // Reorder suggestions (products that might be running low)
-        List<ProductDTO.ProductResponse> reorderSuggestions = findReorderSuggestions(userId, orders);
+        List<ProductDTO.ProductResponse> reorderSuggestions = findReorderSuggestions(dueProductIds, products);
 
         // Next purchase prediction
-        String prediction = predictNextPurchase(orders, purchasedProductIds);
+        String prediction = predictNextPurchase(userId, products);
 
         // Generate insights
         List<String> insights = generateInsights(totalOrders, totalSpent, topCategory, topHealthGoals, spendingTrend);
@@ -114,40 +127,28 @@ public class PurchasePatternAnalyzer {
                 .build();
     }
 
-    private String findTopCategory(List<Long> productIds) {
-        Map<String, Integer> categoryCounts = new HashMap<>();
-        for (Long pid : productIds) {
-            productRepository.findById(pid).ifPresent(p -> {
-                if (p.getCategory() != null) {
-                    categoryCounts.merge(p.getCategory().getName(), 1, (a, b) -> a + b);
-                }
-            });
-        }
-        return categoryCounts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
+    private String findTopCategory(Long userId) {
+        return orderItemRepository.countLinesByCategory(userId).stream()
+                .findFirst()
+                .map(row -> (String) row[0])
                 .orElse("N/A");
     }
 
-    private List<String> findTopHealthGoals(List<Long> productIds) {
-        Map<String, Integer> goalCounts = new HashMap<>();
-        for (Long pid : productIds) {
-            productRepository.findById(pid).ifPresent(p -> {
-                if (p.getHealthGoals() != null) {
-                    for (String goal : p.getHealthGoals().split(",")) {
-                        goalCounts.merge(goal.trim(), 1, (a, b) -> a + b);
-                    }
-                }
-            });
+    private List<String> findTopHealthGoals(Long userId) {
+        Map<String, Long> goalCounts = new HashMap<>();
+        for (Object[] row : orderItemRepository.countLinesByHealthGoals(userId)) {
+            for (String goal : ((String) row[0]).split(",")) {
+                goalCounts.merge(goal.trim(), (Long) row[1], Long::sum);
+            }
         }
         return goalCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .limit(5)
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toList());
     }
 
-    private List<AIDTO.MonthlySpend> calculateSpendingTrend(List<Order> orders) {
+    private List<AIDTO.MonthlySpend> calculateSpendingTrend(Long userId) {
         Map<YearMonth, Double> monthlyTotals = new LinkedHashMap<>();
         Map<YearMonth, Integer> monthlyCounts = new LinkedHashMap<>();
 
@@ -159,14 +160,12 @@ public class PurchasePatternAnalyzer {
             monthlyCounts.put(month, 0);
         }
 
-        for (Order order : orders) {
-            if (order.getCreatedAt() != null) {
-                YearMonth orderMonth = YearMonth.from(order.getCreatedAt());
-                if (monthlyTotals.containsKey(orderMonth)) {
-                    monthlyTotals.merge(orderMonth, order.getTotalAmount() != null ? order.getTotalAmount() : 0.0,
-                            (a, b) -> a + b);
-                    monthlyCounts.merge(orderMonth, 1, (a, b) -> a + b);
-                }
+        LocalDateTime since = now.minusMonths(5).atDay(1).atStartOfDay();
+        for (Object[] row : orderRepository.sumMonthlySpendByUser(userId, since)) {
+            YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            if (monthlyTotals.containsKey(month)) {
+                monthlyTotals.put(month, ((Number) row[2]).doubleValue());
+                monthlyCounts.put(month, ((Number) row[3]).intValue());
             }
         }
 
@@ -179,70 +178,62 @@ public class PurchasePatternAnalyzer {
                 .collect(Collectors.toList());
     }
 
-    private List<ProductDTO.ProductResponse> findReorderSuggestions(Long userId, List<Order> orders) {
-        // Find products from recent orders that may need refilling
-        Set<Long> reorderIds = new LinkedHashSet<>();
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(45);
-
-        for (Order order : orders) {
-            if (order.getCreatedAt() != null && order.getCreatedAt().isBefore(thirtyDaysAgo)) {
-                List<Long> productIds = orderRepository.findProductIdsPurchasedByUser(userId);
-                for (Long pid : productIds) {
-                    productRepository.findById(pid).ifPresent(p -> {
-                        String searchable = (p.getName() + " " + (p.getTags() != null ? p.getTags() : ""))
-                                .toLowerCase();
-                        for (Map.Entry<String, Integer> entry : SUPPLY_DURATION.entrySet()) {
-                            if (searchable.contains(entry.getKey())) {
-                                reorderIds.add(p.getId());
-                                break;
-                            }
-                        }
-                    });
-                }
-                break; // only check the first older order
-            }
-        }
-
-        return reorderIds.stream()
-                .limit(6)
-                .map(id -> productRepository.findById(id).orElse(null))
+    private List<ProductDTO.ProductResponse> findReorderSuggestions(List<Long> dueProductIds,
+            Map<Long, Product> products) {
+        // Purchases expected to run out within the next week, soonest first
+        return dueProductIds.stream()
+                .map(products::get)
                 .filter(Objects::nonNull)
+                .limit(6)
                 .map(productService::toResponse)
                 .collect(Collectors.toList());
     }
 
-    private String predictNextPurchase(List<Order> orders, List<Long> productIds) {
-        if (orders.size() < 2) {
+    private String predictNextPurchase(Long userId, Map<Long, Product> products) {
+        UserPurchaseStats stats = cadenceTracker.get(userId).orElse(null);
+        if (stats == null || stats.getOrderCount() < 2) {
             return "Place a couple more orders for AI to predict your next purchase timing!";
         }
 
-        // Calculate average days between orders
-        List<LocalDateTime> dates = orders.stream()
-                .map(Order::getCreatedAt)
-                .filter(Objects::nonNull)
-                .sorted()
-                .collect(Collectors.toList());
-
-        if (dates.size() < 2) {
+        GapStats gaps = stats.getGaps();
+        if (gaps == null || gaps.count() == 0 || stats.getLastOrderAt() == null) {
             return "Not enough data yet to predict your next purchase.";
         }
 
-        long totalDays = 0;
-        for (int i = 1; i < dates.size(); i++) {
-            totalDays += Duration.between(dates.get(i - 1), dates.get(i)).toDays();
-        }
-        long avgDays = totalDays / (dates.size() - 1);
-        LocalDateTime lastOrder = dates.get(dates.size() - 1);
-        LocalDateTime predicted = lastOrder.plusDays(avgDays);
+        // Running mean of the days between orders; with three or more orders the
+        // spread gives a ~95% range for the next gap
+        long avgDays = Math.round(gaps.mean());
+        long spread = Math.round(1.96 * gaps.stdDev());
+        String cadence = "every ~" + avgDays + " days" + (spread > 0 ? ", ±" + spread : "");
+        LocalDateTime predicted = stats.getLastOrderAt().plusDays(avgDays);
 
         if (predicted.isBefore(LocalDateTime.now())) {
-            return "🔔 Based on your purchase pattern (every ~" + avgDays
-                    + " days), you might be due for a reorder now!";
+            return "🔔 Based on your purchase pattern (" + cadence + "), you might be due for a reorder now!"
+                    + restockHint(userId, LocalDateTime.now().plusDays(REORDER_HORIZON_DAYS), products);
         }
 
         long daysUntil = Duration.between(LocalDateTime.now(), predicted).toDays();
-        return "📅 Based on your pattern (every ~" + avgDays + " days), your next order is predicted in ~" + daysUntil
-                + " days.";
+        return "📅 Based on your pattern (" + cadence + "), your next order is predicted in ~" + daysUntil
+                + " days." + restockHint(userId, predicted, products);
+    }
+
+    // Products whose own repeat cadence says they are due by the predicted order
+    private String restockHint(Long userId, LocalDateTime by, Map<Long, Product> products) {
+        List<Long> ids = replenishmentScheduler.cadenceDueProductIds(userId, by).stream().limit(2)
+                .collect(Collectors.toList());
+        Map<Long, String> names = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Product p = products.get(id);
+            if (p != null)
+                names.put(id, p.getName());
+            else
+                missing.add(id);
+        }
+        if (!missing.isEmpty())
+            productRepository.findAllById(missing).forEach(p -> names.put(p.getId(), p.getName()));
+        List<String> due = ids.stream().map(names::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return due.isEmpty() ? "" : " Consider restocking " + String.join(" and ", due) + ".";
     }
 
     private List<String> generateInsights(int totalOrders, double totalSpent, String topCategory,
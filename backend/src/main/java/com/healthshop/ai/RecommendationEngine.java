@@ -5,6 +5,7 @@ import com.healthshop.dto.ProductDTO;
 import com.healthshop.dto.RecommendationDTO;
 import com.healthshop.model.*;
 import com.healthshop.repository.*;
+import com.healthshop.service.AIAnalyticsService;
 import com.healthshop.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +13,8 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -27,6 +30,9 @@ public class RecommendationEngine {
     private final UserHealthProfileRepository healthProfileRepository;
 
     private final ProductService productService;
+    private final BundleOptimizer bundleOptimizer;
+    private final TagProductIndex tagProductIndex;
+    private final AIAnalyticsService analyticsService;
 
     // ========== SYMPTOM → PRODUCT MAPPING ==========
     private static final Map<String, List<String>> SYMPTOM_MAP = new LinkedHashMap<>();
@@ -166,14 +172,27 @@ public class RecommendationEngine {
     }
 
     /**
-     * Frequently bought together for a specific product
+     * Frequently bought together for a specific product: partners from the
+     * best mined bundles first, topped up from raw co-purchase counts while
+     * the bundle index is empty or thin.
      */
     public List<ProductDTO.ProductResponse> getFrequentlyBoughtTogether(Long productId) {
-        List<Long> relatedIds = orderItemRepository.findFrequentlyBoughtTogetherProductIds(productId);
-        return relatedIds.stream()
-                .limit(6)
-                .map(id -> productRepository.findById(id).orElse(null))
-                .filter(Objects::nonNull)
+        Set<Long> relatedIds = new LinkedHashSet<>();
+        for (BundleOptimizer.MinedBundle bundle : bundleOptimizer.bundlesForProduct(productId)) {
+            for (Long id : bundle.getProductIds()) {
+                if (!id.equals(productId))
+                    relatedIds.add(id);
+            }
+        }
+        if (relatedIds.size() < 6)
+            relatedIds.addAll(orderItemRepository.findFrequentlyBoughtTogetherProductIds(productId));
+        List<Long> top = relatedIds.stream().limit(6).collect(Collectors.toList());
+
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(top).forEach(p -> products.put(p.getId(), p));
+        return top.stream()
+                .map(products::get)
+                .filter(p -> p != null && Boolean.TRUE.equals(p.getActive()))
                 .map(productService::toResponse)
                 .collect(Collectors.toList());
     }
@@ -264,62 +283,60 @@ public class RecommendationEngine {
                 "Consider an elimination diet to identify trigger foods"));
     }
 
+    // ========== COMPILED KNOWLEDGE MATCHER ==========
+    // All four keyword maps compiled once into a single automaton; the category id
+    // of each keyword is its entry's position in the corresponding map.
+    private static final int SYMPTOM = 0;
+    private static final int SEVERITY = 1;
+    private static final int FOLLOW_UP = 2;
+    private static final int LIFESTYLE = 3;
+
+    private static final List<List<String>> SYMPTOM_TAGS = new ArrayList<>(SYMPTOM_MAP.values());
+    // Analytics label per symptom entry, e.g. "Tired/Fatigue"
+    private static final List<String> SYMPTOM_LABELS = SYMPTOM_MAP.keySet().stream()
+            .map(key -> Arrays.stream(key.split("\\|")).limit(2)
+                    .map(k -> Character.toUpperCase(k.charAt(0)) + k.substring(1))
+                    .collect(Collectors.joining("/")))
+            .collect(Collectors.toList());
+    private static final List<String> SEVERITY_LEVELS = new ArrayList<>(SEVERITY_KEYWORDS.values());
+    private static final List<List<String>> FOLLOW_UPS = new ArrayList<>(FOLLOW_UP_MAP.values());
+    private static final List<List<String>> LIFESTYLE_TIPS = new ArrayList<>(LIFESTYLE_TIPS_MAP.values());
+    private static final KeywordAutomaton KNOWLEDGE_MATCHER;
+    static {
+        KeywordAutomaton.Builder builder = KeywordAutomaton.builder();
+        addKeywords(builder, SYMPTOM, SYMPTOM_MAP.keySet());
+        addKeywords(builder, SEVERITY, SEVERITY_KEYWORDS.keySet());
+        addKeywords(builder, FOLLOW_UP, FOLLOW_UP_MAP.keySet());
+        addKeywords(builder, LIFESTYLE, LIFESTYLE_TIPS_MAP.keySet());
+        KNOWLEDGE_MATCHER = builder.build();
+    }
+
+    private static void addKeywords(KeywordAutomaton.Builder builder, int group, Collection<String> keys) {
+        int category = 0;
+        for (String key : keys) {
+            for (String pattern : key.split("\\|")) {
+                builder.add(pattern, group, category);
+            }
+            category++;
+        }
+    }
+
     /**
      * Enhanced Symptom-based search with NLP scoring, severity assessment,
      * follow-ups, and lifestyle tips
      */
     public RecommendationDTO.SymptomSearchResponse searchBySymptom(String symptomDescription) {
-        String lowerSymptom = symptomDescription.toLowerCase();
-        List<String> identifiedSymptoms = new ArrayList<>();
-        Set<String> suggestedTags = new LinkedHashSet<>();
-
-        // Score each symptom category by how many patterns match (NLP-like relevance
-        // scoring)
-        Map<String, Integer> categoryScores = new LinkedHashMap<>();
-        for (Map.Entry<String, List<String>> entry : SYMPTOM_MAP.entrySet()) {
-            String[] patterns = entry.getKey().split("\\|");
-            int score = 0;
-            for (String pattern : patterns) {
-                if (lowerSymptom.contains(pattern.trim())) {
-                    score++;
-                    identifiedSymptoms.add(pattern.trim());
-                }
-            }
-            if (score > 0) {
-                categoryScores.put(entry.getKey(), score);
-            }
-        }
-
-        // Sort by relevance score and add tags in order
-        categoryScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .forEach(entry -> suggestedTags.addAll(SYMPTOM_MAP.get(entry.getKey())));
-
-        // If no symptoms matched, do a general search
-        if (suggestedTags.isEmpty()) {
-            suggestedTags.add(symptomDescription);
-        }
+        MessageAnalysis analysis = analyzeMessage(symptomDescription);
 
         // Find products matching the suggested tags
-        Set<Long> productIds = new LinkedHashSet<>();
-        List<ProductDTO.ProductResponse> products = new ArrayList<>();
-        for (String tag : suggestedTags) {
-            List<Product> tagProducts = productRepository.findByTag(tag);
-            for (Product p : tagProducts) {
-                if (productIds.add(p.getId())) {
-                    products.add(productService.toResponse(p));
-                }
-                if (products.size() >= 20)
-                    break;
-            }
-            if (products.size() >= 20)
-                break;
-        }
+        List<ProductDTO.ProductResponse> products = productsForTags(analysis.suggestedTags, 20);
+        analyticsService.record(AIAnalyticsService.SYMPTOM_SEARCH, null, analysis.symptomCategories,
+                analysis.severity, productIds(products));
 
         return RecommendationDTO.SymptomSearchResponse.builder()
                 .symptomDescription(symptomDescription)
-                .identifiedSymptoms(identifiedSymptoms)
-                .suggestedCategories(new ArrayList<>(suggestedTags))
+                .identifiedSymptoms(analysis.identifiedSymptoms)
+                .suggestedCategories(new ArrayList<>(analysis.suggestedTags))
                 .suggestedProducts(products)
                 .build();
     }
@@ -329,69 +346,178 @@ public class RecommendationEngine {
      * tips
      */
     public AIDTO.ChatResponse enhancedChat(String message, Long userId) {
-        String lowerMessage = message.toLowerCase();
-        List<String> identifiedSymptoms = new ArrayList<>();
-        Set<String> suggestedTags = new LinkedHashSet<>();
-
-        // NLP-scored symptom matching
-        Map<String, Integer> categoryScores = new LinkedHashMap<>();
-        for (Map.Entry<String, List<String>> entry : SYMPTOM_MAP.entrySet()) {
-            String[] patterns = entry.getKey().split("\\|");
-            int score = 0;
-            for (String pattern : patterns) {
-                if (lowerMessage.contains(pattern.trim())) {
-                    score++;
-                    if (!identifiedSymptoms.contains(pattern.trim())) {
-                        identifiedSymptoms.add(pattern.trim());
-                    }
-                }
-            }
-            if (score > 0)
-                categoryScores.put(entry.getKey(), score);
+        MessageAnalysis analysis = analyzeMessage(message);
+
+        // Products
+        List<ProductDTO.ProductResponse> products = productsForTags(analysis.suggestedTags, 12);
+        analyticsService.record(AIAnalyticsService.CHAT, userId, analysis.symptomCategories,
+                analysis.severity, productIds(products));
+
+        // Build AI response message
+        String responseMessage = buildChatResponseMessage(analysis.identifiedSymptoms, analysis.severity,
+                products.size());
+
+        return AIDTO.ChatResponse.builder()
+                .message(responseMessage)
+                .identifiedSymptoms(analysis.identifiedSymptoms)
+                .suggestedCategories(new ArrayList<>(analysis.suggestedTags))
+                .suggestedProducts(products)
+                .followUpQuestions(analysis.followUps)
+                .severity(analysis.severity)
+                .lifestyleTips(analysis.lifestyleTips)
+                .build();
+    }
+
+    /**
+     * First stage of the streaming chat: keyword analysis only, no product lookups.
+     * The message omits the product count, which is reported once products resolve.
+     */
+    public AIDTO.ChatResponse analyzeChat(String message, Long userId) {
+        MessageAnalysis analysis = analyzeMessage(message);
+        analyticsService.record(AIAnalyticsService.CHAT, userId, analysis.symptomCategories,
+                analysis.severity, null);
+        return AIDTO.ChatResponse.builder()
+                .message(buildChatResponseMessage(analysis.identifiedSymptoms, analysis.severity, 0))
+                .identifiedSymptoms(analysis.identifiedSymptoms)
+                .suggestedCategories(new ArrayList<>(analysis.suggestedTags))
+                .followUpQuestions(analysis.followUps)
+                .severity(analysis.severity)
+                .lifestyleTips(analysis.lifestyleTips)
+                .build();
+    }
+
+    /**
+     * Products for a single suggested tag, skipping ids already sent. Used by the
+     * streaming chat to push suggestions tag by tag.
+     */
+    public List<ProductDTO.ProductResponse> chatProductsForTag(String tag, Set<Long> alreadySent, int limit) {
+        List<ProductDTO.ProductResponse> products = new ArrayList<>();
+        for (ProductDTO.ProductResponse p : productsForTags(List.of(tag), limit + alreadySent.size())) {
+            if (products.size() >= limit)
+                break;
+            if (alreadySent.add(p.getId()))
+                products.add(p);
         }
+        return products;
+    }
 
-        categoryScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .forEach(entry -> suggestedTags.addAll(SYMPTOM_MAP.get(entry.getKey())));
+    /**
+     * Closing line of the streaming chat once all products are known.
+     */
+    public String chatProductSummary(int productCount) {
+        return productCount > 0
+                ? "I've found " + productCount + " products that may help support your health."
+                : "I couldn't find matching products right now.";
+    }
 
-        if (suggestedTags.isEmpty())
-            suggestedTags.add(message);
+    @PostConstruct
+    void registerKnowledgeBaseTags() {
+        Set<String> tags = new LinkedHashSet<>();
+        SYMPTOM_TAGS.forEach(tags::addAll);
+        tags.addAll(List.of("Immunity", "Energy", "Skin", "Sleep")); // seasonal picks
+        tagProductIndex.registerTags(tags);
+    }
+
+    /**
+     * Products for the tags in priority order, deduplicated, up to {@code limit}.
+     * Served from the tag posting lists; falls back to the LIKE query only while
+     * the index is still being built.
+     */
+    private List<ProductDTO.ProductResponse> productsForTags(Collection<String> tags, int limit) {
+        if (!tagProductIndex.isReady()) {
+            Set<Long> productIds = new LinkedHashSet<>();
+            List<ProductDTO.ProductResponse> products = new ArrayList<>();
+            for (String tag : tags) {
+                for (Product p : productRepository.findByTag(tag)) {
+                    if (productIds.add(p.getId()))
+                        products.add(productService.toResponse(p));
+                    if (products.size() >= limit)
+                        return products;
+                }
+            }
+            return products;
+        }
 
-        // Products
         Set<Long> productIds = new LinkedHashSet<>();
-        List<ProductDTO.ProductResponse> products = new ArrayList<>();
-        for (String tag : suggestedTags) {
-            List<Product> tagProducts = productRepository.findByTag(tag);
-            for (Product p : tagProducts) {
-                if (productIds.add(p.getId()))
-                    products.add(productService.toResponse(p));
-                if (products.size() >= 12)
+        for (String tag : tags) {
+            for (Long id : tagProductIndex.productIdsForTag(tag)) {
+                productIds.add(id);
+                if (productIds.size() >= limit)
                     break;
             }
-            if (products.size() >= 12)
+            if (productIds.size() >= limit)
                 break;
         }
+        if (productIds.isEmpty())
+            return new ArrayList<>();
+        Map<Long, Product> byId = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return productIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(productService::toResponse)
+                .collect(Collectors.toList());
+    }
 
-        // Severity assessment
-        String severity = "mild";
-        for (Map.Entry<String, String> entry : SEVERITY_KEYWORDS.entrySet()) {
-            for (String pattern : entry.getKey().split("\\|")) {
-                if (lowerMessage.contains(pattern)) {
-                    severity = entry.getValue();
-                    break;
+    /**
+     * Single linear pass of the compiled knowledge matcher over the lowercased
+     * message: symptom categories scored by distinct keyword hits, plus severity,
+     * follow-up and lifestyle entries.
+     */
+    private MessageAnalysis analyzeMessage(String message) {
+        String lowerMessage = message.toLowerCase();
+        int[] symptomScores = new int[SYMPTOM_TAGS.size()];
+        boolean[] followUpHits = new boolean[FOLLOW_UPS.size()];
+        boolean[] lifestyleHits = new boolean[LIFESTYLE_TIPS.size()];
+        int severityLevel = SEVERITY_LEVELS.size();
+        Set<Integer> seenKeywords = new HashSet<>();
+        Set<String> identified = new LinkedHashSet<>();
+
+        for (KeywordAutomaton.Match match : KNOWLEDGE_MATCHER.findAll(lowerMessage)) {
+            switch (match.getGroup()) {
+                case SYMPTOM -> {
+                    if (seenKeywords.add(match.getKeywordId())) {
+                        symptomScores[match.getCategory()]++;
+                        identified.add(match.getKeyword());
+                    }
                 }
+                // Most severe level wins (levels are declared most severe first)
+                case SEVERITY -> severityLevel = Math.min(severityLevel, match.getCategory());
+                case FOLLOW_UP -> followUpHits[match.getCategory()] = true;
+                case LIFESTYLE -> lifestyleHits[match.getCategory()] = true;
+                default -> {
+                }
+            }
+        }
+
+        // Sort categories by relevance score (ties keep knowledge-base order) and add tags
+        MessageAnalysis analysis = new MessageAnalysis();
+        analysis.identifiedSymptoms = new ArrayList<>(identified);
+        analysis.suggestedTags = new LinkedHashSet<>();
+        Integer[] order = new Integer[symptomScores.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(symptomScores[b], symptomScores[a]));
+        analysis.symptomCategories = new ArrayList<>();
+        for (int category : order) {
+            if (symptomScores[category] > 0) {
+                analysis.suggestedTags.addAll(SYMPTOM_TAGS.get(category));
+                analysis.symptomCategories.add(SYMPTOM_LABELS.get(category));
             }
         }
 
+        // If no symptoms matched, do a general search
+        if (analysis.suggestedTags.isEmpty())
+            analysis.suggestedTags.add(message);
+
+        // Severity assessment
+        analysis.severity = severityLevel < SEVERITY_LEVELS.size() ? SEVERITY_LEVELS.get(severityLevel) : "mild";
+
         // Follow-up questions
         List<String> followUps = new ArrayList<>();
-        for (Map.Entry<String, List<String>> entry : FOLLOW_UP_MAP.entrySet()) {
-            for (String pattern : entry.getKey().split("\\|")) {
-                if (lowerMessage.contains(pattern)) {
-                    followUps.addAll(entry.getValue());
-                    break;
-                }
-            }
+        for (int i = 0; i < followUpHits.length; i++) {
+            if (followUpHits[i])
+                followUps.addAll(FOLLOW_UPS.get(i));
         }
         if (followUps.isEmpty()) {
             followUps = List.of(
@@ -399,35 +525,22 @@ public class RecommendationEngine {
                     "How long have you been experiencing this?",
                     "Are you currently taking any medications?");
         }
+        analysis.followUps = followUps.stream().distinct().limit(3).collect(Collectors.toList());
 
         // Lifestyle tips
         List<String> lifestyleTips = new ArrayList<>();
-        for (Map.Entry<String, List<String>> entry : LIFESTYLE_TIPS_MAP.entrySet()) {
-            for (String pattern : entry.getKey().split("\\|")) {
-                if (lowerMessage.contains(pattern)) {
-                    lifestyleTips.addAll(entry.getValue());
-                    break;
-                }
-            }
+        for (int i = 0; i < lifestyleHits.length; i++) {
+            if (lifestyleHits[i])
+                lifestyleTips.addAll(LIFESTYLE_TIPS.get(i));
         }
         if (lifestyleTips.isEmpty()) {
             lifestyleTips = List.of("Stay hydrated and maintain a balanced diet",
                     "Regular exercise supports overall health",
                     "Consult a healthcare provider for persistent symptoms");
         }
+        analysis.lifestyleTips = lifestyleTips.stream().distinct().limit(4).collect(Collectors.toList());
 
-        // Build AI response message
-        String responseMessage = buildChatResponseMessage(identifiedSymptoms, severity, products.size());
-
-        return AIDTO.ChatResponse.builder()
-                .message(responseMessage)
-                .identifiedSymptoms(identifiedSymptoms)
-                .suggestedCategories(new ArrayList<>(suggestedTags))
-                .suggestedProducts(products)
-                .followUpQuestions(followUps.stream().distinct().limit(3).collect(Collectors.toList()))
-                .severity(severity)
-                .lifestyleTips(lifestyleTips.stream().distinct().limit(4).collect(Collectors.toList()))
-                .build();
+        return analysis;
     }
 
     private String buildChatResponseMessage(List<String> symptoms, String severity, int productCount) {
@@ -456,6 +569,10 @@ public class RecommendationEngine {
         return sb.toString();
     }
 
+    private static List<Long> productIds(List<ProductDTO.ProductResponse> products) {
+        return products.stream().map(ProductDTO.ProductResponse::getId).collect(Collectors.toList());
+    }
+
     /**
      * Check if product contains any of the user's allergens
      */
@@ -474,42 +591,105 @@ public class RecommendationEngine {
     // ========== NEW AI FEATURES ==========
 
     /**
-     * AI Bundles: Combine a main goal product with a complementary one
+     * AI Bundles: lookup of bundles mined from order history by
+     * {@link BundleOptimizer}, keyed by the user's health goals. Falls back to
+     * pairing a goal product with a trending complement until enough orders exist.
      */
     public List<RecommendationDTO.BundleDTO> getBundleRecommendations(Long userId) {
+        Optional<UserHealthProfile> profileOpt = healthProfileRepository.findByUserId(userId);
+        String allergies = profileOpt.map(UserHealthProfile::getAllergies).orElse(null);
+
+        List<BundleOptimizer.MinedBundle> mined = new ArrayList<>();
+        Set<List<Long>> seen = new HashSet<>();
+        if (profileOpt.isPresent() && profileOpt.get().getHealthGoals() != null) {
+            for (String goal : profileOpt.get().getHealthGoals().split(",")) {
+                for (BundleOptimizer.MinedBundle bundle : bundleOptimizer.bundlesForGoal(goal)) {
+                    if (mined.size() < 3 && seen.add(bundle.getProductIds()))
+                        mined.add(bundle);
+                }
+            }
+        }
+
+        if (!mined.isEmpty()) {
+            Set<Long> ids = new HashSet<>();
+            mined.forEach(b -> ids.addAll(b.getProductIds()));
+            Map<Long, Product> products = new HashMap<>();
+            productRepository.findAllById(ids).forEach(p -> products.put(p.getId(), p));
+
+            List<RecommendationDTO.BundleDTO> bundles = new ArrayList<>();
+            for (BundleOptimizer.MinedBundle bundle : mined) {
+                List<Product> members = bundle.getProductIds().stream()
+                        .map(products::get).filter(Objects::nonNull).collect(Collectors.toList());
+                if (members.size() == bundle.getProductIds().size()
+                        && members.stream().noneMatch(p -> containsAllergen(p, allergies))) {
+                    bundles.add(toBundleDTO(members, bundle));
+                }
+            }
+            if (!bundles.isEmpty())
+                return bundles;
+        }
+
+        return getFallbackBundle(userId);
+    }
+
+    private RecommendationDTO.BundleDTO toBundleDTO(List<Product> members, BundleOptimizer.MinedBundle bundle) {
+        List<ProductDTO.ProductResponse> responses = members.stream()
+                .map(productService::toResponse).collect(Collectors.toList());
+        double total = responses.stream()
+                .mapToDouble(p -> p.getDiscountPrice() != null ? p.getDiscountPrice() : p.getPrice())
+                .sum();
+        double discounted = total * (100 - bundle.getDiscountPercentage()) / 100.0;
+        ProductDTO.ProductResponse main = responses.get(0);
+
+        return RecommendationDTO.BundleDTO.builder()
+                .title((responses.size() == 2 ? "Power Pair: " : "Power Trio: ") + responses.stream()
+                        .map(ProductDTO.ProductResponse::getName).collect(Collectors.joining(" + ")))
+                .description("Frequently bought together in " + bundle.getOrderCount()
+                        + " orders — complete your "
+                        + (main.getCategoryName() != null ? main.getCategoryName() : "health")
+                        + " regimen with this AI-curated set.")
+                .products(responses)
+                .totalPrice(total)
+                .discountedPrice(discounted)
+                .discountPercentage(bundle.getDiscountPercentage())
+                .boughtTogetherCount(bundle.getOrderCount())
+                .lift(Math.round(bundle.getLift() * 100.0) / 100.0)
+                .build();
+    }
+
+    /**
+     * Cold-start bundle: the top goal-based product plus a trending product from
+     * another category
+     */
+    private List<RecommendationDTO.BundleDTO> getFallbackBundle(Long userId) {
         List<ProductDTO.ProductResponse> personalRecs = getGoalBasedRecommendations(userId);
         if (personalRecs.isEmpty())
             return List.of();
 
         List<RecommendationDTO.BundleDTO> bundles = new ArrayList<>();
+        ProductDTO.ProductResponse main = personalRecs.get(0);
+        List<ProductDTO.ProductResponse> trending = getTrendingRecommendations();
 
-        // Strategy: Take top 2 recommendations and find complements
-        // For simplicity in this MVP: Bundle the top recommendation with a trending
-        // product that isn't the same
-        if (!personalRecs.isEmpty()) {
-            ProductDTO.ProductResponse main = personalRecs.get(0);
-            List<ProductDTO.ProductResponse> trending = getTrendingRecommendations();
-
-            Optional<ProductDTO.ProductResponse> complement = trending.stream()
-                    .filter(p -> !p.getId().equals(main.getId()) && !p.getCategoryName().equals(main.getCategoryName()))
-                    .findFirst();
-
-            if (complement.isPresent()) {
-                ProductDTO.ProductResponse comp = complement.get();
-                double total = main.getPrice() + comp.getPrice();
-                double discount = total * 0.85; // 15% off bundle
-
-                bundles.add(RecommendationDTO.BundleDTO.builder()
-                        .title("Power Pair: " + main.getName() + " + " + comp.getName())
-                        .description(
-                                "Complete your " + (main.getCategoryName() != null ? main.getCategoryName() : "health")
-                                        + " regimen with this AI-curated set.")
-                        .products(List.of(main, comp))
-                        .totalPrice(total)
-                        .discountedPrice(discount)
-                        .discountPercentage(15)
-                        .build());
-            }
+        Optional<ProductDTO.ProductResponse> complement = trending.stream()
+                .filter(p -> !p.getId().equals(main.getId())
+                        && !Objects.equals(p.getCategoryName(), main.getCategoryName()))
+                .findFirst();
+
+        if (complement.isPresent()) {
+            ProductDTO.ProductResponse comp = complement.get();
+            double total = main.getPrice() + comp.getPrice();
+            double discount = total * 0.85; // 15% off bundle
+
+            bundles.add(RecommendationDTO.BundleDTO.builder()
+                    .title("Power Pair: " + main.getName() + " + " + comp.getName())
+                    .description(
+                            "Complete your " + (main.getCategoryName() != null ? main.getCategoryName() : "health")
+                                    + " regimen with this AI-curated set.")
+                    .products(List.of(main, comp))
+                    .totalPrice(total)
+                    .discountedPrice(discount)
+                    .discountPercentage(15)
+                    .build());
         }
         return bundles;
     }
@@ -536,10 +716,7 @@ public class RecommendationEngine {
         else
             searchTag = "Sleep";
 
-        return productRepository.findByTag(searchTag).stream()
-                .limit(4)
-                .map(productService::toResponse)
-                .collect(Collectors.toList());
+        return productsForTags(List.of(searchTag), 4);
     }
 
     public String getCurrentSeasonName() {
@@ -553,4 +730,14 @@ public class RecommendationEngine {
         else
             return "Autumn Balance 🍂";
     }
+
+    // Helper class
+    private static class MessageAnalysis {
+        List<String> identifiedSymptoms;
+        Set<String> suggestedTags;
+        List<String> symptomCategories;
+        String severity;
+        List<String> followUps;
+        List<String> lifestyleTips;
+    }
 }
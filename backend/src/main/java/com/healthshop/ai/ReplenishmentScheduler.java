@@ -0,0 +1,243 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.OrderPlacedEvent;
+import com.healthshop.model.GapStats;
+import com.healthshop.model.Product;
+import com.healthshop.model.ReplenishmentEntry;
+import com.healthshop.repository.OrderItemRepository;
+import com.healthshop.repository.ProductRepository;
+import com.healthshop.repository.ReplenishmentEntryRepository;
+import com.healthshop.service.AIAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replenishment Scheduler
+ * Keeps one entry per (user, product) with the latest purchase, quantity,
+ * repeat-purchase cadence and expected depletion date, indexed by due date. Orders push entries forward;
+ * an hourly job pops due entries for all users in batches; reorder
+ * suggestions are a per-user range scan on the due date. Orders are applied
+ * with one atomic upsert per product, so concurrent orders cannot lose an update.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReplenishmentScheduler {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int DEFAULT_SUPPLY_DAYS = 30;
+
+    // SQL form of apply(): cadence, carried-forward due date and latest purchase in one statement
+    private static final String UPSERT_SQL = "INSERT INTO replenishment_entries AS e (id, user_id, product_id, "
+            + "last_purchased_at, quantity, supply_days, due_at) "
+            + "VALUES (nextval('replenishment_entries_seq'), ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id, product_id) DO UPDATE SET "
+            + GapStatsSql.foldGap("e", "EXCLUDED.last_purchased_at > e.last_purchased_at",
+                    GapStatsSql.daysBetween("e.last_purchased_at", "EXCLUDED.last_purchased_at")) + ", "
+            + "due_at = GREATEST(e.due_at, EXCLUDED.last_purchased_at) "
+            + "+ (EXCLUDED.due_at - EXCLUDED.last_purchased_at), "
+            + "last_purchased_at = EXCLUDED.last_purchased_at, quantity = EXCLUDED.quantity, "
+            + "supply_days = EXCLUDED.supply_days, notified_at = NULL";
+    private static final String BACKFILL_SQL = "INSERT INTO replenishment_entries (id, user_id, product_id, "
+            + "last_purchased_at, quantity, supply_days, due_at, notified_at, gap_count, gap_mean_days, gap_m2) "
+            + "VALUES (nextval('replenishment_entries_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id, product_id) DO NOTHING";
+
+    // Average supplement supply durations (days per unit)
+    private static final Map<String, Integer> SUPPLY_DURATION = Map.ofEntries(
+            Map.entry("vitamin", 30), Map.entry("supplement", 30), Map.entry("probiotic", 30),
+            Map.entry("protein", 20), Map.entry("pre-workout", 25), Map.entry("collagen", 30),
+            Map.entry("omega", 30), Map.entry("fish oil", 30), Map.entry("calcium", 30),
+            Map.entry("iron", 30), Map.entry("zinc", 30), Map.entry("magnesium", 30),
+            Map.entry("melatonin", 45), Map.entry("multivitamin", 30));
+
+    private final ReplenishmentEntryRepository replenishmentRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+    private final AIAnalyticsService analyticsService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Products the user is expected to run out of within {@code horizonDays},
+     * soonest first.
+     */
+    public List<Long> dueProductIds(Long userId, int horizonDays) {
+        return replenishmentRepository
+                .findByUserIdAndDueAtLessThanEqualOrderByDueAtAsc(userId, LocalDateTime.now().plusDays(horizonDays))
+                .stream()
+                .map(ReplenishmentEntry::getProductId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Products the user has bought more than once whose own repeat cadence puts
+     * the next purchase at or before {@code by}, soonest first.
+     */
+    public List<Long> cadenceDueProductIds(Long userId, LocalDateTime by) {
+        return replenishmentRepository.findByUserId(userId).stream()
+                .filter(e -> e.getCadence() != null && e.getCadence().count() > 0)
+                .map(e -> Map.entry(e.getProductId(),
+                        e.getLastPurchasedAt().plusHours(Math.round(e.getCadence().mean() * 24))))
+                .filter(e -> !e.getValue().isAfter(by))
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Async("orderEventExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < event.getProductIds().size(); i++)
+            quantities.merge(event.getProductIds().get(i), event.getQuantities().get(i), Integer::sum);
+        LocalDateTime purchasedAt = event.getCreatedAt() != null ? event.getCreatedAt() : LocalDateTime.now();
+
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Object[]> upserts = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> {
+            int supplyDays = supplyDays(products.get(productId));
+            upserts.add(new Object[] { event.getUserId(), productId, Timestamp.valueOf(purchasedAt), quantity,
+                    supplyDays, Timestamp.valueOf(purchasedAt.plusDays((long) supplyDays * Math.max(1, quantity))) });
+        });
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+    }
+
+    /**
+     * Pop every due entry, oldest first, in batches: each is marked notified and
+     * reported as a reorder-due AI event.
+     */
+    @Scheduled(initialDelay = 5 * 60 * 1000L, fixedDelay = 60 * 60 * 1000L)
+    @Transactional
+    public void popDue() {
+        LocalDateTime now = LocalDateTime.now();
+        int popped = 0;
+        List<ReplenishmentEntry> batch;
+        do {
+            batch = replenishmentRepository.findByNotifiedAtIsNullAndDueAtLessThanEqualOrderByDueAtAsc(now,
+                    PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty())
+                break;
+            for (ReplenishmentEntry entry : batch) {
+                analyticsService.record(AIAnalyticsService.REORDER_DUE, entry.getUserId(), null, null,
+                        List.of(entry.getProductId()));
+            }
+            // Not saveAll: that would overwrite an order upserted since the batch was read
+            replenishmentRepository.markNotified(
+                    batch.stream().map(ReplenishmentEntry::getId).collect(Collectors.toList()), now);
+            popped += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        if (popped > 0)
+            log.info("Popped {} due replenishment entries", popped);
+    }
+
+    // One-off backfill from order history when the table is first created. Lines are
+    // streamed grouped by (user, product), so only one entry is built at a time.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (replenishmentRepository.count() > 0)
+            return;
+        long start = System.currentTimeMillis();
+        Map<Long, Integer> supplyDays = new HashMap<>();
+        for (Product p : productRepository.findAll())
+            supplyDays.put(p.getId(), supplyDays(p));
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long lines = 0;
+        long entries = 0;
+        ReplenishmentEntry entry = null;
+        try (Stream<Object[]> rows = orderItemRepository.streamPurchaseLines()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] line = it.next();
+                Long userId = (Long) line[0];
+                Long productId = (Long) line[1];
+                if (entry != null && !(entry.getUserId().equals(userId) && entry.getProductId().equals(productId))) {
+                    batch.add(backfillRow(entry, now));
+                    entries++;
+                    if (batch.size() == BATCH_SIZE) {
+                        jdbcTemplate.batchUpdate(BACKFILL_SQL, batch);
+                        batch.clear();
+                    }
+                    entry = null;
+                }
+                // Oldest first within the group, so each purchase builds on the previous one
+                entry = apply(entry, userId, productId, (Integer) line[2], (LocalDateTime) line[3],
+                        supplyDays.getOrDefault(productId, DEFAULT_SUPPLY_DAYS));
+                lines++;
+            }
+        }
+        if (entry != null) {
+            batch.add(backfillRow(entry, now));
+            entries++;
+        }
+        if (batch.isEmpty())
+            return;
+        jdbcTemplate.batchUpdate(BACKFILL_SQL, batch);
+        log.info("Backfilled {} replenishment entries from {} order lines in {} ms", entries, lines,
+                System.currentTimeMillis() - start);
+    }
+
+    // History is not a to-do list: nothing already overdue is reported
+    private static Object[] backfillRow(ReplenishmentEntry e, LocalDateTime now) {
+        GapStats cadence = e.getCadence() != null ? e.getCadence() : new GapStats();
+        return new Object[] { e.getUserId(), e.getProductId(), Timestamp.valueOf(e.getLastPurchasedAt()),
+                e.getQuantity(), e.getSupplyDays(), Timestamp.valueOf(e.getDueAt()),
+                e.getDueAt().isBefore(now) ? Timestamp.valueOf(now) : null,
+                cadence.getGapCount(), cadence.getGapMeanDays(), cadence.getGapM2() };
+    }
+
+    // Supply left over from an earlier purchase carries forward into the new due date
+    private ReplenishmentEntry apply(ReplenishmentEntry entry, Long userId, Long productId, int quantity,
+            LocalDateTime purchasedAt, int supplyDays) {
+        if (entry == null) {
+            entry = ReplenishmentEntry.builder().userId(userId).productId(productId).build();
+        }
+        if (entry.getLastPurchasedAt() != null && purchasedAt.isAfter(entry.getLastPurchasedAt())) {
+            if (entry.getCadence() == null)
+                entry.setCadence(new GapStats());
+            entry.getCadence().add(ChronoUnit.HOURS.between(entry.getLastPurchasedAt(), purchasedAt) / 24.0);
+        }
+        LocalDateTime from = entry.getDueAt() != null && entry.getDueAt().isAfter(purchasedAt)
+                ? entry.getDueAt()
+                : purchasedAt;
+        entry.setLastPurchasedAt(purchasedAt);
+        entry.setQuantity(quantity);
+        entry.setSupplyDays(supplyDays);
+        entry.setDueAt(from.plusDays((long) supplyDays * Math.max(1, quantity)));
+        entry.setNotifiedAt(null);
+        return entry;
+    }
+
+    private int supplyDays(Product p) {
+        if (p == null)
+            return DEFAULT_SUPPLY_DAYS;
+        String searchable = (p.getName() + " " + (p.getTags() != null ? p.getTags() : "")).toLowerCase();
+        // Longest matching keyword wins ("multivitamin" over "vitamin")
+        return SUPPLY_DURATION.entrySet().stream()
+                .filter(e -> searchable.contains(e.getKey()))
+                .max(Comparator.comparingInt(e -> e.getKey().length()))
+                .map(Map.Entry::getValue)
+                .orElse(DEFAULT_SUPPLY_DAYS);
+    }
+}
@@ -0,0 +1,318 @@
+package com.healthshop.ai;
+
+import com.healthshop.dto.ProductDTO;
+import com.healthshop.dto.RecommendationDTO;
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.model.ProductInteraction;
+import com.healthshop.repository.ProductRepository;
+import com.healthshop.service.InteractionLogService;
+import com.healthshop.service.ProductService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Real-time Session Recommendation Engine
+ * Ingests VIEW / CLICK / CART_ADD events into a sliding window per browsing
+ * session and learns item-to-item co-visitation on the fly, so "based on what
+ * you're browsing" picks are scored in memory — anonymous sessions included.
+ * Sessions are capped (least recently active evicted first), only catalog
+ * products are learned, and each client's event rate is limited. Events are
+ * checked against the in-memory catalog and logged through a background queue,
+ * so recording one costs no database round trip.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionRecommendationEngine {
+
+    private final ProductRepository productRepository;
+    private final TagProductIndex tagProductIndex;
+    private final InteractionLogService interactionLog;
+    private final ProductService productService;
+
+    private static final int WINDOW_SIZE = 20;
+    private static final long SESSION_TTL_MILLIS = 30 * 60 * 1000L;
+    private static final int MAX_SESSIONS = 50_000;
+    private static final int MAX_NEIGHBOURS = 50;
+    private static final int MAX_EVENTS_PER_MINUTE = 120;
+    private static final int MAX_RATE_CLIENTS = 10_000;
+
+    // Event weights — a cart add says far more about intent than a passing view
+    private static final Map<String, Double> EVENT_WEIGHTS = Map.of(
+            "VIEW", 1.0,
+            "CLICK", 1.5,
+            "CART_ADD", 3.0);
+
+    // Guarded by itself; ordered by last event, so the eldest entry is the least recently active session
+    private final LinkedHashMap<String, SessionWindow> sessions = new LinkedHashMap<>(1024) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SessionWindow> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+    // Guarded by itself; per-client event counts for the current minute
+    private final LinkedHashMap<String, RateWindow> rates = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RateWindow> eldest) {
+            return size() > MAX_RATE_CLIENTS;
+        }
+    };
+    private final Map<Long, Map<Long, Double>> coVisits = new ConcurrentHashMap<>();
+
+    /**
+     * Record a browsing event. Session events update the in-memory model; every
+     * event is also queued for the interaction log. {@code clientKey} identifies
+     * the caller (user or address) for rate limiting.
+     */
+    public void recordEvent(String sessionId, Long userId, String clientKey,
+            RecommendationDTO.InteractionEventRequest event) {
+        if (sessionId == null || sessionId.isBlank() || event.getProductId() == null) {
+            throw new RuntimeException("sessionId and productId are required");
+        }
+        long now = System.currentTimeMillis();
+        if (!tryAcquire(clientKey, now)) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many browsing events, slow down");
+        }
+        if (!isCatalogProduct(event.getProductId())) {
+            throw new RuntimeException("Product not found");
+        }
+        String type = event.getInteractionType() != null ? event.getInteractionType().toUpperCase() : "VIEW";
+
+        Double weight = EVENT_WEIGHTS.get(type);
+        if (weight != null) {
+            SessionWindow window;
+            synchronized (sessions) {
+                // Re-insert so the session moves to the most recently active end
+                window = sessions.remove(sessionId);
+                if (window == null)
+                    window = new SessionWindow();
+                sessions.put(sessionId, window);
+            }
+            long[] previous = window.push(event.getProductId(), weight, now);
+            learnCoVisits(event.getProductId(), previous, weight);
+        }
+
+        interactionLog.record(ProductInteraction.builder()
+                .userId(userId)
+                .productId(event.getProductId())
+                .interactionType(type)
+                .searchQuery(event.getSearchQuery())
+                .sessionId(sessionId)
+                .build());
+    }
+
+    /**
+     * "Based on what you're browsing" — scores co-visited products against the
+     * session's recent items, most recent first.
+     */
+    public RecommendationDTO.SessionRecommendationResponse getSessionRecommendations(String sessionId, int limit) {
+        SessionWindow window;
+        synchronized (sessions) {
+            window = sessions.get(sessionId);
+        }
+        long now = System.currentTimeMillis();
+        if (window == null || window.isExpired(now)) {
+            return RecommendationDTO.SessionRecommendationResponse.builder()
+                    .sessionId(sessionId)
+                    .recentProductIds(List.of())
+                    .recommendations(productService.getTrendingProducts().stream().limit(limit)
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+
+        WindowSnapshot snapshot = window.snapshot();
+        long[] recent = snapshot.productIds;
+        double[] weights = snapshot.weights;
+        Set<Long> seen = new LinkedHashSet<>();
+        for (long id : recent)
+            seen.add(id);
+
+        // Recency-decayed co-visitation scoring
+        Map<Long, Double> scores = new HashMap<>();
+        for (int i = 0; i < recent.length; i++) {
+            Map<Long, Double> neighbours = coVisits.get(recent[i]);
+            if (neighbours == null)
+                continue;
+            double decay = weights[i] / (1 + i);
+            for (Map.Entry<Long, Double> n : neighbours.entrySet()) {
+                if (!seen.contains(n.getKey())) {
+                    scores.merge(n.getKey(), n.getValue() * decay, Double::sum);
+                }
+            }
+        }
+
+        List<Long> rankedIds = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        List<ProductDTO.ProductResponse> recommendations = loadInOrder(rankedIds);
+        if (recommendations.isEmpty()) {
+            recommendations = productService.getTrendingProducts().stream()
+                    .filter(p -> !seen.contains(p.getId()))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        return RecommendationDTO.SessionRecommendationResponse.builder()
+                .sessionId(sessionId)
+                .recentProductIds(new ArrayList<>(seen))
+                .recommendations(recommendations)
+                .build();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpiredSessions() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        int active;
+        synchronized (sessions) {
+            // Sessions are in last-event order: stop at the first one still live
+            Iterator<SessionWindow> it = sessions.values().iterator();
+            while (it.hasNext() && it.next().isExpired(now)) {
+                it.remove();
+                evicted++;
+            }
+            active = sessions.size();
+        }
+        synchronized (rates) {
+            rates.values().removeIf(r -> now - r.windowStart >= 60_000);
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle browsing sessions ({} active)", evicted, active);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted())
+            coVisits.remove(event.getProductId()); // links pointing at it are filtered when loaded
+    }
+
+    // Served from the tag index snapshot; the database is only asked until the first build
+    private boolean isCatalogProduct(Long productId) {
+        Boolean indexed = tagProductIndex.containsProduct(productId);
+        return indexed != null ? indexed : productRepository.existsById(productId);
+    }
+
+    // Fixed one-minute window per client
+    private boolean tryAcquire(String clientKey, long now) {
+        if (clientKey == null)
+            return true;
+        synchronized (rates) {
+            RateWindow rate = rates.get(clientKey);
+            if (rate == null || now - rate.windowStart >= 60_000) {
+                rates.put(clientKey, new RateWindow(now));
+                return true;
+            }
+            return ++rate.count <= MAX_EVENTS_PER_MINUTE;
+        }
+    }
+
+    private void learnCoVisits(Long productId, long[] previous, double weight) {
+        for (int i = 0; i < previous.length; i++) {
+            long other = previous[i];
+            if (other == productId)
+                continue;
+            double w = weight / (1 + i);
+            addNeighbour(productId, other, w);
+            addNeighbour(other, productId, w);
+        }
+    }
+
+    private void addNeighbour(Long from, Long to, double weight) {
+        Map<Long, Double> neighbours = coVisits.computeIfAbsent(from, k -> new ConcurrentHashMap<>());
+        neighbours.merge(to, weight, Double::sum);
+        if (neighbours.size() > MAX_NEIGHBOURS) {
+            // Keep each neighbour list bounded by dropping the weakest other link
+            neighbours.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(to))
+                    .min(Map.Entry.comparingByValue())
+                    .ifPresent(weakest -> neighbours.remove(weakest.getKey()));
+        }
+    }
+
+    private List<ProductDTO.ProductResponse> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty())
+            return List.of();
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+                .filter(p -> Boolean.TRUE.equals(p.getActive()))
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(productService::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    // ===== Helper classes =====
+
+    /**
+     * Fixed-size ring buffer of the most recent product events in a session.
+     */
+    private static class SessionWindow {
+        private final long[] productIds = new long[WINDOW_SIZE];
+        private final double[] weights = new double[WINDOW_SIZE];
+        private int head;
+        private int size;
+        private volatile long lastSeen;
+
+        /** Appends the event and returns the items that were already in the window, most recent first. */
+        synchronized long[] push(long productId, double weight, long now) {
+            long[] previous = snapshot().productIds;
+            productIds[head] = productId;
+            weights[head] = weight;
+            head = (head + 1) % WINDOW_SIZE;
+            if (size < WINDOW_SIZE)
+                size++;
+            lastSeen = now;
+            return previous;
+        }
+
+        synchronized WindowSnapshot snapshot() {
+            long[] ids = new long[size];
+            double[] w = new double[size];
+            for (int i = 0; i < size; i++) {
+                int slot = (head - 1 - i + WINDOW_SIZE) % WINDOW_SIZE;
+                ids[i] = productIds[slot];
+                w[i] = weights[slot];
+            }
+            return new WindowSnapshot(ids, w);
+        }
+
+        boolean isExpired(long now) {
+            return now - lastSeen > SESSION_TTL_MILLIS;
+        }
+    }
+
+    private static class RateWindow {
+        final long windowStart;
+        int count = 1;
+
+        RateWindow(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+
+    private static class WindowSnapshot {
+        final long[] productIds;
+        final double[] weights;
+
+        WindowSnapshot(long[] productIds, double[] weights) {
+            this.productIds = productIds;
+            this.weights = weights;
+        }
+    }
+}
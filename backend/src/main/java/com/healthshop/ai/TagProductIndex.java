@@ -0,0 +1,219 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tag → Product Posting Lists
+ * In-memory replacement for the per-tag LIKE scan behind symptom search and
+ * chat. Every active product's tags, health goals, name and ingredients are
+ * held lowercased; each knowledge-base tag maps to the matching product ids,
+ * most purchased first. Built at startup and patched on product writes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TagProductIndex {
+
+    private final ProductRepository productRepository;
+
+    // Tags whose posting lists are precomputed and kept up to date
+    private final Set<String> registeredTags = ConcurrentHashMap.newKeySet();
+
+    private volatile Snapshot snapshot;
+
+    // Guarded by this: product writes seen while a rebuild reads the catalog
+    private boolean rebuilding;
+    private final Set<Long> patchedDuringRebuild = new HashSet<>();
+
+    /**
+     * Register tags (e.g. the symptom knowledge base) for precomputed posting lists.
+     */
+    public void registerTags(Collection<String> tags) {
+        for (String tag : tags) {
+            registeredTags.add(tag.trim().toLowerCase());
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Active product ids matching the tag, most purchased first. Registered tags are
+     * served from their posting list; any other text is matched against the
+     * in-memory documents. Returns {@code null} before the index is built.
+     */
+    public List<Long> productIdsForTag(String tag) {
+        Snapshot current = snapshot;
+        if (current == null)
+            return null;
+        String key = tag.trim().toLowerCase();
+        long[] postings = current.postings.get(key);
+        if (postings == null)
+            postings = current.match(key);
+        List<Long> ids = new ArrayList<>(postings.length);
+        for (long id : postings)
+            ids.add(id);
+        return ids;
+    }
+
+    /**
+     * Whether the product is an active catalog product. Returns {@code null} before
+     * the index is built.
+     */
+    public Boolean containsProduct(Long productId) {
+        Snapshot current = snapshot;
+        if (current == null)
+            return null;
+        return current.docs.containsKey(productId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 30 * 60 * 1000L, fixedDelay = 30 * 60 * 1000L) // re-rank by purchase count
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            rebuilding = true;
+            patchedDuringRebuild.clear();
+        }
+        Map<Long, ProductDoc> docs = new HashMap<>();
+        try {
+            for (Product p : productRepository.findAll()) {
+                if (Boolean.TRUE.equals(p.getActive()))
+                    docs.put(p.getId(), ProductDoc.of(p));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                rebuilding = false;
+            }
+            throw e;
+        }
+        Snapshot built = Snapshot.build(docs, registeredTags);
+        synchronized (this) {
+            snapshot = built;
+        }
+        // Products written while the catalog was being read may be stale in the new snapshot
+        while (true) {
+            List<Long> stale;
+            synchronized (this) {
+                if (patchedDuringRebuild.isEmpty()) {
+                    rebuilding = false;
+                    break;
+                }
+                stale = List.copyOf(patchedDuringRebuild);
+                patchedDuringRebuild.clear();
+            }
+            stale.forEach(this::patch);
+        }
+        log.info("Indexed {} products under {} tags in {} ms", docs.size(), built.postings.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (this) {
+            if (rebuilding)
+                patchedDuringRebuild.add(event.getProductId());
+        }
+        patch(event.getProductId());
+    }
+
+    private void patch(Long productId) {
+        if (snapshot == null)
+            return;
+        Product product = productRepository.findById(productId).orElse(null);
+        synchronized (this) {
+            Map<Long, ProductDoc> docs = new HashMap<>(snapshot.docs);
+            if (product != null && Boolean.TRUE.equals(product.getActive())) {
+                docs.put(product.getId(), ProductDoc.of(product));
+            } else {
+                docs.remove(productId);
+            }
+            snapshot = snapshot.withDocs(docs, productId, registeredTags);
+        }
+    }
+
+    // ===== Helper classes =====
+
+    private static class ProductDoc {
+        final long id;
+        final String text; // lowercased searchable fields, newline separated
+        final int purchaseCount;
+
+        ProductDoc(long id, String text, int purchaseCount) {
+            this.id = id;
+            this.text = text;
+            this.purchaseCount = purchaseCount;
+        }
+
+        static ProductDoc of(Product p) {
+            String text = String.join("\n",
+                    Objects.toString(p.getTags(), ""),
+                    Objects.toString(p.getHealthGoals(), ""),
+                    Objects.toString(p.getName(), ""),
+                    Objects.toString(p.getIngredients(), "")).toLowerCase();
+            return new ProductDoc(p.getId(), text, p.getPurchaseCount() != null ? p.getPurchaseCount() : 0);
+        }
+    }
+
+    /**
+     * Immutable view of the index; writers publish a new one.
+     */
+    private static class Snapshot {
+        private static final Comparator<ProductDoc> RANKING = Comparator
+                .comparingInt((ProductDoc d) -> d.purchaseCount).reversed()
+                .thenComparingLong(d -> d.id);
+
+        final Map<Long, ProductDoc> docs;
+        final List<ProductDoc> ranked;
+        final Map<String, long[]> postings;
+
+        private Snapshot(Map<Long, ProductDoc> docs, Map<String, long[]> postings) {
+            this.docs = docs;
+            this.ranked = docs.values().stream().sorted(RANKING).toList();
+            this.postings = postings;
+        }
+
+        static Snapshot build(Map<Long, ProductDoc> docs, Set<String> tags) {
+            Snapshot s = new Snapshot(Map.copyOf(docs), new HashMap<>());
+            for (String tag : tags)
+                s.postings.put(tag, s.match(tag));
+            return s;
+        }
+
+        /**
+         * Copy with one product changed: only posting lists that contained the product
+         * before, or match it now, are recomputed.
+         */
+        Snapshot withDocs(Map<Long, ProductDoc> newDocs, Long changedId, Set<String> tags) {
+            Snapshot s = new Snapshot(Map.copyOf(newDocs), new HashMap<>(postings));
+            ProductDoc changed = newDocs.get(changedId);
+            for (String tag : tags) {
+                long[] old = postings.get(tag);
+                boolean wasListed = old != null && Arrays.stream(old).anyMatch(id -> id == changedId);
+                boolean matchesNow = changed != null && changed.text.contains(tag);
+                if (old == null || wasListed || matchesNow)
+                    s.postings.put(tag, s.match(tag));
+            }
+            return s;
+        }
+
+        long[] match(String tag) {
+            return ranked.stream().filter(d -> d.text.contains(tag)).mapToLong(d -> d.id).toArray();
+        }
+    }
+}
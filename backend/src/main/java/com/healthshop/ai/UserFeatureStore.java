@@ -0,0 +1,417 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.HealthProfileUpdatedEvent;
+import com.healthshop.event.OrderPlacedEvent;
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.model.UserHealthProfile;
+import com.healthshop.repository.OrderItemRepository;
+import com.healthshop.repository.ProductRepository;
+import com.healthshop.repository.UserHealthProfileRepository;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Per-User Feature Store
+ * Small in-memory feature record per user: purchased products, goal-match
+ * counts, nutrient coverage bitmask, category histogram and order cadence.
+ * Loaded from one query on first use, then patched incrementally when the user
+ * places an order or edits their health profile, so health scoring is plain
+ * arithmetic on the cached record. Records and product features are reloaded
+ * after {@code MAX_AGE}, so a dropped change event cannot leave them stale.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserFeatureStore {
+
+    private final OrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+    private final UserHealthProfileRepository healthProfileRepository;
+
+    private static final int MAX_CACHED_USERS = 10_000;
+    private static final Duration MAX_AGE = Duration.ofMinutes(30);
+
+    // Nutrient vocabulary: bit index of every nutrient named in GOAL_NUTRIENTS
+    private static final List<String> NUTRIENTS = HealthScoreCalculator.GOAL_NUTRIENTS.values().stream()
+            .flatMap(List::stream)
+            .distinct()
+            .collect(Collectors.toUnmodifiableList());
+
+    private final Map<Long, UserFeatures> users = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, UserFeatures> eldest) {
+            return size() > MAX_CACHED_USERS;
+        }
+    };
+
+    private final Map<Long, ProductFeatures> products = new ConcurrentHashMap<>();
+
+    // Bumped on every change event; a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The user's feature record, loaded on first use.
+     */
+    public UserFeatures get(Long userId) {
+        synchronized (users) {
+            UserFeatures cached = users.get(userId);
+            if (cached != null && !cached.isOlderThan(MAX_AGE))
+                return cached;
+        }
+        long startGeneration = generation.get();
+        UserFeatures loaded = load(userId);
+        synchronized (users) {
+            if (generation.get() == startGeneration)
+                users.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    // Loads product features, so it runs after commit off the checkout thread. A
+    // record loaded in the meantime already has the order and is left as it is.
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        generation.incrementAndGet();
+        UserFeatures current;
+        synchronized (users) {
+            current = users.get(event.getUserId());
+        }
+        if (current == null)
+            return; // loaded fresh on next use
+        Map<Long, ProductFeatures> features = productFeatures(event.getProductIds());
+        synchronized (users) {
+            users.computeIfPresent(event.getUserId(),
+                    (id, f) -> f.withOrder(event.getOrderId(), event.getCreatedAt(), event.getProductIds(), features));
+        }
+    }
+
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProfileUpdated(HealthProfileUpdatedEvent event) {
+        generation.incrementAndGet();
+        UserFeatures current;
+        synchronized (users) {
+            current = users.get(event.getUserId());
+        }
+        if (current == null)
+            return;
+        ProfileFeatures profile = profileFeatures(healthProfileRepository.findByUserId(event.getUserId()).orElse(null));
+        Map<Long, ProductFeatures> features = productFeatures(current.productLineCounts.keySet());
+        synchronized (users) {
+            users.computeIfPresent(event.getUserId(), (id, f) -> f.withProfile(profile, features));
+        }
+    }
+
+    // Scans every cached user, so it runs after commit off the writer's thread
+    @Async("indexUpdateExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        generation.incrementAndGet();
+        products.remove(event.getProductId());
+        synchronized (users) {
+            users.values().removeIf(f -> f.productLineCounts.containsKey(event.getProductId()));
+        }
+    }
+
+    // Safety net for change events dropped by a full index update queue
+    @Scheduled(initialDelay = 10 * 60 * 1000L, fixedDelay = 10 * 60 * 1000L)
+    public void evictStale() {
+        generation.incrementAndGet();
+        products.clear();
+        synchronized (users) {
+            users.values().removeIf(f -> f.isOlderThan(MAX_AGE));
+        }
+    }
+
+    // ===== Loading =====
+
+    private UserFeatures load(Long userId) {
+        return compute(healthProfileRepository.findByUserId(userId).orElse(null),
+                orderItemRepository.findPurchaseRowsByUser(userId));
+    }
+
+    /**
+     * Build an uncached feature record from already-fetched data (batch jobs).
+     * {@code rows} are productId, orderId, order createdAt per order line.
+     */
+    public UserFeatures compute(UserHealthProfile healthProfile, List<Object[]> rows) {
+        ProfileFeatures profile = profileFeatures(healthProfile);
+        Set<Long> productIds = rows.stream().map(r -> (Long) r[0]).collect(Collectors.toSet());
+        Map<Long, ProductFeatures> features = productFeatures(productIds);
+
+        UserFeatures f = new UserFeatures(profile);
+        Map<Long, LocalDateTime> orders = new HashMap<>();
+        for (Object[] row : rows) {
+            f.addLine((Long) row[0], features.get((Long) row[0]));
+            orders.putIfAbsent((Long) row[1], (LocalDateTime) row[2]);
+        }
+        orders.forEach(f::addOrder);
+        return f;
+    }
+
+    private Map<Long, ProductFeatures> productFeatures(Collection<Long> productIds) {
+        Set<Long> missing = productIds.stream().filter(id -> !products.containsKey(id)).collect(Collectors.toSet());
+        if (!missing.isEmpty()) {
+            Set<Long> found = new HashSet<>();
+            for (Product p : productRepository.findAllById(missing)) {
+                products.put(p.getId(), ProductFeatures.of(p));
+                found.add(p.getId());
+            }
+            // Remember products that no longer exist so they are not looked up again
+            missing.stream().filter(id -> !found.contains(id)).forEach(id -> products.put(id, ProductFeatures.MISSING));
+        }
+        Map<Long, ProductFeatures> result = new HashMap<>();
+        for (Long id : productIds) {
+            ProductFeatures pf = products.get(id);
+            if (pf != null && pf != ProductFeatures.MISSING)
+                result.put(id, pf);
+        }
+        return result;
+    }
+
+    private ProfileFeatures profileFeatures(UserHealthProfile profile) {
+        if (profile == null)
+            return ProfileFeatures.NONE;
+        List<String> goals = profile.getHealthGoals() == null ? List.of()
+                : Arrays.stream(profile.getHealthGoals().split(","))
+                        .map(String::trim)
+                        .filter(g -> !g.isEmpty())
+                        .collect(Collectors.toUnmodifiableList());
+        BitSet needed = new BitSet(NUTRIENTS.size());
+        for (String goal : goals) {
+            for (String nutrient : HealthScoreCalculator.GOAL_NUTRIENTS.getOrDefault(goal, List.of()))
+                needed.set(NUTRIENTS.indexOf(nutrient));
+        }
+        return new ProfileFeatures(true, completeness(profile), goals, needed);
+    }
+
+    private static int completeness(UserHealthProfile profile) {
+        int score = 10; // base for having a profile
+        if (profile.getAge() != null)
+            score += 15;
+        if (profile.getGender() != null && !profile.getGender().isEmpty())
+            score += 10;
+        if (profile.getHeight() != null)
+            score += 10;
+        if (profile.getWeight() != null)
+            score += 10;
+        if (profile.getHealthGoals() != null && !profile.getHealthGoals().isEmpty())
+            score += 20;
+        if (profile.getAllergies() != null && !profile.getAllergies().isEmpty())
+            score += 10;
+        if (profile.getDietaryPreferences() != null && !profile.getDietaryPreferences().isEmpty())
+            score += 10;
+        if (profile.getMedicalConditions() != null && !profile.getMedicalConditions().isEmpty())
+            score += 5;
+        return Math.min(100, score);
+    }
+
+    // ===== Feature records =====
+
+    private static final class ProductFeatures {
+        static final ProductFeatures MISSING = new ProductFeatures(null, new BitSet(), null);
+
+        final String healthGoals; // lowercased, null if the product has none
+        final BitSet nutrients;
+        final Long categoryId;
+
+        ProductFeatures(String healthGoals, BitSet nutrients, Long categoryId) {
+            this.healthGoals = healthGoals;
+            this.nutrients = nutrients;
+            this.categoryId = categoryId;
+        }
+
+        static ProductFeatures of(Product p) {
+            String searchable = ((p.getName() != null ? p.getName() : "") + " " +
+                    (p.getIngredients() != null ? p.getIngredients() : "") + " " +
+                    (p.getTags() != null ? p.getTags() : "")).toLowerCase();
+            BitSet nutrients = new BitSet(NUTRIENTS.size());
+            for (int i = 0; i < NUTRIENTS.size(); i++) {
+                if (searchable.contains(NUTRIENTS.get(i).toLowerCase()))
+                    nutrients.set(i);
+            }
+            return new ProductFeatures(p.getHealthGoals() != null ? p.getHealthGoals().toLowerCase() : null,
+                    nutrients, p.getCategory() != null ? p.getCategory().getId() : null);
+        }
+
+        boolean matchesAny(List<String> goals) {
+            if (healthGoals == null)
+                return false;
+            for (String goal : goals) {
+                if (healthGoals.contains(goal.toLowerCase()))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class ProfileFeatures {
+        static final ProfileFeatures NONE = new ProfileFeatures(false, 10, List.of(), new BitSet());
+
+        final boolean present;
+        final int completeness;
+        final List<String> goals;
+        final BitSet neededNutrients;
+
+        ProfileFeatures(boolean present, int completeness, List<String> goals, BitSet neededNutrients) {
+            this.present = present;
+            this.completeness = completeness;
+            this.goals = goals;
+            this.neededNutrients = neededNutrients;
+        }
+    }
+
+    /**
+     * Immutable once published; updates produce a patched copy.
+     */
+    @Getter
+    public static final class UserFeatures {
+        private final boolean hasProfile;
+        private final int profileCompleteness;
+        private final List<String> healthGoals;
+        private final BitSet neededNutrients;
+
+        private final Map<Long, Integer> productLineCounts = new HashMap<>();
+        private int lineCount;
+        private int goalAlignedLines; // lines whose product serves one of the user's goals
+        private int goalTaggedLines; // lines whose product lists any health goal
+        private final BitSet coveredNutrients = new BitSet();
+        private final Map<Long, Integer> categoryCounts = new HashMap<>();
+
+        private int orderCount;
+        private LocalDateTime firstOrderAt;
+        private LocalDateTime lastOrderAt;
+
+        @Getter(AccessLevel.NONE)
+        private final Set<Long> orderIds = new HashSet<>();
+        @Getter(AccessLevel.NONE)
+        private long loadedAtMillis = System.currentTimeMillis(); // kept by patched copies
+
+        private UserFeatures(ProfileFeatures profile) {
+            this.hasProfile = profile.present;
+            this.profileCompleteness = profile.completeness;
+            this.healthGoals = profile.goals;
+            this.neededNutrients = profile.neededNutrients;
+        }
+
+        public Set<Long> getPurchasedProductIds() {
+            return Collections.unmodifiableSet(productLineCounts.keySet());
+        }
+
+        public Map<Long, Integer> getProductLineCounts() {
+            return Collections.unmodifiableMap(productLineCounts);
+        }
+
+        public Map<Long, Integer> getCategoryCounts() {
+            return Collections.unmodifiableMap(categoryCounts);
+        }
+
+        public BitSet getCoveredNutrients() {
+            return (BitSet) coveredNutrients.clone();
+        }
+
+        public BitSet getNeededNutrients() {
+            return (BitSet) neededNutrients.clone();
+        }
+
+        /**
+         * Needed nutrients covered by at least one purchased product.
+         */
+        public int getCoveredNeededNutrientCount() {
+            BitSet covered = (BitSet) neededNutrients.clone();
+            covered.and(coveredNutrients);
+            return covered.cardinality();
+        }
+
+        /**
+         * Mean days between distinct orders, or -1 with fewer than two orders.
+         */
+        public double getMeanOrderGapDays() {
+            if (orderCount < 2)
+                return -1;
+            return ChronoUnit.HOURS.between(firstOrderAt, lastOrderAt) / 24.0 / (orderCount - 1);
+        }
+
+        private void addLine(Long productId, ProductFeatures pf) {
+            productLineCounts.merge(productId, 1, Integer::sum);
+            lineCount++;
+            if (pf == null)
+                return; // product no longer exists
+            if (pf.healthGoals != null) {
+                goalTaggedLines++;
+                if (pf.matchesAny(healthGoals))
+                    goalAlignedLines++;
+            }
+            coveredNutrients.or(pf.nutrients);
+            if (pf.categoryId != null)
+                categoryCounts.merge(pf.categoryId, 1, Integer::sum);
+        }
+
+        private boolean isOlderThan(Duration age) {
+            return System.currentTimeMillis() - loadedAtMillis > age.toMillis();
+        }
+
+        private void addOrder(Long orderId, LocalDateTime createdAt) {
+            if (!orderIds.add(orderId))
+                return;
+            orderCount++;
+            if (firstOrderAt == null || createdAt.isBefore(firstOrderAt))
+                firstOrderAt = createdAt;
+            if (lastOrderAt == null || createdAt.isAfter(lastOrderAt))
+                lastOrderAt = createdAt;
+        }
+
+        private UserFeatures withOrder(Long orderId, LocalDateTime createdAt, List<Long> productIds,
+                Map<Long, ProductFeatures> features) {
+            if (orderIds.contains(orderId))
+                return this;
+            UserFeatures copy = copy(new ProfileFeatures(hasProfile, profileCompleteness, healthGoals, neededNutrients));
+            for (Long id : productIds)
+                copy.addLine(id, features.get(id));
+            copy.addOrder(orderId, createdAt != null ? createdAt : LocalDateTime.now());
+            return copy;
+        }
+
+        private UserFeatures withProfile(ProfileFeatures profile, Map<Long, ProductFeatures> features) {
+            UserFeatures copy = copy(profile);
+            // Goal alignment depends on the profile's goals: recount from the line counts
+            copy.goalAlignedLines = 0;
+            productLineCounts.forEach((id, lines) -> {
+                ProductFeatures pf = features.get(id);
+                if (pf != null && pf.matchesAny(profile.goals))
+                    copy.goalAlignedLines += lines;
+            });
+            return copy;
+        }
+
+        private UserFeatures copy(ProfileFeatures profile) {
+            UserFeatures copy = new UserFeatures(profile);
+            copy.productLineCounts.putAll(productLineCounts);
+            copy.lineCount = lineCount;
+            copy.goalAlignedLines = goalAlignedLines;
+            copy.goalTaggedLines = goalTaggedLines;
+            copy.coveredNutrients.or(coveredNutrients);
+            copy.categoryCounts.putAll(categoryCounts);
+            copy.orderCount = orderCount;
+            copy.firstOrderAt = firstOrderAt;
+            copy.lastOrderAt = lastOrderAt;
+            copy.orderIds.addAll(orderIds);
+            copy.loadedAtMillis = loadedAtMillis;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.healthshop.ai;
+
+import com.healthshop.model.Product;
+import com.healthshop.model.UserHealthProfile;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Everything the health dashboard needs about one user, loaded once and shared
+ * by the score, purchase-pattern, picks, tips and nutrition-gap computations.
+ * Read-only after construction, so the parts can run concurrently.
+ */
+@Getter
+@AllArgsConstructor
+public class UserHealthContext {
+
+    private final Long userId;
+    private final UserHealthProfile profile; // null if the user has no profile
+    private final UserFeatureStore.UserFeatures features;
+    private final List<Long> purchasedProductIds; // one entry per order line
+    private final Map<Long, Product> purchasedProducts; // purchased products that still exist
+
+    public boolean hasHealthGoals() {
+        return profile != null && profile.getHealthGoals() != null;
+    }
+
+    public Set<Long> purchasedProductIdSet() {
+        return purchasedProducts.keySet();
+    }
+}
@@ -0,0 +1,108 @@
+package com.healthshop.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+@Slf4j
+public class AsyncConfig {
+
+    /**
+     * Bounded pool for AI work taken off the request thread (streaming chat).
+     * When saturated, tasks are rejected rather than run on
+     * the caller, so callers answer 503 or fall back instead of tying up the
+     * request thread.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor aiTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("ai-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the concurrent parts of the health insights dashboard. Kept apart from
+     * the AI pool so that parts stalled on a slow database cannot starve chat;
+     * when saturated, parts are rejected and the dashboard shows them as
+     * unavailable.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor insightsPartExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(10);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("insights-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Dedicated thread for admin-triggered health-score batch runs, so a long
+     * batch never occupies the AI pool or the admin's request thread.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor healthScoreBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("health-batch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Single thread that applies product, order and profile changes to the
+     * in-memory indices and caches after commit, in publish order. When the
+     * queue is full the update is dropped: the indices pick it up on their
+     * scheduled rebuild, UserFeatureStore when its records expire.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor indexUpdateExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("index-");
+        executor.setRejectedExecutionHandler((task, pool) -> log.warn("Index update queue full, dropping update"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Applies committed orders to the per-user purchase tables off the checkout
+     * thread. Those tables have no rebuild, so when the queue is full the update
+     * runs on the caller instead of being dropped.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor orderEventExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1_000);
+        executor.setThreadNamePrefix("order-events-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
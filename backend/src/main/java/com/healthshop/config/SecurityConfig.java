@@ -62,11 +62,15 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/reviews/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/recommendations/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/recommendations/session/**").permitAll()
                         .requestMatchers("/api/chat/**").permitAll()
                         // AI public endpoints (comparison, interaction check, chat don't require auth)
                         .requestMatchers(HttpMethod.POST, "/api/ai/compare").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/ai/compare/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/ai/interaction-check").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/ai/chat").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/ai/chat/stream").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/ai/dosage/cart").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/ai/dosage/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
                         // Admin endpoints
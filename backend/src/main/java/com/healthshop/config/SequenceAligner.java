@@ -0,0 +1,64 @@
+package com.healthshop.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+
+/**
+ * Moves each entity id sequence past the table's current max id. Tables that
+ * were filled while ids came from identity columns would otherwise get
+ * colliding ids from their new, freshly created sequences. Runs before the
+ * data seeder and any other startup writers.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SequenceAligner {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void align() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            Table table = type.getAnnotation(Table.class);
+            SequenceGenerator sequence = idSequence(type);
+            if (table == null || sequence == null)
+                continue;
+            try {
+                long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table.name(),
+                        Long.class);
+                long lastValue = jdbcTemplate.queryForObject("SELECT last_value FROM " + sequence.sequenceName(),
+                        Long.class);
+                if (lastValue <= maxId) {
+                    // The pooled optimizer hands out (value - allocationSize, value] for each nextval
+                    jdbcTemplate.queryForObject("SELECT setval('" + sequence.sequenceName() + "', ?)", Long.class,
+                            maxId + sequence.allocationSize());
+                    log.info("Aligned sequence {} past max id {} of {}", sequence.sequenceName(), maxId,
+                            table.name());
+                }
+            } catch (Exception e) {
+                log.warn("Could not align sequence {}: {}", sequence.sequenceName(), e.getMessage());
+            }
+        }
+    }
+
+    private static SequenceGenerator idSequence(Class<?> type) {
+        for (Field field : type.getDeclaredFields()) {
+            SequenceGenerator sequence = field.getAnnotation(SequenceGenerator.class);
+            if (sequence != null)
+                return sequence;
+        }
+        return null;
+    }
+}
@@ -6,14 +6,29 @@ import com.healthshop.model.User;
 import com.healthshop.repository.UserRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.healthshop.dto.ProductDTO;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/ai")
 @RequiredArgsConstructor
+@Slf4j
 @Tag(name = "AI Features", description = "Advanced AI-powered health analysis and recommendations")
 public class AIController {
 
@@ -26,6 +41,11 @@ public class AIController {
     private final RecommendationEngine recommendationEngine;
     private final UserRepository userRepository;
     private final com.healthshop.service.AIAdminService aiAdminService;
+    private final com.healthshop.service.HealthScoreHistoryService healthScoreHistoryService;
+    private final ThreadPoolTaskExecutor aiTaskExecutor;
+
+    private static final long CHAT_STREAM_TIMEOUT_MILLIS = 60_000L;
+    private static final int CHAT_STREAM_MAX_PRODUCTS = 12;
 
     // ========== ADMIN AI DASHBOARD ==========
     @GetMapping("/admin/stats")
@@ -43,6 +63,16 @@ public class AIController {
         return ResponseEntity.ok(healthScoreCalculator.calculateHealthScore(userId));
     }
 
+    @GetMapping("/health-score/history")
+    @Operation(summary = "Get daily health score snapshots and trend for a date range (default: last 90 days)")
+    public ResponseEntity<AIDTO.HealthScoreHistoryResponse> getHealthScoreHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication auth) {
+        Long userId = getUserId(auth);
+        return ResponseEntity.ok(healthScoreHistoryService.getHistory(userId, from, to));
+    }
+
     // ========== DRUG INTERACTION CHECKER ==========
     @PostMapping("/interaction-check")
     @Operation(summary = "Check supplement/medication interactions")
@@ -51,14 +81,27 @@ public class AIController {
         return ResponseEntity.ok(interactionChecker.checkInteractions(request));
     }
 
+    @PostMapping("/interaction-check/regimen")
+    @Operation(summary = "Check your whole regimen: cart, last 90 days of purchases and stored medications")
+    public ResponseEntity<AIDTO.RegimenCheckResponse> checkRegimen(Authentication auth) {
+        Long userId = getUserId(auth);
+        return ResponseEntity.ok(interactionChecker.checkRegimen(userId));
+    }
+
     // ========== SMART PRODUCT COMPARISON ==========
     @PostMapping("/compare")
-    @Operation(summary = "AI-powered comparison of 2-4 products")
+    @Operation(summary = "AI-powered comparison of 2-50 products, scored against their categories")
     public ResponseEntity<AIDTO.ComparisonResponse> compareProducts(
             @RequestBody AIDTO.ComparisonRequest request) {
         return ResponseEntity.ok(comparisonEngine.compareProducts(request.getProductIds()));
     }
 
+    @GetMapping("/compare/{productId}/category-top")
+    @Operation(summary = "Compare a product against the top 10 of its category")
+    public ResponseEntity<AIDTO.ComparisonResponse> compareWithCategoryTop(@PathVariable Long productId) {
+        return ResponseEntity.ok(comparisonEngine.compareWithCategoryTop(productId));
+    }
+
     // ========== DOSAGE CALCULATOR ==========
     @GetMapping("/dosage/{productId}")
     @Operation(summary = "Get personalized dosage recommendations for a product")
@@ -68,6 +111,13 @@ public class AIController {
         return ResponseEntity.ok(dosageCalculator.calculateDosage(productId, userId));
     }
 
+    @GetMapping("/dosage/cart")
+    @Operation(summary = "Personalized dosages and a conflict-aware daily schedule for everything in your cart")
+    public ResponseEntity<AIDTO.CartDosageResponse> getCartDosages(Authentication auth) {
+        Long userId = getUserId(auth);
+        return ResponseEntity.ok(dosageCalculator.calculateCartDosages(userId));
+    }
+
     // ========== PURCHASE PATTERN ANALYSIS ==========
     @GetMapping("/purchase-insights")
     @Operation(summary = "AI analysis of your purchase patterns and reorder predictions")
@@ -109,6 +159,58 @@ public class AIController {
         return ResponseEntity.ok(recommendationEngine.enhancedChat(request.getMessage(), userId));
     }
 
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Streaming AI health chat (SSE): analysis first, then products per tag, then done")
+    public SseEmitter streamChat(@RequestBody AIDTO.ChatRequest request, Authentication auth) {
+        SseEmitter emitter = new SseEmitter(CHAT_STREAM_TIMEOUT_MILLIS);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        emitter.onCompletion(() -> cancelled.set(true));
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(e -> cancelled.set(true));
+
+        String message = request.getMessage() != null ? request.getMessage() : "";
+        Long userId = auth != null ? getUserIdSafe(auth) : null;
+        try {
+            aiTaskExecutor.execute(() -> streamChat(emitter, cancelled, message, userId));
+        } catch (TaskRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "AI chat is busy, please try again shortly");
+        }
+        return emitter;
+    }
+
+    private void streamChat(SseEmitter emitter, AtomicBoolean cancelled, String message, Long userId) {
+        try {
+            // Keyword matching only — this is the first byte the client sees
+            AIDTO.ChatResponse analysis = recommendationEngine.analyzeChat(message, userId);
+            emitter.send(SseEmitter.event().name("analysis").data(analysis));
+
+            Set<Long> sent = new HashSet<>();
+            for (String tag : analysis.getSuggestedCategories()) {
+                if (cancelled.get() || sent.size() >= CHAT_STREAM_MAX_PRODUCTS)
+                    break;
+                List<ProductDTO.ProductResponse> products = recommendationEngine.chatProductsForTag(
+                        tag, sent, CHAT_STREAM_MAX_PRODUCTS - sent.size());
+                if (!products.isEmpty()) {
+                    emitter.send(SseEmitter.event().name("products")
+                            .data(AIDTO.ChatProductsEvent.builder().tag(tag).products(products).build()));
+                }
+            }
+
+            if (!cancelled.get()) {
+                emitter.send(SseEmitter.event().name("done").data(AIDTO.ChatDoneEvent.builder()
+                        .productCount(sent.size())
+                        .message(recommendationEngine.chatProductSummary(sent.size()))
+                        .build()));
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away mid-stream
+            log.debug("Chat stream closed early: {}", e.getMessage());
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
     private Long getUserId(Authentication auth) {
         User user = userRepository.findByEmail(auth.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
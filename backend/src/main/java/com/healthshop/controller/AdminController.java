@@ -1,17 +1,31 @@
 package com.healthshop.controller;
 
+import com.healthshop.ai.HealthScoreBatchJob;
+import com.healthshop.ai.InteractionRuleBase;
+import com.healthshop.dto.AIDTO;
+import com.healthshop.dto.AuthDTO;
 import com.healthshop.dto.ProductDTO;
+import com.healthshop.event.ProductChangedEvent;
 import com.healthshop.model.Category;
 import com.healthshop.model.Product;
 import com.healthshop.repository.*;
+import com.healthshop.service.FlashSaleStockService;
+import com.healthshop.service.HealthScoreHistoryService;
 import com.healthshop.service.ProductService;
+import com.healthshop.service.UserDirectoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,6 +40,12 @@ public class AdminController {
     private final OrderRepository orderRepository;
     private final CategoryRepository categoryRepository;
     private final ProductService productService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InteractionRuleBase interactionRuleBase;
+    private final HealthScoreHistoryService healthScoreHistoryService;
+    private final HealthScoreBatchJob healthScoreBatchJob;
+    private final UserDirectoryService userDirectoryService;
+    private final FlashSaleStockService flashSaleStockService;
 
     @GetMapping("/stats")
     @Operation(summary = "Get admin dashboard stats")
@@ -86,6 +106,7 @@ public class AdminController {
                 .build();
 
         product = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), false));
         return ResponseEntity.ok(productService.toResponse(product));
     }
 
@@ -127,6 +148,7 @@ public class AdminController {
         }
 
         product = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), false));
         return ResponseEntity.ok(productService.toResponse(product));
     }
 
@@ -134,23 +156,79 @@ public class AdminController {
     @Operation(summary = "Delete a product")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, true));
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/interaction-rules")
+    @Operation(summary = "Get the interaction rule base version currently in effect")
+    public ResponseEntity<Map<String, Object>> getInteractionRules() {
+        return ResponseEntity.ok(interactionRuleBase.status());
+    }
+
+    @PostMapping("/interaction-rules/reload")
+    @Operation(summary = "Reload interaction rules from the rules file without a restart")
+    public ResponseEntity<Map<String, Object>> reloadInteractionRules() {
+        interactionRuleBase.reload();
+        return ResponseEntity.ok(interactionRuleBase.status());
+    }
+
     @GetMapping("/users")
-    @Operation(summary = "Get all users")
-    public ResponseEntity<List<com.healthshop.dto.AuthDTO.UserResponse>> getAllUsers() {
-        List<com.healthshop.dto.AuthDTO.UserResponse> users = userRepository.findAll().stream()
-                .map(u -> com.healthshop.dto.AuthDTO.UserResponse.builder()
-                        .id(u.getId())
-                        .email(u.getEmail())
-                        .firstName(u.getFirstName())
-                        .lastName(u.getLastName())
-                        .phone(u.getPhone())
-                        .avatarUrl(u.getAvatarUrl())
-                        .role(u.getRole().name())
-                        .build())
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(users);
+    @Operation(summary = "List users by id, optionally filtered by email or name prefix")
+    public ResponseEntity<AuthDTO.UserDirectoryPage> getAllUsers(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + UserDirectoryService.DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(userDirectoryService.getPage(q, after, size));
+    }
+
+    @GetMapping("/users/export")
+    @Operation(summary = "Export all users as CSV (streamed)")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"");
+        userDirectoryService.exportCsv(response.getWriter());
+    }
+
+    @GetMapping("/flash-sales")
+    @Operation(summary = "Products in flash-sale stock mode")
+    public ResponseEntity<List<ProductDTO.FlashSaleStatus>> getFlashSales() {
+        return ResponseEntity.ok(flashSaleStockService.status());
+    }
+
+    @PostMapping("/flash-sales/{productId}")
+    @Operation(summary = "Serve a product's stock from in-memory flash-sale counters")
+    public ResponseEntity<ProductDTO.FlashSaleStatus> startFlashSale(@PathVariable Long productId) {
+        return ResponseEntity.ok(flashSaleStockService.start(productId));
+    }
+
+    @DeleteMapping("/flash-sales/{productId}")
+    @Operation(summary = "Return a product to row-level stock decrements")
+    public ResponseEntity<ProductDTO.FlashSaleStatus> stopFlashSale(@PathVariable Long productId) {
+        return ResponseEntity.ok(flashSaleStockService.stop(productId));
+    }
+
+    @GetMapping("/health-scores/batch")
+    @Operation(summary = "Progress of the latest health-score batch run")
+    public ResponseEntity<AIDTO.HealthScoreBatchStatus> getHealthScoreBatchStatus() {
+        return ResponseEntity.ok(healthScoreBatchJob.status());
+    }
+
+    @PostMapping("/health-scores/batch")
+    @Operation(summary = "Start a health-score batch run for all users")
+    public ResponseEntity<AIDTO.HealthScoreBatchStatus> startHealthScoreBatch() {
+        if (!healthScoreBatchJob.start()) {
+            throw new RuntimeException("A health-score batch is already running");
+        }
+        return ResponseEntity.accepted().body(healthScoreBatchJob.status());
+    }
+
+    @GetMapping("/users/{userId}/health-score/history")
+    @Operation(summary = "Get a user's daily health score snapshots and trend (care team view)")
+    public ResponseEntity<AIDTO.HealthScoreHistoryResponse> getUserHealthScoreHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(healthScoreHistoryService.getHistory(userId, from, to));
     }
 }
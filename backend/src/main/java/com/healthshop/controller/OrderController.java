@@ -4,6 +4,7 @@ import com.healthshop.dto.OrderDTO;
 import com.healthshop.model.User;
 import com.healthshop.repository.UserRepository;
 import com.healthshop.service.CartService;
+import com.healthshop.service.IdempotencyService;
 import com.healthshop.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -24,6 +25,7 @@ public class OrderController {
     private final CartService cartService;
     private final OrderService orderService;
     private final UserRepository userRepository;
+    private final IdempotencyService idempotencyService;
 
     // ===== CART =====
 
@@ -61,11 +63,13 @@ public class OrderController {
     // ===== ORDERS =====
 
     @PostMapping("/orders")
-    @Operation(summary = "Place an order from cart items")
+    @Operation(summary = "Place an order from cart items; retries with the same Idempotency-Key replay the first result")
     public ResponseEntity<OrderDTO.OrderResponse> createOrder(
-            Authentication auth, @RequestBody OrderDTO.CreateOrderRequest request) {
-        Long userId = getUserId(auth);
-        return ResponseEntity.ok(orderService.createOrder(userId, request));
+            Authentication auth, @RequestBody OrderDTO.CreateOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        // Keyed on the principal name so a replay is answered before the user is looked up
+        return ResponseEntity.ok(idempotencyService.execute(auth.getName(), idempotencyKey, request,
+                () -> orderService.createOrder(getUserId(auth), request)));
     }
 
     @GetMapping("/orders/history")
@@ -1,6 +1,7 @@
 package com.healthshop.controller;
 
 import com.healthshop.ai.RecommendationEngine;
+import com.healthshop.ai.SessionRecommendationEngine;
 import com.healthshop.dto.ProductDTO;
 import com.healthshop.dto.RecommendationDTO;
 import com.healthshop.model.User;
@@ -8,6 +9,7 @@ import com.healthshop.repository.UserRepository;
 import com.healthshop.service.UserHealthProfileService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -22,6 +24,7 @@ import java.util.List;
 public class RecommendationController {
 
     private final RecommendationEngine recommendationEngine;
+    private final SessionRecommendationEngine sessionRecommendationEngine;
     private final UserHealthProfileService healthProfileService;
     private final UserRepository userRepository;
 
@@ -39,6 +42,25 @@ public class RecommendationController {
         return ResponseEntity.ok(recommendationEngine.getFrequentlyBoughtTogether(productId));
     }
 
+    @PostMapping("/recommendations/session/{sessionId}/events")
+    @Operation(summary = "Record a browsing event (view, click, cart add) for a session")
+    public ResponseEntity<Void> recordSessionEvent(
+            @PathVariable String sessionId, @RequestBody RecommendationDTO.InteractionEventRequest request,
+            Authentication auth, HttpServletRequest httpRequest) {
+        Long userId = auth != null ? getUserIdSafe(auth) : null;
+        String clientKey = userId != null ? "user:" + userId : "ip:" + httpRequest.getRemoteAddr();
+        sessionRecommendationEngine.recordEvent(sessionId, userId, clientKey, request);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/recommendations/session/{sessionId}")
+    @Operation(summary = "Get real-time recommendations based on what the session is browsing")
+    public ResponseEntity<RecommendationDTO.SessionRecommendationResponse> getSessionRecommendations(
+            @PathVariable String sessionId, @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(sessionRecommendationEngine.getSessionRecommendations(sessionId,
+                Math.max(1, Math.min(limit, 24))));
+    }
+
     @PostMapping("/chat/symptoms")
     @Operation(summary = "Symptom-based product search (AI chatbot)")
     public ResponseEntity<RecommendationDTO.SymptomSearchResponse> searchBySymptom(
@@ -73,4 +95,12 @@ public class RecommendationController {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         return user.getId();
     }
+
+    private Long getUserIdSafe(Authentication auth) {
+        try {
+            return getUserId(auth);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.healthshop.dto;
 
 import lombok.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +22,29 @@ public class AIDTO {
         private List<ProductDTO.ProductResponse> recommendedProducts;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HealthScoreHistoryResponse {
+        private LocalDate from;
+        private LocalDate to;
+        private List<HealthScorePoint> points; // oldest first
+        private Integer change; // overall score, last point minus first point in range
+        private String trend; // improving, declining, stable
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HealthScorePoint {
+        private LocalDate date;
+        private Integer overallScore;
+        private String grade;
+        private Map<String, Integer> dimensions;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -52,6 +77,17 @@ public class AIDTO {
         private List<String> generalAdvice;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RegimenCheckResponse {
+        private List<Long> cartProductIds;
+        private List<Long> recentProductIds; // bought in the last 90 days, not in cart
+        private List<String> medications; // from the health profile
+        private InteractionCheckResponse result;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -80,7 +116,7 @@ public class AIDTO {
     @AllArgsConstructor
     @Builder
     public static class ComparisonRequest {
-        private List<Long> productIds; // 2-4 product IDs
+        private List<Long> productIds; // 2-50 product IDs
     }
 
     @Data
@@ -112,6 +148,7 @@ public class AIDTO {
         private String dosage;
         private String ingredients;
         private Map<String, String> scores; // dimension -> score label
+        private Map<String, Integer> categoryPercentiles; // dimension -> percentile within category
     }
 
     @Data
@@ -137,6 +174,7 @@ public class AIDTO {
     @AllArgsConstructor
     @Builder
     public static class DosageResponse {
+        private Long productId;
         private String productName;
         private String recommendedDosage;
         private String timing; // "Morning", "Night", "With meals"
@@ -146,6 +184,26 @@ public class AIDTO {
         private String personalizedNote;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CartDosageResponse {
+        private List<DosageResponse> dosages;
+        private List<ScheduleSlot> schedule; // interacting products never share a slot when avoidable
+        private List<String> scheduleNotes;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ScheduleSlot {
+        private String slot; // "Morning", "Midday (with lunch)", "Evening", "Bedtime"
+        private List<Long> productIds;
+        private List<String> productNames;
+    }
+
     // ========== Purchase Pattern Analysis ==========
     @Data
     @NoArgsConstructor
@@ -183,6 +241,7 @@ public class AIDTO {
         private List<ProductDTO.ProductResponse> personalizedPicks;
         private List<HealthTip> dailyTips;
         private NutritionGapAnalysis nutritionGaps;
+        private List<String> unavailableParts; // parts that timed out or failed; omitted when all succeeded
     }
 
     @Data
@@ -251,6 +310,26 @@ public class AIDTO {
         private List<String> lifestyleTips;
     }
 
+    // Streaming chat: "analysis" event carries a ChatResponse without products,
+    // followed by one "products" event per resolved tag and a final "done" event
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ChatProductsEvent {
+        private String tag;
+        private List<ProductDTO.ProductResponse> products;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ChatDoneEvent {
+        private Integer productCount;
+        private String message;
+    }
+
     // ========== Admin AI Dashboard ==========
     @Data
     @NoArgsConstructor
@@ -259,12 +338,44 @@ public class AIDTO {
     public static class AdminAIStatsResponse {
         private Integer totalHealthProfiles;
         private List<LabelValue> topHealthGoals;
-        private List<LabelValue> topSymptoms; // inferred or mocked
+        private List<LabelValue> topSymptoms; // from daily AI activity rollups
         private List<LabelValue> ageGroupDistribution;
         private Double avgHealthScore;
+        private HealthScoreDistribution healthScoreDistribution; // from the latest health-score batch
         private List<String> recentAiActivity;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HealthScoreDistribution {
+        private Long usersScored;
+        private Double mean;
+        private Integer p10;
+        private Integer p25;
+        private Integer median;
+        private Integer p75;
+        private Integer p90;
+        private List<LabelValue> gradeHistogram; // A+ .. D
+        private LocalDateTime computedAt;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HealthScoreBatchStatus {
+        private Boolean running;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private Long totalUsers;
+        private Long processedUsers;
+        private Long failedUsers;
+        private Integer partitionsDone;
+        private Double percentComplete;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -5,6 +5,8 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 
+import java.util.List;
+
 public class AuthDTO {
 
     @Data
@@ -65,4 +67,14 @@ public class AuthDTO {
         private String avatarUrl;
         private String role;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UserDirectoryPage {
+        private List<UserResponse> users;
+        private Long nextCursor; // pass as "after" for the next page; null on the last page
+        private Long totalUsers;
+    }
 }
@@ -42,6 +42,7 @@ public class OrderDTO {
         private String shippingState;
         private String shippingZip;
         private LocalDateTime createdAt;
+        private List<AIDTO.InteractionWarning> interactionWarnings; // set at checkout only, never blocks the order
     }
 
     @Data
@@ -34,6 +34,7 @@ public class ProductDTO {
         private Integer reviewCount;
         private Integer purchaseCount;
         private Boolean featured;
+        private Double aiScore;
     }
 
     @Data
@@ -77,4 +78,16 @@ public class ProductDTO {
         private String dosage;
         private Boolean featured;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class FlashSaleStatus {
+        private Long productId;
+        private boolean active;
+        private int available; // in the striped counters
+        private int reserved; // held by checkouts that have not committed yet
+        private int pendingSync; // sold but not yet written to products.stock
+    }
 }
@@ -31,6 +31,8 @@ public class RecommendationDTO {
         private Double totalPrice;
         private Double discountedPrice;
         private Integer discountPercentage;
+        private Integer boughtTogetherCount; // orders containing the whole bundle (mined bundles only)
+        private Double lift;
     }
 
     @Data
@@ -67,4 +69,24 @@ public class RecommendationDTO {
         private List<String> medicalConditions;
         private String ageGroup;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class InteractionEventRequest {
+        private Long productId;
+        private String interactionType; // VIEW, CLICK, CART_ADD, WISHLIST, PURCHASE
+        private String searchQuery;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SessionRecommendationResponse {
+        private String sessionId;
+        private List<Long> recentProductIds;
+        private List<ProductDTO.ProductResponse> recommendations;
+    }
 }
@@ -0,0 +1,21 @@
+package com.healthshop.event;
+
+import com.healthshop.model.UserHealthProfile;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after a user's health profile is created or updated. Carries the
+ * goals and age group before and after the change; the old values are
+ * {@code null} when the profile was created.
+ */
+@Getter
+@AllArgsConstructor
+public class HealthProfileUpdatedEvent {
+    private final Long userId;
+    private final boolean created;
+    private final String oldHealthGoals;
+    private final UserHealthProfile.AgeGroup oldAgeGroup;
+    private final String newHealthGoals;
+    private final UserHealthProfile.AgeGroup newAgeGroup;
+}
@@ -0,0 +1,21 @@
+package com.healthshop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published when an order is created. Listeners that keep per-user state should
+ * react after commit.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long userId;
+    private final Long orderId;
+    private final LocalDateTime createdAt;
+    private final List<Long> productIds; // one entry per order line
+    private final List<Integer> quantities; // parallel to productIds
+}
@@ -0,0 +1,15 @@
+package com.healthshop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after a product is created, updated or deleted so in-memory
+ * indices can refresh the affected entry.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final Long productId;
+    private final boolean deleted;
+}
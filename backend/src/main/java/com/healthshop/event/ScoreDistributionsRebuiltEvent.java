@@ -0,0 +1,14 @@
+package com.healthshop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when CategoryScoreDistributions has published a full rebuild, so
+ * scores computed against the distributions can be refreshed.
+ */
+@Getter
+@AllArgsConstructor
+public class ScoreDistributionsRebuiltEvent {
+    private final int productCount;
+}
@@ -0,0 +1,32 @@
+package com.healthshop.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Pre-aggregated AI activity counters for one hour or one day.
+ * Id is "{granularity}:{bucketStart}", so writers can upsert with $inc.
+ */
+@Document(collection = "ai_activity_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AIActivityRollup {
+
+    @Id
+    private String id;
+
+    private String granularity; // HOUR, DAY
+
+    @Indexed
+    private LocalDateTime bucketStart;
+
+    private Map<String, Long> activity; // event type -> count
+
+    private Map<String, Long> symptoms; // symptom category -> count
+}
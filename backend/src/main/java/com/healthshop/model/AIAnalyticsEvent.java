@@ -0,0 +1,33 @@
+package com.healthshop.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "ai_analytics_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AIAnalyticsEvent {
+
+    @Id
+    private String id;
+
+    private String type; // CHAT, SYMPTOM_SEARCH, INTERACTION_CHECK, DOSAGE
+
+    private Long userId;
+
+    private List<String> symptomCategories; // e.g. "Tired/Fatigue"
+
+    private String severity; // symptom severity, or overall risk for interaction checks
+
+    private List<Long> productIds; // products suggested or checked; never free text
+
+    @Indexed
+    @Builder.Default
+    private LocalDateTime timestamp = LocalDateTime.now();
+}
@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Builder
 public class Coupon {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "coupons_seq")
+    @SequenceGenerator(name = "coupons_seq", sequenceName = "coupons_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -0,0 +1,42 @@
+package com.healthshop.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+/**
+ * Running mean and variance of the gaps between purchases, in days (Welford's
+ * algorithm), so cadence can be updated one purchase at a time.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GapStats {
+
+    private Integer gapCount;
+    private Double gapMeanDays;
+    private Double gapM2; // sum of squared deviations from the mean
+
+    public void add(double gapDays) {
+        int n = count() + 1;
+        double mean = gapMeanDays != null ? gapMeanDays : 0;
+        double delta = gapDays - mean;
+        mean += delta / n;
+        gapM2 = (gapM2 != null ? gapM2 : 0) + delta * (gapDays - mean);
+        gapMeanDays = mean;
+        gapCount = n;
+    }
+
+    public int count() {
+        return gapCount != null ? gapCount : 0;
+    }
+
+    public double mean() {
+        return gapMeanDays != null ? gapMeanDays : 0;
+    }
+
+    // Sample standard deviation; 0 until there are two gaps
+    public double stdDev() {
+        return count() < 2 || gapM2 == null ? 0 : Math.sqrt(Math.max(0, gapM2) / (count() - 1));
+    }
+}
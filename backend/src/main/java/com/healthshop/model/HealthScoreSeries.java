@@ -0,0 +1,33 @@
+package com.healthshop.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.List;
+
+/**
+ * One user's daily health-score snapshots, delta-encoded into a single binary
+ * field (see HealthScoreHistoryService). Each point stores the day gap and the
+ * change of the overall score and each dimension as zig-zag varints, so a
+ * typical day costs about seven bytes.
+ */
+@Document(collection = "health_score_series")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HealthScoreSeries {
+
+    @Id
+    private Long userId;
+
+    private Long firstDay; // epoch day of the first point
+
+    private Long lastDay; // epoch day of the latest point
+
+    private Integer points;
+
+    private List<Integer> lastValues; // latest overall + dimension scores, the base for the next delta
+
+    private byte[] data;
+}
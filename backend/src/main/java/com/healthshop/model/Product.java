@@ -7,7 +7,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = @Index(name = "idx_products_ai_score", columnList = "ai_score"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,7 +15,8 @@ import java.util.*;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -85,6 +86,10 @@ public class Product {
     @Builder.Default
     private Integer viewCount = 0;
 
+    // Persisted AI quality score (0-100), maintained by ProductQualityScorer
+    @Column(name = "ai_score")
+    private Double aiScore;
+
     @Builder.Default
     private Boolean featured = false;
 
@@ -95,6 +100,11 @@ public class Product {
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Optimistic lock: stale admin edits are rejected instead of overwriting stock
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     @Builder.Default
     @JsonIgnore
@@ -0,0 +1,51 @@
+package com.healthshop.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Expected depletion of one product a user buys. Indexed by due date both
+ * globally (for the due-queue job) and per user (for reorder suggestions).
+ */
+@Entity
+@Table(name = "replenishment_entries", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_replenishment_user_product", columnNames = { "user_id", "product_id" })
+}, indexes = {
+        @Index(name = "idx_replenishment_user_due", columnList = "user_id, due_at"),
+        @Index(name = "idx_replenishment_due", columnList = "due_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReplenishmentEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "replenishment_entries_seq")
+    @SequenceGenerator(name = "replenishment_entries_seq", sequenceName = "replenishment_entries_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private LocalDateTime lastPurchasedAt;
+
+    @Column(nullable = false)
+    private Integer quantity; // units in the latest purchase
+
+    @Column(nullable = false)
+    private Integer supplyDays; // days one unit lasts
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt; // expected depletion
+
+    private LocalDateTime notifiedAt; // set once the due job has popped this entry
+
+    @Embedded
+    private GapStats cadence; // days between repeat purchases of this product
+}
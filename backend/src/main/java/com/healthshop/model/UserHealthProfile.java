@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class UserHealthProfile {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_health_profiles_seq")
+    @SequenceGenerator(name = "user_health_profiles_seq", sequenceName = "user_health_profiles_seq", allocationSize = 50)
     private Long id;
 
     @OneToOne(fetch = FetchType.LAZY)
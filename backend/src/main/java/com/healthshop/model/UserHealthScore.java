@@ -0,0 +1,38 @@
+package com.healthshop.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Latest batch-computed health score per user (see HealthScoreBatchJob).
+ */
+@Entity
+@Table(name = "user_health_scores", indexes = {
+        @Index(name = "idx_user_health_scores_overall", columnList = "overall_score")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserHealthScore {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "overall_score", nullable = false)
+    private Integer overallScore;
+
+    @Column(length = 2)
+    private String grade;
+
+    private Integer profileCompleteness;
+    private Integer goalAlignment;
+    private Integer nutritionCoverage;
+    private Integer purchaseConsistency;
+    private Integer productDiversity;
+
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+}
@@ -0,0 +1,32 @@
+package com.healthshop.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Running order cadence per user, updated on every order (see
+ * PurchaseCadenceTracker).
+ */
+@Entity
+@Table(name = "user_purchase_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPurchaseStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private Integer orderCount;
+
+    private LocalDateTime firstOrderAt;
+
+    private LocalDateTime lastOrderAt;
+
+    @Embedded
+    private GapStats gaps;
+}
@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class WishlistItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wishlist_items_seq")
+    @SequenceGenerator(name = "wishlist_items_seq", sequenceName = "wishlist_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,10 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.AIActivityRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AIActivityRollupRepository extends MongoRepository<AIActivityRollup, String> {
+    List<AIActivityRollup> findByGranularityAndBucketStartGreaterThanEqual(String granularity, LocalDateTime from);
+}
@@ -0,0 +1,9 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.AIAnalyticsEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
+
+public interface AIAnalyticsEventRepository extends MongoRepository<AIAnalyticsEvent, String> {
+    List<AIAnalyticsEvent> findTop10ByOrderByTimestampDesc();
+}
@@ -0,0 +1,7 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.HealthScoreSeries;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface HealthScoreSeriesRepository extends MongoRepository<HealthScoreSeries, Long> {
+}
@@ -1,10 +1,16 @@
 package com.healthshop.repository;
 
 import com.healthshop.model.OrderItem;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     
@@ -12,4 +18,44 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
            "(SELECT oi2.order.id FROM OrderItem oi2 WHERE oi2.product.id = :productId) " +
            "AND oi.product.id != :productId GROUP BY oi.product.id ORDER BY COUNT(oi.product.id) DESC")
     List<Long> findFrequentlyBoughtTogetherProductIds(@Param("productId") Long productId);
+
+    // orderId, productId — lines of orders placed since the given time, grouped by order;
+    // streamed with a cursor; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT oi.order.id, oi.product.id FROM OrderItem oi WHERE oi.order.createdAt >= :since ORDER BY oi.order.id")
+    Stream<Object[]> streamOrderProductPairsSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT DISTINCT oi.product.id FROM OrderItem oi WHERE oi.order.user.id = :userId AND oi.order.createdAt >= :since")
+    List<Long> findPurchasedProductIdsSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    // productId, orderId, order createdAt — one row per order line
+    @Query("SELECT oi.product.id, oi.order.id, oi.order.createdAt FROM OrderItem oi WHERE oi.order.user.id = :userId")
+    List<Object[]> findPurchaseRowsByUser(@Param("userId") Long userId);
+
+    // userId, productId, orderId, order createdAt — one row per order line
+    @Query("SELECT oi.order.user.id, oi.product.id, oi.order.id, oi.order.createdAt FROM OrderItem oi WHERE oi.order.user.id IN :userIds")
+    List<Object[]> findPurchaseRowsByUsers(@Param("userIds") Collection<Long> userIds);
+
+    // userId, productId, quantity, order createdAt — every order line grouped by user and product, oldest
+    // first within each; streamed with a cursor; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT oi.order.user.id, oi.product.id, oi.quantity, oi.order.createdAt FROM OrderItem oi " +
+           "ORDER BY oi.order.user.id, oi.product.id, oi.order.createdAt")
+    Stream<Object[]> streamPurchaseLines();
+
+    // category name, order lines — most purchased first
+    @Query("SELECT oi.product.category.name, COUNT(oi) FROM OrderItem oi WHERE oi.order.user.id = :userId " +
+           "GROUP BY oi.product.category.name ORDER BY COUNT(oi) DESC")
+    List<Object[]> countLinesByCategory(@Param("userId") Long userId);
+
+    // product health goals (comma separated), order lines — one row per distinct goals string
+    @Query("SELECT oi.product.healthGoals, COUNT(oi) FROM OrderItem oi WHERE oi.order.user.id = :userId " +
+           "AND oi.product.healthGoals IS NOT NULL GROUP BY oi.product.healthGoals")
+    List<Object[]> countLinesByHealthGoals(@Param("userId") Long userId);
 }
@@ -1,12 +1,17 @@
 package com.healthshop.repository;
 
 import com.healthshop.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Page<Order> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
@@ -17,4 +22,23 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT DISTINCT o.user.id FROM Order o WHERE o.user.id != :userId AND EXISTS " +
            "(SELECT oi FROM OrderItem oi WHERE oi.order = o AND oi.product.id IN :productIds)")
     List<Long> findUsersWithSimilarPurchases(@Param("userId") Long userId, @Param("productIds") List<Long> productIds);
+
+    // order count, total spent — a single row
+    @Query("SELECT COUNT(o), COALESCE(SUM(o.totalAmount), 0) FROM Order o WHERE o.user.id = :userId")
+    List<Object[]> summarizeByUser(@Param("userId") Long userId);
+
+    // year, month, amount spent, order count — one row per month with orders
+    @Query("SELECT YEAR(o.createdAt), MONTH(o.createdAt), COALESCE(SUM(o.totalAmount), 0), COUNT(o) " +
+           "FROM Order o WHERE o.user.id = :userId AND o.createdAt >= :since " +
+           "GROUP BY YEAR(o.createdAt), MONTH(o.createdAt)")
+    List<Object[]> sumMonthlySpendByUser(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    // userId, createdAt — every order by user, oldest first within each; streamed with a cursor;
+    // must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.user.id, o.createdAt FROM Order o ORDER BY o.user.id, o.createdAt")
+    Stream<Object[]> streamOrderTimes();
 }
@@ -4,6 +4,7 @@ import com.healthshop.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
@@ -15,6 +16,13 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByCategoryId(Long categoryId, Pageable pageable);
 
+    // AI score sort with unscored products last; Sort.nullsLast() is ignored for derived/criteria queries
+    @Query("SELECT p FROM Product p ORDER BY p.aiScore DESC NULLS LAST, p.id")
+    Page<Product> findAllOrderByAiScore(Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId ORDER BY p.aiScore DESC NULLS LAST, p.id")
+    Page<Product> findByCategoryIdOrderByAiScore(@Param("categoryId") Long categoryId, Pageable pageable);
+
     @Query("SELECT p FROM Product p WHERE p.active = true AND " +
            "(LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
@@ -40,4 +48,33 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     @Query("SELECT p FROM Product p WHERE p.active = true AND p.suitableAgeGroups LIKE %:ageGroup% ORDER BY p.purchaseCount DESC")
     List<Product> findPopularByAgeGroup(@Param("ageGroup") String ageGroup, Pageable pageable);
+
+    @Query("SELECT p.id, p.category.id, p.price, p.discountPrice, p.averageRating, p.reviewCount, p.healthGoals " +
+           "FROM Product p WHERE p.active = true")
+    List<Object[]> findScoringProjection();
+
+    @Query("SELECT p.id, p.category.id, p.price, p.discountPrice, p.averageRating, p.reviewCount, p.healthGoals " +
+           "FROM Product p WHERE p.active = true AND p.id = :id")
+    List<Object[]> findScoringProjectionById(@Param("id") Long id);
+
+    // Atomic conditional decrement; 0 rows updated means not enough stock
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity, " +
+           "p.purchaseCount = COALESCE(p.purchaseCount, 0) + :quantity, p.version = p.version + 1 " +
+           "WHERE p.id = :productId AND p.stock >= :quantity")
+    int decrementStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+
+    // Flash-sale sales already reserved in memory, applied in bulk; never drives stock below zero
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = CASE WHEN p.stock >= :quantity THEN p.stock - :quantity ELSE 0 END, " +
+           "p.purchaseCount = COALESCE(p.purchaseCount, 0) + :quantity, p.version = p.version + 1 " +
+           "WHERE p.id = :productId")
+    int applySales(@Param("productId") Long productId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.viewCount = COALESCE(p.viewCount, 0) + 1 WHERE p.id = :productId")
+    int incrementViewCount(@Param("productId") Long productId);
+
+    @Query("SELECT p.stock FROM Product p WHERE p.id = :productId")
+    Integer findStockById(@Param("productId") Long productId);
 }
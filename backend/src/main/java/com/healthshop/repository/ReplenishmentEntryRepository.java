@@ -0,0 +1,29 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.ReplenishmentEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReplenishmentEntryRepository extends JpaRepository<ReplenishmentEntry, Long> {
+
+    List<ReplenishmentEntry> findByUserId(Long userId);
+
+    // Range scan on (user_id, due_at)
+    List<ReplenishmentEntry> findByUserIdAndDueAtLessThanEqualOrderByDueAtAsc(Long userId, LocalDateTime until);
+
+    // Head of the global due queue
+    List<ReplenishmentEntry> findByNotifiedAtIsNullAndDueAtLessThanEqualOrderByDueAtAsc(LocalDateTime now,
+            Pageable pageable);
+
+    // Skips entries an order has pushed forward since they were read
+    @Modifying
+    @Query("UPDATE ReplenishmentEntry e SET e.notifiedAt = :now " +
+           "WHERE e.id IN :ids AND e.notifiedAt IS NULL AND e.dueAt <= :now")
+    int markNotified(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
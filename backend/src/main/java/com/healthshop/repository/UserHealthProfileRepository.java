@@ -1,9 +1,26 @@
 package com.healthshop.repository;
 
 import com.healthshop.model.UserHealthProfile;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserHealthProfileRepository extends JpaRepository<UserHealthProfile, Long> {
     Optional<UserHealthProfile> findByUserId(Long userId);
+
+    List<UserHealthProfile> findByUserIdIn(Collection<Long> userIds);
+
+    // healthGoals, ageGroup — streamed with a cursor; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.healthGoals, p.ageGroup FROM UserHealthProfile p")
+    Stream<Object[]> streamGoalsAndAgeGroups();
 }
@@ -0,0 +1,17 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.UserHealthScore;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserHealthScoreRepository extends JpaRepository<UserHealthScore, Long> {
+
+    // overallScore, user count
+    @Query("SELECT s.overallScore, COUNT(s) FROM UserHealthScore s GROUP BY s.overallScore")
+    List<Object[]> countByOverallScore();
+
+    @Query("SELECT MAX(s.computedAt) FROM UserHealthScore s")
+    LocalDateTime findLatestComputedAt();
+}
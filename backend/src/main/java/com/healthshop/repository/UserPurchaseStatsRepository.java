@@ -0,0 +1,7 @@
+package com.healthshop.repository;
+
+import com.healthshop.model.UserPurchaseStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface UserPurchaseStatsRepository extends JpaRepository<UserPurchaseStats, Long> {
+}
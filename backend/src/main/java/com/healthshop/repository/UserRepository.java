@@ -1,10 +1,43 @@
 package com.healthshop.repository;
 
 import com.healthshop.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByEmail(String email);
+
+    // Keyset pagination over user ids for batch jobs
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Admin directory rows: id, email, firstName, lastName, phone, avatarUrl, role — keyset paged by id
+    @Query("SELECT u.id, u.email, u.firstName, u.lastName, u.phone, u.avatarUrl, u.role FROM User u " +
+           "WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findDirectoryRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Same rows filtered by a lowercase LIKE prefix on email, first or last name
+    @Query("SELECT u.id, u.email, u.firstName, u.lastName, u.phone, u.avatarUrl, u.role FROM User u " +
+           "WHERE u.id > :afterId AND (LOWER(u.email) LIKE :prefix ESCAPE '!' " +
+           "OR LOWER(u.firstName) LIKE :prefix ESCAPE '!' OR LOWER(u.lastName) LIKE :prefix ESCAPE '!') " +
+           "ORDER BY u.id")
+    List<Object[]> searchDirectoryRowsAfter(@Param("prefix") String prefix, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // All directory rows plus createdAt, by id — streamed with a cursor; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u.id, u.email, u.firstName, u.lastName, u.phone, u.role, u.createdAt FROM User u ORDER BY u.id")
+    Stream<Object[]> streamDirectoryRows();
 }
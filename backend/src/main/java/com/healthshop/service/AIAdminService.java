@@ -1,11 +1,16 @@
 package com.healthshop.service;
 
+import com.healthshop.ai.HealthScoreBatchJob;
 import com.healthshop.dto.AIDTO;
-import com.healthshop.model.UserHealthProfile;
-import com.healthshop.repository.UserHealthProfileRepository;
+import com.healthshop.model.AIActivityRollup;
+import com.healthshop.model.AIAnalyticsEvent;
+import com.healthshop.repository.AIActivityRollupRepository;
+import com.healthshop.repository.AIAnalyticsEventRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -13,66 +18,82 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AIAdminService {
 
-    private final UserHealthProfileRepository profileRepository;
+    private final HealthProfileStatsService profileStats;
+    private final AIActivityRollupRepository rollupRepository;
+    private final AIAnalyticsEventRepository analyticsEventRepository;
+    private final HealthScoreBatchJob healthScoreBatchJob;
 
-    public AIDTO.AdminAIStatsResponse getAdminStats() {
-        List<UserHealthProfile> profiles = profileRepository.findAll();
+    private static final int TOP_SYMPTOM_DAYS = 30;
 
-        int totalProfiles = profiles.size();
+    private static final Map<String, String> ACTIVITY_LABELS = Map.of(
+            AIAnalyticsService.CHAT, "AI chat",
+            AIAnalyticsService.SYMPTOM_SEARCH, "Symptom search",
+            AIAnalyticsService.INTERACTION_CHECK, "Interaction check",
+            AIAnalyticsService.DOSAGE, "Dosage lookup",
+            AIAnalyticsService.REORDER_DUE, "Reorder due");
 
-        // Calculate Average Health Score (Mock logic as actual score is complex)
-        // In a real app, we'd store the score in the profile
-        double avgScore = profiles.isEmpty() ? 0.0 : 72.5;
+    public AIDTO.AdminAIStatsResponse getAdminStats() {
+        int totalProfiles = (int) profileStats.totalProfiles();
 
-        // Aggregate Health Goals
-        Map<String, Long> goalCounts = new HashMap<>();
-        for (UserHealthProfile p : profiles) {
-            if (p.getHealthGoals() != null && !p.getHealthGoals().isEmpty()) {
-                for (String goal : p.getHealthGoals().split(",")) {
-                    goalCounts.merge(goal.trim(), 1L, (a, b) -> a + b);
-                }
-            }
-        }
-        List<AIDTO.LabelValue> topGoals = goalCounts.entrySet().stream()
+        // Health score distribution from the nightly batch (null until the first run)
+        AIDTO.HealthScoreDistribution scoreDistribution = healthScoreBatchJob.distribution();
+        Double avgScore = scoreDistribution != null ? scoreDistribution.getMean() : null;
+
+        // Health goals and age groups from the maintained profile counters
+        List<AIDTO.LabelValue> topGoals = profileStats.goalCounts().entrySet().stream()
                 .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .limit(5)
                 .map(e -> new AIDTO.LabelValue(e.getKey(), e.getValue()))
                 .collect(Collectors.toList());
 
-        // Aggregate Age Groups
-        Map<String, Long> ageGroupCounts = new HashMap<>();
-        for (UserHealthProfile p : profiles) {
-            if (p.getAgeGroup() != null) {
-                ageGroupCounts.merge(p.getAgeGroup().name(), 1L, (a, b) -> a + b);
+        List<AIDTO.LabelValue> ageDistribution = profileStats.ageGroupCounts().entrySet().stream()
+                .map(e -> new AIDTO.LabelValue(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+
+        // Top symptom categories over the last 30 days, from the daily rollups
+        Map<String, Long> symptomCounts = new HashMap<>();
+        LocalDateTime since = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(TOP_SYMPTOM_DAYS - 1);
+        for (AIActivityRollup rollup : rollupRepository.findByGranularityAndBucketStartGreaterThanEqual(
+                AIAnalyticsService.DAY, since)) {
+            if (rollup.getSymptoms() != null) {
+                rollup.getSymptoms().forEach((k, v) -> symptomCounts.merge(k, v, Long::sum));
             }
         }
-        List<AIDTO.LabelValue> ageDistribution = ageGroupCounts.entrySet().stream()
+        List<AIDTO.LabelValue> topSymptoms = symptomCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(5)
                 .map(e -> new AIDTO.LabelValue(e.getKey(), e.getValue()))
                 .collect(Collectors.toList());
 
-        // Mock Top Symptoms (Since we don't persist chat logs yet)
-        List<AIDTO.LabelValue> topSymptoms = List.of(
-                new AIDTO.LabelValue("Fatigue/Tiredness", 45L),
-                new AIDTO.LabelValue("Sleep Issues", 38L),
-                new AIDTO.LabelValue("Stress/Anxiety", 32L),
-                new AIDTO.LabelValue("Joint Pain", 28L),
-                new AIDTO.LabelValue("Digestive Issues", 25L));
-
-        // Mock Recent Activity
-        List<String> recentActivity = List.of(
-                "User #1024 checked interactions for Vitamin D + Aspirin",
-                "User #1025 requested dosage for Magnesium",
-                "User #1028 completed symptom check: 'Headache'",
-                "User #1030 updated health profile",
-                "AI generated 5 new recommendations for User #1022");
+        // Latest AI events
+        List<String> recentActivity = analyticsEventRepository.findTop10ByOrderByTimestampDesc().stream()
+                .limit(5)
+                .map(this::describe)
+                .collect(Collectors.toList());
 
         return AIDTO.AdminAIStatsResponse.builder()
                 .totalHealthProfiles(totalProfiles)
                 .avgHealthScore(avgScore)
+                .healthScoreDistribution(scoreDistribution)
                 .topHealthGoals(topGoals)
                 .ageGroupDistribution(ageDistribution)
                 .topSymptoms(topSymptoms)
                 .recentAiActivity(recentActivity)
                 .build();
     }
+
+    // Built from structured fields only: events never hold the user's own text
+    private String describe(AIAnalyticsEvent event) {
+        String who = event.getUserId() != null ? "User #" + event.getUserId() : "Guest";
+        StringBuilder sb = new StringBuilder(who).append(" — ").append(ACTIVITY_LABELS.getOrDefault(event.getType(),
+                event.getType()));
+        if (event.getSymptomCategories() != null && !event.getSymptomCategories().isEmpty())
+            sb.append(": ").append(String.join(", ", event.getSymptomCategories()));
+        if (event.getSeverity() != null)
+            sb.append(" (").append(event.getSeverity()).append(")");
+        if (event.getProductIds() != null && !event.getProductIds().isEmpty())
+            sb.append(", ").append(event.getProductIds().size())
+                    .append(event.getProductIds().size() == 1 ? " product" : " products");
+        return sb.toString();
+    }
 }
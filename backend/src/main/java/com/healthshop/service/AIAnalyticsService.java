@@ -0,0 +1,139 @@
+package com.healthshop.service;
+
+import com.healthshop.model.AIActivityRollup;
+import com.healthshop.model.AIAnalyticsEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI Analytics Pipeline
+ * Request paths hand lightweight events to a bounded in-memory queue (never
+ * blocking — events are dropped and counted when full). A background writer
+ * flushes them to Mongo in batches and folds them into hourly and daily rollups.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AIAnalyticsService {
+
+    public static final String CHAT = "CHAT";
+    public static final String SYMPTOM_SEARCH = "SYMPTOM_SEARCH";
+    public static final String INTERACTION_CHECK = "INTERACTION_CHECK";
+    public static final String DOSAGE = "DOSAGE";
+    public static final String REORDER_DUE = "REORDER_DUE";
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final BlockingQueue<AIAnalyticsEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Enqueue an event. Safe to call from any request thread; O(1) and non-blocking.
+     * Events carry only category labels, severity and product ids: never the
+     * user's message or medication names.
+     */
+    public void record(String type, Long userId, List<String> symptomCategories, String severity,
+            List<Long> productIds) {
+        AIAnalyticsEvent event = AIAnalyticsEvent.builder()
+                .type(type)
+                .userId(userId)
+                .symptomCategories(symptomCategories)
+                .severity(severity)
+                .productIds(productIds)
+                .build();
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Events written before free text was dropped still carry it in a 'detail' field
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeFreeText() {
+        try {
+            long purged = mongoTemplate.updateMulti(Query.query(Criteria.where("detail").exists(true)),
+                    new Update().unset("detail"), AIAnalyticsEvent.class).getModifiedCount();
+            if (purged > 0)
+                log.info("Removed free-text detail from {} AI analytics events", purged);
+        } catch (Exception e) {
+            log.warn("Could not purge free-text detail from AI analytics events: {}", e.getMessage());
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Scheduled(fixedDelay = 2_000)
+    @PreDestroy
+    public void flush() {
+        List<AIAnalyticsEvent> batch = new ArrayList<>(BATCH_SIZE);
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            try {
+                mongoTemplate.insertAll(batch);
+                updateRollups(batch);
+            } catch (Exception e) {
+                log.warn("Could not flush {} AI analytics events: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("AI analytics queue full, dropped {} events", lost);
+        }
+    }
+
+    private void updateRollups(List<AIAnalyticsEvent> batch) {
+        // Aggregate the batch in memory first: one upsert per touched bucket
+        Map<String, LocalDateTime> bucketStarts = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> counters = new HashMap<>();
+        for (AIAnalyticsEvent event : batch) {
+            LocalDateTime hour = event.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime day = event.getTimestamp().truncatedTo(ChronoUnit.DAYS);
+            for (String id : List.of(HOUR + ":" + hour, DAY + ":" + day)) {
+                bucketStarts.putIfAbsent(id, id.startsWith(HOUR) ? hour : day);
+                Map<String, Long> counts = counters.computeIfAbsent(id, k -> new HashMap<>());
+                counts.merge("activity." + fieldKey(event.getType()), 1L, Long::sum);
+                if (event.getSymptomCategories() != null) {
+                    for (String symptom : event.getSymptomCategories()) {
+                        counts.merge("symptoms." + fieldKey(symptom), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, LocalDateTime> bucket : bucketStarts.entrySet()) {
+            String id = bucket.getKey();
+            Update update = new Update()
+                    .setOnInsert("granularity", id.substring(0, id.indexOf(':')))
+                    .setOnInsert("bucketStart", bucket.getValue());
+            counters.get(id).forEach(update::inc);
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(id)), update, AIActivityRollup.class);
+        }
+    }
+
+    // Mongo field names may not contain '.' or start with '$'
+    private static String fieldKey(String key) {
+        return key.replace('.', '_').replace('$', '_');
+    }
+}
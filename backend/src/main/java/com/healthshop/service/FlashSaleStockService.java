@@ -0,0 +1,324 @@
+package com.healthshop.service;
+
+import com.healthshop.dto.ProductDTO;
+import com.healthshop.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+
+/**
+ * Flash-Sale Stock
+ * For products an admin puts into flash-sale mode, checkout reserves stock from
+ * striped in-memory counters instead of decrementing the product row, so hot
+ * SKUs do not serialize on one row lock. Reservations are confirmed when the
+ * order commits and released on rollback, or by a sweep once their TTL has
+ * passed. A reconciler writes confirmed sales to {@code products.stock} in
+ * bulk and re-aligns the counters with the database (e.g. after a restock).
+ *
+ * Counters live in this JVM: run flash sales on a single instance. Sales
+ * confirmed since the last reconcile are flushed on shutdown but would be lost
+ * on a crash.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleStockService {
+
+    // Stripes are spread 64 bytes apart so neighbouring counters do not share a cache line
+    private static final int PAD = 16;
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${healthshop.flash-sale.stripes:8}")
+    private int stripeCount;
+
+    @Value("${healthshop.flash-sale.reservation-ttl-seconds:600}")
+    private long reservationTtlSeconds;
+
+    private final Map<Long, FlashStock> stocks = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    public boolean isActive(Long productId) {
+        FlashStock stock = stocks.get(productId);
+        return stock != null && stock.active;
+    }
+
+    /**
+     * Put a product into flash-sale mode, loading its current stock into the
+     * striped counters.
+     */
+    public synchronized ProductDTO.FlashSaleStatus start(Long productId) {
+        FlashStock stock = stocks.get(productId);
+        if (stock != null) {
+            stock.active = true; // counters are re-aligned by the next reconcile
+            return toStatus(stock);
+        }
+        Integer dbStock = productRepository.findStockById(productId);
+        if (dbStock == null)
+            throw new RuntimeException("Product not found");
+        stock = new FlashStock(productId, Math.max(1, stripeCount));
+        int n = stock.stripes();
+        for (int i = 0; i < n; i++)
+            stock.counters.set(i * PAD, dbStock / n + (i < dbStock % n ? 1 : 0));
+        stocks.put(productId, stock);
+        log.info("Flash sale started for product {} with {} units in {} stripes", productId, dbStock, n);
+        return toStatus(stock);
+    }
+
+    /**
+     * Leave flash-sale mode: new checkouts go back to row-level decrements.
+     * Outstanding reservations still settle and are synced before the counters
+     * are dropped.
+     */
+    public synchronized ProductDTO.FlashSaleStatus stop(Long productId) {
+        FlashStock stock = stocks.get(productId);
+        if (stock == null || !stock.active)
+            throw new RuntimeException("No flash sale is running for this product");
+        stock.active = false;
+        // Sales confirmed so far go to the row now; row-level decrements start from there
+        try {
+            sync(stock);
+        } catch (RuntimeException e) {
+            stock.active = true;
+            throw new RuntimeException("Could not write flash-sale sales to the product; the sale is still running");
+        }
+        log.info("Flash sale stopped for product {}", productId);
+        return toStatus(stock);
+    }
+
+    public List<ProductDTO.FlashSaleStatus> status() {
+        return stocks.values().stream()
+                .sorted(Comparator.comparingLong(s -> s.productId))
+                .map(this::toStatus)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reserve stock for the current transaction: confirmed as sold when it
+     * commits, released when it rolls back. Returns false if the product is not
+     * in flash-sale mode; throws if it is sold out.
+     */
+    public boolean reserveForCurrentTransaction(Long productId, int quantity, String productName) {
+        FlashStock stock = stocks.get(productId);
+        if (stock == null || !stock.active)
+            return false;
+        Reservation reservation = reserve(stock, quantity);
+        if (reservation == null)
+            throw new RuntimeException("Insufficient stock for " + productName);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    confirm(reservation);
+                } else {
+                    release(reservation);
+                }
+            }
+        });
+        return true;
+    }
+
+    // Every move adds to the destination before taking from the source, so the
+    // reconciler may over-count units in flight but never under-count them
+    private Reservation reserve(FlashStock stock, int quantity) {
+        stock.reserved.addAndGet(quantity);
+        int home = ThreadLocalRandom.current().nextInt(stock.stripes());
+        if (!stock.take(quantity, home, true)) {
+            stock.reserved.addAndGet(-quantity);
+            return null;
+        }
+        Reservation reservation = new Reservation(UUID.randomUUID().toString(), stock, quantity, home,
+                Instant.now().plusSeconds(reservationTtlSeconds));
+        reservations.put(reservation.id, reservation);
+        return reservation;
+    }
+
+    private void confirm(Reservation reservation) {
+        if (reservations.remove(reservation.id) == null) {
+            // The TTL sweep already put the units back, but they were sold: take them out
+            // again (best effort, the counters may oversell by this much) and record the sale
+            reservation.stock.unsynced.addAndGet(reservation.quantity);
+            reservation.stock.take(reservation.quantity, reservation.stripe, false);
+            log.warn("Flash-sale reservation for product {} confirmed after it expired", reservation.stock.productId);
+            return;
+        }
+        reservation.stock.unsynced.addAndGet(reservation.quantity);
+        reservation.stock.reserved.addAndGet(-reservation.quantity);
+    }
+
+    private void release(Reservation reservation) {
+        if (reservations.remove(reservation.id) == null)
+            return;
+        reservation.stock.counters.addAndGet(reservation.stripe * PAD, reservation.quantity);
+        reservation.stock.reserved.addAndGet(-reservation.quantity);
+    }
+
+    // Safety net for reservations whose transaction never completed
+    @Scheduled(fixedDelay = 30 * 1000L)
+    public void releaseExpired() {
+        Instant now = Instant.now();
+        int released = 0;
+        for (Reservation reservation : List.copyOf(reservations.values())) {
+            if (reservation.expiresAt.isBefore(now)) {
+                release(reservation);
+                released++;
+            }
+        }
+        if (released > 0)
+            log.info("Released {} expired flash-sale reservations", released);
+    }
+
+    /**
+     * Write confirmed sales to the product rows, then re-align the counters with
+     * the database stock minus what is reserved or not yet written.
+     */
+    @Scheduled(fixedDelayString = "${healthshop.flash-sale.reconcile-millis:2000}")
+    public void reconcile() {
+        for (FlashStock stock : stocks.values()) {
+            try {
+                sync(stock);
+                if (stock.active) {
+                    realign(stock);
+                } else if (stock.reserved.get() == 0 && stock.unsynced.get() == 0) {
+                    synchronized (this) {
+                        if (!stock.active)
+                            stocks.remove(stock.productId, stock);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Flash-sale reconcile failed for product {}: {}", stock.productId, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        stocks.values().forEach(this::sync);
+    }
+
+    private void sync(FlashStock stock) {
+        int sold = stock.unsynced.getAndSet(0);
+        if (sold == 0)
+            return;
+        try {
+            transactionTemplate.executeWithoutResult(tx -> productRepository.applySales(stock.productId, sold));
+        } catch (RuntimeException e) {
+            stock.unsynced.addAndGet(sold);
+            throw e;
+        }
+    }
+
+    private void realign(FlashStock stock) {
+        Integer dbStock = productRepository.findStockById(stock.productId);
+        if (dbStock == null)
+            return;
+        // Read order matters: counters, then reserved, then unsynced (see reserve)
+        int available = stock.available();
+        int expected = dbStock - stock.reserved.get() - stock.unsynced.get();
+        int drift = expected - available;
+        if (drift > 0) {
+            stock.counters.addAndGet(0, drift);
+        } else if (drift < 0) {
+            stock.take(-drift, 0, false);
+        }
+    }
+
+    private ProductDTO.FlashSaleStatus toStatus(FlashStock stock) {
+        return ProductDTO.FlashSaleStatus.builder()
+                .productId(stock.productId)
+                .active(stock.active)
+                .available(stock.available())
+                .reserved(stock.reserved.get())
+                .pendingSync(stock.unsynced.get())
+                .build();
+    }
+
+    // ===== Helper classes =====
+
+    private static final class FlashStock {
+        final long productId;
+        final AtomicIntegerArray counters;
+        final AtomicInteger reserved = new AtomicInteger();
+        final AtomicInteger unsynced = new AtomicInteger();
+        volatile boolean active = true;
+
+        FlashStock(long productId, int stripes) {
+            this.productId = productId;
+            this.counters = new AtomicIntegerArray(stripes * PAD);
+        }
+
+        int stripes() {
+            return counters.length() / PAD;
+        }
+
+        int available() {
+            int sum = 0;
+            for (int i = 0; i < stripes(); i++)
+                sum += counters.get(i * PAD);
+            return sum;
+        }
+
+        /**
+         * Take {@code quantity} units starting at the home stripe and moving on to
+         * the others. If {@code allOrNothing} and there are not enough units, the
+         * partial take is put back and false returned.
+         */
+        boolean take(int quantity, int home, boolean allOrNothing) {
+            int n = stripes();
+            int remaining = quantity;
+            int[] taken = new int[n];
+            for (int k = 0; k < n && remaining > 0; k++) {
+                int stripe = (home + k) % n;
+                while (true) {
+                    int value = counters.get(stripe * PAD);
+                    if (value <= 0)
+                        break;
+                    int t = Math.min(value, remaining);
+                    if (counters.compareAndSet(stripe * PAD, value, value - t)) {
+                        taken[stripe] += t;
+                        remaining -= t;
+                        break;
+                    }
+                }
+            }
+            if (remaining > 0 && allOrNothing) {
+                for (int i = 0; i < n; i++)
+                    if (taken[i] > 0)
+                        counters.addAndGet(i * PAD, taken[i]);
+                return false;
+            }
+            return remaining == 0;
+        }
+    }
+
+    private static final class Reservation {
+        final String id;
+        final FlashStock stock;
+        final int quantity;
+        final int stripe;
+        final Instant expiresAt;
+
+        Reservation(String id, FlashStock stock, int quantity, int stripe, Instant expiresAt) {
+            this.id = id;
+            this.stock = stock;
+            this.quantity = quantity;
+            this.stripe = stripe;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
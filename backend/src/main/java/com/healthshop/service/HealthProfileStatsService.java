@@ -0,0 +1,108 @@
+package com.healthshop.service;
+
+import com.healthshop.event.HealthProfileUpdatedEvent;
+import com.healthshop.model.UserHealthProfile;
+import com.healthshop.repository.UserHealthProfileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Health Profile Statistics
+ * Profile count, health-goal counts and age-group counts for the AI admin
+ * page. Committed profile updates apply the difference between the old and
+ * new values; a streamed two-column projection recomputes everything at
+ * startup and nightly, which also corrects any drift from concurrent updates.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HealthProfileStatsService {
+
+    private final UserHealthProfileRepository profileRepository;
+
+    private long totalProfiles;
+    private final Map<String, Long> goalCounts = new HashMap<>();
+    private final Map<String, Long> ageGroupCounts = new HashMap<>();
+
+    public synchronized long totalProfiles() {
+        return totalProfiles;
+    }
+
+    public synchronized Map<String, Long> goalCounts() {
+        return new HashMap<>(goalCounts);
+    }
+
+    public synchronized Map<String, Long> ageGroupCounts() {
+        return new HashMap<>(ageGroupCounts);
+    }
+
+    /**
+     * Apply one committed profile update. For a created profile the old values
+     * are ignored.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProfileUpdated(HealthProfileUpdatedEvent event) {
+        if (event.isCreated()) {
+            totalProfiles++;
+        } else {
+            count(event.getOldHealthGoals(), event.getOldAgeGroup(), -1, goalCounts, ageGroupCounts);
+        }
+        count(event.getNewHealthGoals(), event.getNewAgeGroup(), 1, goalCounts, ageGroupCounts);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 15 3 * * *")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        long total = 0;
+        Map<String, Long> goals = new HashMap<>();
+        Map<String, Long> ageGroups = new HashMap<>();
+        try (Stream<Object[]> rows = profileRepository.streamGoalsAndAgeGroups()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] row = it.next();
+                count((String) row[0], (UserHealthProfile.AgeGroup) row[1], 1, goals, ageGroups);
+                total++;
+            }
+        }
+        synchronized (this) {
+            totalProfiles = total;
+            goalCounts.clear();
+            goalCounts.putAll(goals);
+            ageGroupCounts.clear();
+            ageGroupCounts.putAll(ageGroups);
+        }
+        log.info("Recomputed health profile statistics for {} profiles in {} ms", total,
+                System.currentTimeMillis() - start);
+    }
+
+    private static void count(String healthGoals, UserHealthProfile.AgeGroup ageGroup, long delta,
+            Map<String, Long> goals, Map<String, Long> ageGroups) {
+        if (healthGoals != null && !healthGoals.isEmpty()) {
+            for (String goal : healthGoals.split(",")) {
+                merge(goals, goal.trim(), delta);
+            }
+        }
+        if (ageGroup != null) {
+            merge(ageGroups, ageGroup.name(), delta);
+        }
+    }
+
+    // Counters that drop to zero are removed so they never show up in the charts
+    private static void merge(Map<String, Long> counts, String key, long delta) {
+        if (delta > 0) {
+            counts.merge(key, delta, Long::sum);
+        } else {
+            counts.computeIfPresent(key, (k, v) -> v + delta > 0 ? v + delta : null);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.healthshop.service;
+
+import com.healthshop.ai.HealthScoreCalculator;
+import com.healthshop.dto.AIDTO;
+import com.healthshop.model.HealthScoreSeries;
+import com.healthshop.repository.HealthScoreSeriesRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Health Score History
+ * The nightly health-score batch appends every user's overall and dimension
+ * scores to a per-user delta-encoded series; the history endpoint decodes
+ * ranges from it without recomputing any score.
+ */
+@Service
+@RequiredArgsConstructor
+public class HealthScoreHistoryService {
+
+    private static final int DEFAULT_RANGE_DAYS = 90;
+    private static final int TREND_THRESHOLD = 3;
+
+    private final HealthScoreSeriesRepository seriesRepository;
+
+    /**
+     * Append one day's score vectors (overall + dimensions, see
+     * {@link HealthScoreCalculator#scoreVector}) for a batch of users. Users already
+     * recorded for the day are skipped, so reruns are harmless.
+     */
+    public int record(Map<Long, int[]> vectors, LocalDate day) {
+        Map<Long, HealthScoreSeries> existing = seriesRepository.findAllById(vectors.keySet()).stream()
+                .collect(Collectors.toMap(HealthScoreSeries::getUserId, Function.identity()));
+        List<HealthScoreSeries> changed = new ArrayList<>();
+        vectors.forEach((userId, vector) -> {
+            HealthScoreSeries series = existing.get(userId);
+            if (series == null || series.getLastDay() < day.toEpochDay())
+                changed.add(append(series, userId, day, vector));
+        });
+        seriesRepository.saveAll(changed);
+        return changed.size();
+    }
+
+    public AIDTO.HealthScoreHistoryResponse getHistory(Long userId, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate begin = from != null ? from : end.minusDays(DEFAULT_RANGE_DAYS);
+        if (begin.isAfter(end)) {
+            throw new RuntimeException("'from' must not be after 'to'");
+        }
+
+        List<AIDTO.HealthScorePoint> points = seriesRepository.findById(userId)
+                .map(series -> decode(series, begin.toEpochDay(), end.toEpochDay()))
+                .orElse(List.of());
+
+        Integer change = null;
+        String trend = null;
+        if (points.size() >= 2) {
+            change = points.get(points.size() - 1).getOverallScore() - points.get(0).getOverallScore();
+            trend = change >= TREND_THRESHOLD ? "improving" : change <= -TREND_THRESHOLD ? "declining" : "stable";
+        }
+        return AIDTO.HealthScoreHistoryResponse.builder()
+                .from(begin)
+                .to(end)
+                .points(points)
+                .change(change)
+                .trend(trend)
+                .build();
+    }
+
+    // ===== Delta codec =====
+    // Point = varint(day gap) followed by one zig-zag varint delta per value.
+
+    private HealthScoreSeries append(HealthScoreSeries series, Long userId, LocalDate day, int[] values) {
+        long epochDay = day.toEpochDay();
+        if (series == null) {
+            series = HealthScoreSeries.builder()
+                    .userId(userId)
+                    .firstDay(epochDay)
+                    .lastDay(epochDay)
+                    .points(0)
+                    .lastValues(Collections.nCopies(values.length, 0))
+                    .data(new byte[0])
+                    .build();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(series.getData().length + 8);
+        out.writeBytes(series.getData());
+        writeVarint(out, epochDay - series.getLastDay());
+        for (int i = 0; i < values.length; i++) {
+            int previous = i < series.getLastValues().size() ? series.getLastValues().get(i) : 0;
+            writeVarint(out, zigZag(values[i] - previous));
+        }
+        series.setData(out.toByteArray());
+        series.setLastDay(epochDay);
+        series.setPoints(series.getPoints() + 1);
+        series.setLastValues(Arrays.stream(values).boxed().collect(Collectors.toList()));
+        return series;
+    }
+
+    private List<AIDTO.HealthScorePoint> decode(HealthScoreSeries series, long fromDay, long toDay) {
+        byte[] data = series.getData();
+        int width = series.getLastValues().size();
+        int[] values = new int[width];
+        int[] pos = { 0 };
+        long day = series.getFirstDay();
+        List<AIDTO.HealthScorePoint> points = new ArrayList<>();
+        for (int p = 0; p < series.getPoints(); p++) {
+            day += readVarint(data, pos);
+            for (int i = 0; i < width; i++)
+                values[i] += unZigZag(readVarint(data, pos));
+            if (day > toDay)
+                break;
+            if (day >= fromDay)
+                points.add(toPoint(day, values));
+        }
+        return points;
+    }
+
+    private AIDTO.HealthScorePoint toPoint(long epochDay, int[] values) {
+        Map<String, Integer> dimensions = new LinkedHashMap<>();
+        for (int d = 0; d < HealthScoreCalculator.DIMENSIONS.size() && d + 1 < values.length; d++) {
+            dimensions.put(HealthScoreCalculator.DIMENSIONS.get(d), values[d + 1]);
+        }
+        return AIDTO.HealthScorePoint.builder()
+                .date(LocalDate.ofEpochDay(epochDay))
+                .overallScore(values[0])
+                .grade(HealthScoreCalculator.computeGrade(values[0]))
+                .dimensions(dimensions)
+                .build();
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static int unZigZag(long v) {
+        return (int) ((v >>> 1) ^ -(v & 1));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
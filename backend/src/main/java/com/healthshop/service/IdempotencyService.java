@@ -0,0 +1,112 @@
+package com.healthshop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency Keys
+ * Bounded store of in-flight and completed requests per (caller, Idempotency-Key).
+ * The caller is the authenticated principal name, so a retry is recognised
+ * before anything is looked up. The first request runs; a retry with the same
+ * key waits for it if it is still running, or replays its stored response
+ * without touching the database.
+ * Failures are not stored, so a failed request can be retried with the same
+ * key. Reusing a key for a different request body is rejected.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration TTL = Duration.ofHours(24);
+    private static final Duration WAIT_FOR_ORIGINAL = Duration.ofSeconds(30);
+
+    // Access-ordered so the least recently used key is evicted first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Run {@code action} once per (caller, key); without a key it always runs.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String caller, String key, Object request, Supplier<T> action) {
+        if (key == null || key.isBlank())
+            return action.get();
+        if (key.length() > MAX_KEY_LENGTH)
+            throw new RuntimeException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+
+        String storeKey = caller + ":" + key;
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(storeKey);
+            if (entry != null && entry.expiresAt.isBefore(Instant.now())) {
+                entries.remove(storeKey);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(request, Instant.now().plus(TTL));
+                entries.put(storeKey, entry);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            if (!Objects.equals(entry.request, request))
+                throw new RuntimeException("Idempotency-Key was already used for a different request");
+            log.info("Replaying idempotent request {} for {}", key, caller);
+            return (T) await(entry);
+        }
+
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            synchronized (entries) {
+                entries.remove(storeKey, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Object await(Entry entry) {
+        try {
+            return entry.result.get(WAIT_FOR_ORIGINAL.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // The original failed: report the same error to the waiting duplicate
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("The original request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the original request");
+        }
+    }
+
+    private static final class Entry {
+        final Object request;
+        final Instant expiresAt;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(Object request, Instant expiresAt) {
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
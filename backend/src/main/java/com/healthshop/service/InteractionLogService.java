@@ -0,0 +1,66 @@
+package com.healthshop.service;
+
+import com.healthshop.model.ProductInteraction;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Product Interaction Log
+ * Browsing events are handed to a bounded in-memory queue (never blocking —
+ * events are dropped and counted when full) and written to Mongo in batches by
+ * a background flush, so the request thread never waits on Mongo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InteractionLogService {
+
+    private static final int QUEUE_CAPACITY = 20_000;
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final BlockingQueue<ProductInteraction> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Enqueue an interaction. Safe to call from any request thread; O(1) and non-blocking.
+     */
+    public void record(ProductInteraction interaction) {
+        if (!queue.offer(interaction)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Scheduled(fixedDelay = 2_000)
+    @PreDestroy
+    public void flush() {
+        List<ProductInteraction> batch = new ArrayList<>(BATCH_SIZE);
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            try {
+                mongoTemplate.insertAll(batch);
+            } catch (Exception e) {
+                log.warn("Could not flush {} product interactions: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Product interaction queue full, dropped {} events", lost);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.healthshop.service;
 
+import com.healthshop.ai.InteractionChecker;
+import com.healthshop.dto.AIDTO;
 import com.healthshop.dto.OrderDTO;
+import com.healthshop.event.OrderPlacedEvent;
 import com.healthshop.model.*;
 import com.healthshop.repository.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,6 +18,7 @@ import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
 
     private final OrderRepository orderRepository;
@@ -20,6 +26,9 @@ public class OrderService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final CouponService couponService;
+    private final InteractionChecker interactionChecker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FlashSaleStockService flashSaleStockService;
 
     @Transactional
     public OrderDTO.OrderResponse createOrder(Long userId, OrderDTO.CreateOrderRequest request) {
@@ -32,6 +41,15 @@ public class OrderService {
             throw new RuntimeException("Cart is empty");
         }
 
+        // Advisory regimen check (cart + recent purchases + medications). It runs outside this
+        // transaction and before any stock row is locked; a failure never blocks the order
+        List<AIDTO.InteractionWarning> interactionWarnings = List.of();
+        try {
+            interactionWarnings = interactionChecker.checkRegimen(userId).getResult().getWarnings();
+        } catch (Exception e) {
+            log.warn("Regimen interaction check failed for user {}: {}", userId, e.getMessage());
+        }
+
         double totalAmount = 0;
         List<OrderItem> orderItems = new ArrayList<>();
 
@@ -47,10 +65,6 @@ public class OrderService {
                     .unitPrice(price)
                     .totalPrice(itemTotal)
                     .build());
-
-            // Update product purchase count
-            product.setPurchaseCount(product.getPurchaseCount() + ci.getQuantity());
-            productRepository.save(product);
         }
 
         Order order = Order.builder()
@@ -98,8 +112,20 @@ public class OrderService {
             }
         }
 
-        order = orderRepository.save(order);
+        // Reserve stock (and count the purchase) last, so hot product rows stay locked only
+        // until commit: flash-sale counters for hot products, otherwise an atomic conditional
+        // decrement of the row. Rows are locked in product id order so checkouts cannot deadlock
+        orderItems.sort(Comparator.comparing(oi -> oi.getProduct().getId()));
+        for (OrderItem item : orderItems) {
+            Product product = item.getProduct();
+            if (!flashSaleStockService.reserveForCurrentTransaction(product.getId(), item.getQuantity(),
+                    product.getName())
+                    && productRepository.decrementStock(product.getId(), item.getQuantity()) == 0) {
+                throw new RuntimeException("Insufficient stock for " + product.getName());
+            }
+        }
 
+        // One persist cascades to the items; their inserts go out as a single batch
         for (OrderItem item : orderItems) {
             item.setOrder(order);
         }
@@ -109,7 +135,13 @@ public class OrderService {
         // Clear cart
         cartItemRepository.deleteByUserId(userId);
 
-        return toResponse(order);
+        eventPublisher.publishEvent(new OrderPlacedEvent(userId, order.getId(), order.getCreatedAt(),
+                orderItems.stream().map(oi -> oi.getProduct().getId()).collect(Collectors.toList()),
+                orderItems.stream().map(OrderItem::getQuantity).collect(Collectors.toList())));
+
+        OrderDTO.OrderResponse response = toResponse(order);
+        response.setInteractionWarnings(interactionWarnings);
+        return response;
     }
 
     @Transactional(readOnly = true)
@@ -30,19 +30,27 @@ public class ProductService {
                 case "rating" -> sort = Sort.by(Sort.Direction.DESC, "averageRating");
                 case "popularity" -> sort = Sort.by(Sort.Direction.DESC, "purchaseCount");
                 case "newest" -> sort = Sort.by(Sort.Direction.DESC, "createdAt");
+                // Only honoured by the @Query search; the other paths use explicit NULLS LAST queries
+                case "ai_score" -> sort = Sort.by(Sort.Order.desc("aiScore").nullsLast());
                 default -> sort = Sort.by(Sort.Direction.DESC, "createdAt");
             }
         }
 
         Pageable pageable = PageRequest.of(page, size, sort);
+        boolean byAiScore = "ai_score".equals(filter.getSortBy());
 
         Page<Product> products;
         if (filter.getSearch() != null && !filter.getSearch().isBlank()) {
             products = productRepository.searchProducts(filter.getSearch(), pageable);
         } else if (filter.getCategoryId() != null) {
-            products = productRepository.findByCategoryId(filter.getCategoryId(), pageable);
+            products = byAiScore
+                    ? productRepository.findByCategoryIdOrderByAiScore(filter.getCategoryId(),
+                            PageRequest.of(page, size))
+                    : productRepository.findByCategoryId(filter.getCategoryId(), pageable);
         } else {
-            products = productRepository.findAll(pageable);
+            products = byAiScore
+                    ? productRepository.findAllOrderByAiScore(PageRequest.of(page, size))
+                    : productRepository.findAll(pageable);
         }
 
         return products.map(this::toResponse);
@@ -52,8 +60,8 @@ public class ProductService {
     public ProductDTO.ProductResponse getProductById(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
-        product.setViewCount(product.getViewCount() + 1);
-        productRepository.save(product);
+        // Counter bump in SQL: no read-modify-write, no version bump racing checkouts
+        productRepository.incrementViewCount(id);
         return toResponse(product);
     }
 
@@ -109,6 +117,7 @@ public class ProductService {
                 .reviewCount(p.getReviewCount())
                 .purchaseCount(p.getPurchaseCount())
                 .featured(p.getFeatured())
+                .aiScore(p.getAiScore())
                 .build();
     }
 }
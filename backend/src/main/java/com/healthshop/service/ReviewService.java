@@ -1,9 +1,11 @@
 package com.healthshop.service;
 
 import com.healthshop.dto.ReviewDTO;
+import com.healthshop.event.ProductChangedEvent;
 import com.healthshop.model.*;
 import com.healthshop.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 
@@ -14,6 +16,7 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Page<ReviewDTO.ReviewResponse> getProductReviews(Long productId, int page, int size) {
         return reviewRepository.findByProductIdOrderByCreatedAtDesc(productId, PageRequest.of(page, size))
@@ -46,6 +49,7 @@ public class ReviewService {
         product.setAverageRating(avg != null ? avg : 0.0);
         product.setReviewCount(product.getReviewCount() + 1);
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), false));
 
         return toResponse(review);
     }
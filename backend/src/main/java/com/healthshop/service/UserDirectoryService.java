@@ -0,0 +1,134 @@
+package com.healthshop.service;
+
+import com.healthshop.dto.AuthDTO;
+import com.healthshop.model.User;
+import com.healthshop.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Admin User Directory
+ * Keyset-paged user listing with a case-insensitive prefix search on email,
+ * first and last name (served by lower(...) text_pattern_ops indexes), and a
+ * CSV export that streams rows from a database cursor straight to the
+ * response.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserDirectoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // JPA @Index cannot express expression indexes
+    private static final List<String> INDEX_DDL = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users (lower(email) text_pattern_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_users_first_name_lower ON users (lower(first_name) text_pattern_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_users_last_name_lower ON users (lower(last_name) text_pattern_ops)");
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        for (String ddl : INDEX_DDL) {
+            try {
+                jdbcTemplate.execute(ddl);
+            } catch (Exception e) {
+                log.warn("Could not create user directory index: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One page of users ordered by id, after the {@code after} cursor. A blank
+     * query lists everyone; otherwise users whose email, first or last name
+     * starts with it (case-insensitive).
+     */
+    @Transactional(readOnly = true)
+    public AuthDTO.UserDirectoryPage getPage(String query, Long after, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long afterId = after != null ? after : 0L;
+        // One extra row tells whether there is a next page
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<Object[]> rows = query == null || query.isBlank()
+                ? userRepository.findDirectoryRowsAfter(afterId, page)
+                : userRepository.searchDirectoryRowsAfter(likePrefix(query), afterId, page);
+
+        boolean hasMore = rows.size() > limit;
+        List<AuthDTO.UserResponse> users = rows.stream()
+                .limit(limit)
+                .map(r -> AuthDTO.UserResponse.builder()
+                        .id((Long) r[0])
+                        .email((String) r[1])
+                        .firstName((String) r[2])
+                        .lastName((String) r[3])
+                        .phone((String) r[4])
+                        .avatarUrl((String) r[5])
+                        .role(r[6] != null ? ((User.Role) r[6]).name() : null)
+                        .build())
+                .collect(Collectors.toList());
+        return AuthDTO.UserDirectoryPage.builder()
+                .users(users)
+                .nextCursor(hasMore ? users.get(users.size() - 1).getId() : null)
+                .totalUsers(userRepository.count())
+                .build();
+    }
+
+    /**
+     * Write every user as CSV, one row at a time as it is read.
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(PrintWriter out) {
+        out.print("id,email,first_name,last_name,phone,role,created_at\r\n");
+        long written = 0;
+        try (Stream<Object[]> rows = userRepository.streamDirectoryRows()) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext();) {
+                Object[] r = it.next();
+                out.print(r[0]);
+                for (int i = 1; i < r.length; i++) {
+                    out.print(',');
+                    out.print(csv(r[i]));
+                }
+                out.print("\r\n");
+                written++;
+            }
+        }
+        out.flush();
+        log.info("Exported {} users as CSV", written);
+    }
+
+    private static String likePrefix(String query) {
+        String escaped = query.trim().toLowerCase(Locale.ROOT)
+                .replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return escaped + "%";
+    }
+
+    // RFC 4180 quoting; cells that a spreadsheet would evaluate as a formula are prefixed with '
+    private static String csv(Object value) {
+        if (value == null)
+            return "";
+        String s = value instanceof User.Role role ? role.name()
+                : value instanceof LocalDateTime t ? t.toString() : value.toString();
+        if (!s.isEmpty() && "=+-@".indexOf(s.charAt(0)) >= 0)
+            s = "'" + s;
+        if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0)
+            s = '"' + s.replace("\"", "\"\"") + '"';
+        return s;
+    }
+}
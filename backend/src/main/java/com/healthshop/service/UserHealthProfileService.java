@@ -1,9 +1,11 @@
 package com.healthshop.service;
 
 import com.healthshop.dto.RecommendationDTO;
+import com.healthshop.event.HealthProfileUpdatedEvent;
 import com.healthshop.model.*;
 import com.healthshop.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -14,6 +16,7 @@ public class UserHealthProfileService {
 
     private final UserHealthProfileRepository profileRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public RecommendationDTO.HealthProfileRequest getProfile(Long userId) {
         UserHealthProfile profile = profileRepository.findByUserId(userId).orElse(null);
@@ -48,6 +51,9 @@ public class UserHealthProfileService {
         UserHealthProfile profile = profileRepository.findByUserId(userId)
                 .orElse(UserHealthProfile.builder().user(user).build());
         System.out.println("ANTIGRAVITY DEBUG: Profile found/created. ID: " + profile.getId());
+        boolean created = profile.getId() == null;
+        String oldGoals = profile.getHealthGoals();
+        UserHealthProfile.AgeGroup oldAgeGroup = profile.getAgeGroup();
 
         profile.setAge(request.getAge());
         profile.setGender(request.getGender());
@@ -67,6 +73,8 @@ public class UserHealthProfileService {
         }
 
         profileRepository.save(profile);
+        eventPublisher.publishEvent(new HealthProfileUpdatedEvent(userId, created, oldGoals, oldAgeGroup,
+                profile.getHealthGoals(), profile.getAgeGroup()));
         return request;
     }
 
@@ -0,0 +1,148 @@
+package com.healthshop.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthshop.dto.AIDTO;
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.CartItemRepository;
+import com.healthshop.repository.OrderItemRepository;
+import com.healthshop.repository.ProductRepository;
+import com.healthshop.repository.UserHealthProfileRepository;
+import com.healthshop.service.AIAnalyticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class InteractionCheckerTest {
+
+    private InteractionChecker checker;
+
+    @BeforeEach
+    void setUp() {
+        InteractionRuleBase ruleBase = new InteractionRuleBase(new DefaultResourceLoader(), new ObjectMapper(),
+                "classpath:interaction-rules-test.json");
+        ruleBase.init();
+        checker = new InteractionChecker(mock(ProductRepository.class), mock(CartItemRepository.class),
+                mock(OrderItemRepository.class), mock(UserHealthProfileRepository.class), ruleBase,
+                mock(AIAnalyticsService.class));
+    }
+
+    @Test
+    void matchesRulesOnSubstancesFoundAnywhereInTheProductText() {
+        Product calcium = product(1L, "Bone Support", "Calcium carbonate, magnesium");
+        Product iron = product(2L, "Energy Boost", "Ferrous bisglycinate (iron)");
+        Product vitaminD = product(3L, "Vitamin D3 Drops", null);
+
+        AIDTO.InteractionCheckResponse result = checker.evaluate(List.of(calcium, iron, vitaminD), List.of());
+
+        assertThat(result.getWarnings()).singleElement().satisfies(w -> {
+            assertThat(w.getSeverity()).isEqualTo("moderate");
+            assertThat(w.getProduct1()).isEqualTo("Bone Support");
+            assertThat(w.getProduct2()).isEqualTo("Energy Boost");
+        });
+        assertThat(result.getSafeCombinatons()).singleElement()
+                .satisfies(s -> assertThat(s.getBenefit()).contains("calcium absorption"));
+        assertThat(result.getOverallRisk()).isEqualTo("moderate");
+    }
+
+    @Test
+    void rulesMatchInEitherDirectionAndAgainstMedications() {
+        Product vitaminK = product(1L, "Vitamin K2 MK-7", null);
+
+        AIDTO.InteractionCheckResponse result = checker.evaluate(List.of(vitaminK), List.of("WARFARIN 5mg"));
+
+        assertThat(result.getWarnings()).singleElement().satisfies(w -> {
+            assertThat(w.getSeverity()).isEqualTo("critical");
+            assertThat(w.getProduct2()).isEqualTo("WARFARIN 5mg (medication)");
+        });
+        assertThat(result.getOverallRisk()).isEqualTo("high");
+    }
+
+    @Test
+    void productsWithoutKnownSubstancesProduceNoWarnings() {
+        AIDTO.InteractionCheckResponse result = checker.evaluate(
+                List.of(product(1L, "Ashwagandha", "root extract"), product(2L, "Probiotic", null)),
+                List.of("ibuprofen"));
+
+        assertThat(result.getWarnings()).isEmpty();
+        assertThat(result.getOverallRisk()).isEqualTo("none");
+    }
+
+    @Test
+    void warningsAreOrderedByProductIdWhateverTheInputOrder() {
+        Product iron = product(1L, "Iron", null);
+        Product calcium = product(2L, "Calcium", null);
+        Product zinc = product(3L, "Zinc", null);
+
+        List<AIDTO.InteractionWarning> forward = checker.evaluate(List.of(iron, calcium, zinc), List.of()).getWarnings();
+        List<AIDTO.InteractionWarning> reversed = checker.evaluate(List.of(zinc, calcium, iron, zinc), List.of())
+                .getWarnings();
+
+        assertThat(forward).extracting(AIDTO.InteractionWarning::getProduct2).containsExactly("Calcium", "Zinc");
+        assertThat(reversed).isEqualTo(forward);
+    }
+
+    @Test
+    void fingerprintIsRecomputedForANewProductVersion() {
+        Product multi = product(1L, "Daily Multi", "vitamin c");
+        Product iron = product(2L, "Iron", null);
+        assertThat(checker.evaluate(List.of(multi, iron), List.of()).getWarnings()).isEmpty();
+
+        multi.setIngredients("vitamin c, calcium");
+        multi.setVersion(2L);
+
+        assertThat(checker.evaluate(List.of(multi, iron), List.of()).getWarnings()).hasSize(1);
+    }
+
+    @Test
+    void productChangeEvictsCachedResultsThatIncludeTheProduct() {
+        Product multi = product(1L, "Daily Multi", "vitamin c");
+        Product iron = product(2L, "Iron", null);
+        Product zinc = product(3L, "Zinc", null);
+        AIDTO.InteractionCheckResponse multiIron = checker.evaluate(List.of(multi, iron), List.of());
+        AIDTO.InteractionCheckResponse ironZinc = checker.evaluate(List.of(iron, zinc), List.of());
+        assertThat(checker.evaluate(List.of(iron, multi), List.of())).isSameAs(multiIron);
+
+        // Same version on purpose: the event alone must drop the stale entries
+        multi.setIngredients("vitamin c, calcium");
+        checker.onProductChanged(new ProductChangedEvent(1L, false));
+
+        assertThat(checker.evaluate(List.of(multi, iron), List.of()).getWarnings()).hasSize(1);
+        assertThat(checker.evaluate(List.of(iron, zinc), List.of())).isSameAs(ironZinc);
+    }
+
+    @Test
+    void productsWithoutAVersionAreNeverCached() {
+        Product multi = Product.builder().id(1L).name("Daily Multi").ingredients("vitamin c").build();
+        Product iron = product(2L, "Iron", null);
+        assertThat(checker.evaluate(List.of(multi, iron), List.of()).getWarnings()).isEmpty();
+
+        multi.setIngredients("vitamin c, calcium");
+
+        assertThat(checker.evaluate(List.of(multi, iron), List.of()).getWarnings()).hasSize(1);
+    }
+
+    @Test
+    void conflictsAreSymmetricAndIgnoreBeneficialPairs() {
+        Product calcium = product(1L, "Calcium", null);
+        Product iron = product(2L, "Iron", null);
+        Product vitaminD = product(3L, "Vitamin D", null);
+
+        Map<Long, Set<Long>> conflicts = checker.conflicts(List.of(calcium, iron, vitaminD));
+
+        assertThat(conflicts).containsOnlyKeys(1L, 2L);
+        assertThat(conflicts.get(1L)).containsExactly(2L);
+        assertThat(conflicts.get(2L)).containsExactly(1L);
+    }
+
+    private static Product product(Long id, String name, String ingredients) {
+        return Product.builder().id(id).name(name).ingredients(ingredients).version(1L).build();
+    }
+}
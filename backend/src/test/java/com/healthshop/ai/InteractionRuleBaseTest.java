@@ -0,0 +1,113 @@
+package com.healthshop.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class InteractionRuleBaseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compileGivesEachDistinctSubstanceOneBit() {
+        InteractionRuleBase.RuleSnapshot snapshot = InteractionRuleBase.RuleSnapshot.compile(1, List.of(
+                rule("Calcium", "Iron"),
+                rule("Zinc", "IRON"),
+                rule("Vitamin D", "calcium")));
+
+        assertThat(snapshot.substances).containsExactly("calcium", "iron", "zinc", "vitamin d");
+        assertThat(snapshot.rules).extracting(r -> r.bit1, r -> r.bit2)
+                .containsExactly(
+                        tuple(0, 1),
+                        tuple(2, 1),
+                        tuple(3, 0));
+    }
+
+    @Test
+    void fingerprintSetsTheBitOfEverySubstanceContainedInTheText() {
+        InteractionRuleBase.RuleSnapshot snapshot = InteractionRuleBase.RuleSnapshot.compile(1, List.of(
+                rule("Calcium", "Iron"), rule("Zinc", "Magnesium")));
+
+        BitSet bits = snapshot.fingerprintOf("bone complex: calcium citrate, magnesium oxide");
+
+        assertThat(bits.stream().toArray()).containsExactly(0, 3);
+        assertThat(snapshot.fingerprintOf("ashwagandha").isEmpty()).isTrue();
+    }
+
+    @Test
+    void ruleMatchesThePairInEitherOrder() {
+        InteractionRuleBase.RuleSnapshot snapshot = InteractionRuleBase.RuleSnapshot.compile(1, List.of(
+                rule("Calcium", "Iron"), rule("Zinc", "Magnesium")));
+        InteractionRuleBase.Rule calciumIron = snapshot.rules.get(0);
+        BitSet calcium = snapshot.fingerprintOf("calcium");
+        BitSet iron = snapshot.fingerprintOf("iron");
+        BitSet zinc = snapshot.fingerprintOf("zinc");
+
+        assertThat(calciumIron.matches(calcium, iron)).isTrue();
+        assertThat(calciumIron.matches(iron, calcium)).isTrue();
+        assertThat(calciumIron.matches(calcium, zinc)).isFalse();
+        assertThat(calciumIron.matches(calcium, calcium)).isFalse();
+    }
+
+    @Test
+    void reloadPublishesANewSnapshotOnlyWhenTheVersionChanges() throws IOException {
+        Path file = dir.resolve("rules.json");
+        write(file, 1, "Calcium", "Iron");
+        InteractionRuleBase ruleBase = ruleBase(file);
+        ruleBase.init();
+        InteractionRuleBase.RuleSnapshot first = ruleBase.current();
+
+        write(file, 1, "Zinc", "Iron");
+        assertThat(ruleBase.reload()).isEqualTo(1);
+        assertThat(ruleBase.current()).isSameAs(first);
+
+        write(file, 2, "Zinc", "Iron");
+        assertThat(ruleBase.reload()).isEqualTo(2);
+        assertThat(ruleBase.current().substances).containsExactly("zinc", "iron");
+        assertThat(first.substances).containsExactly("calcium", "iron");
+    }
+
+    @Test
+    void aBrokenFileKeepsTheCurrentRules() throws IOException {
+        Path file = dir.resolve("rules.json");
+        write(file, 3, "Calcium", "Iron");
+        InteractionRuleBase ruleBase = ruleBase(file);
+        ruleBase.init();
+
+        Files.writeString(file, "{\"interactions\": []}");
+        assertThatThrownBy(ruleBase::reload).hasMessageContaining("no version");
+
+        Files.writeString(file, "{\"version\": 4, \"interactions\": [{\"substance1\": \"Zinc\"}]}");
+        assertThatThrownBy(ruleBase::reload).hasMessageContaining("substance2");
+
+        ruleBase.poll();
+        assertThat(ruleBase.current().version).isEqualTo(3);
+    }
+
+    private InteractionRuleBase ruleBase(Path file) {
+        return new InteractionRuleBase(new DefaultResourceLoader(), new ObjectMapper(), file.toUri().toString());
+    }
+
+    private static void write(Path file, long version, String substance1, String substance2) throws IOException {
+        Files.writeString(file, """
+                {"version": %d, "interactions": [{"substance1": "%s", "substance2": "%s", "severity": "moderate",
+                  "description": "d", "recommendation": "r"}]}
+                """.formatted(version, substance1, substance2));
+    }
+
+    private static InteractionRuleBase.Rule rule(String substance1, String substance2) {
+        return new InteractionRuleBase.Rule(substance1, substance2, "moderate", "d", "r", false);
+    }
+}
@@ -0,0 +1,129 @@
+package com.healthshop.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class KeywordAutomatonTest {
+
+    private static final int SYMPTOM = 0;
+    private static final int SEVERITY = 1;
+
+    @Test
+    void findsKeywordsInTextOrderWithPositions() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("headache", SYMPTOM, 0)
+                .add("tired", SYMPTOM, 1)
+                .build();
+
+        List<KeywordAutomaton.Match> matches = automaton.findAll("tired with a headache");
+
+        assertThat(matches).extracting(KeywordAutomaton.Match::getKeyword).containsExactly("tired", "headache");
+        assertThat(matches.get(1).getStart()).isEqualTo(13);
+        assertThat(matches.get(1).getEnd()).isEqualTo(21);
+        assertThat(matches.get(1).getCategory()).isZero();
+    }
+
+    @Test
+    void reportsNestedAndOverlappingKeywords() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("joint", SYMPTOM, 0)
+                .add("joint pain", SYMPTOM, 0)
+                .add("pain", SYMPTOM, 1)
+                .add("sore throat", SYMPTOM, 2)
+                .add("throat pain", SYMPTOM, 3)
+                .build();
+
+        assertThat(keywords(automaton, "joint pain")).containsExactly("joint", "joint pain", "pain");
+        // "throat pain" starts inside "sore throat": reached through a failure link
+        assertThat(keywords(automaton, "sore throat pain"))
+                .containsExactly("sore throat", "throat pain", "pain");
+    }
+
+    @Test
+    void keywordsMustStartOnAWordBoundary() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("ache", SYMPTOM, 0)
+                .add("headache", SYMPTOM, 1)
+                .build();
+
+        assertThat(keywords(automaton, "a headache")).containsExactly("headache");
+        assertThat(keywords(automaton, "an ache, a back-ache")).containsExactly("ache", "ache");
+    }
+
+    @Test
+    void keywordsMayEndOnACommonInflectionOnly() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("fat", SYMPTOM, 0)
+                .add("sleep", SYMPTOM, 1)
+                .add("tired", SYMPTOM, 2)
+                .build();
+
+        assertThat(keywords(automaton, "fatigue")).isEmpty();
+        assertThat(keywords(automaton, "sleeping badly, tiredness")).containsExactly("sleep", "tired");
+        assertThat(keywords(automaton, "sleepwalking")).isEmpty();
+        assertThat(keywords(automaton, "fats.")).containsExactly("fat");
+    }
+
+    @Test
+    void normalisesKeywordsAndSkipsBlankOnes() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("  Low Energy ", SYMPTOM, 0)
+                .add("   ", SYMPTOM, 1)
+                .build();
+
+        assertThat(automaton.size()).isEqualTo(1);
+        assertThat(keywords(automaton, "very low energy today")).containsExactly("low energy");
+    }
+
+    @Test
+    void handlesCharactersOutsideTheKeywordAlphabet() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("crème", SYMPTOM, 0)
+                .add("stress", SYMPTOM, 1)
+                .build();
+
+        assertThat(keywords(automaton, "crème 😀 stress €")).containsExactly("crème", "stress");
+        assertThat(keywords(automaton, "")).isEmpty();
+        assertThat(keywords(automaton, "strexss")).isEmpty();
+    }
+
+    @Test
+    void sameKeywordInSeveralGroupsIsReportedOncePerGroup() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("chronic", SYMPTOM, 4)
+                .add("chronic", SEVERITY, 1)
+                .build();
+
+        assertThat(automaton.findAll("chronic cough"))
+                .extracting(KeywordAutomaton.Match::getGroup, KeywordAutomaton.Match::getCategory)
+                .containsExactly(tuple(SYMPTOM, 4), tuple(SEVERITY, 1));
+    }
+
+    @Test
+    void everySeverityHitIsReportedSoTheMostSevereCategoryCanWin() {
+        // Severity levels are registered most severe first, as in RecommendationEngine
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("severe", SEVERITY, 0)
+                .add("chest pain", SEVERITY, 0)
+                .add("persistent", SEVERITY, 1)
+                .add("weeks", SEVERITY, 1)
+                .build();
+
+        int level = automaton.findAll("persistent for weeks, now severe chest pain").stream()
+                .filter(m -> m.getGroup() == SEVERITY)
+                .mapToInt(KeywordAutomaton.Match::getCategory)
+                .min().orElse(Integer.MAX_VALUE);
+        assertThat(level).isZero();
+        assertThat(automaton.findAll("persistent for weeks")).extracting(KeywordAutomaton.Match::getCategory)
+                .containsOnly(1);
+    }
+
+    private static List<String> keywords(KeywordAutomaton automaton, String text) {
+        return automaton.findAll(text).stream().map(KeywordAutomaton.Match::getKeyword).collect(Collectors.toList());
+    }
+}
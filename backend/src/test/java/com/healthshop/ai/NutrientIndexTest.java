@@ -0,0 +1,113 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NutrientIndexTest {
+
+    private ProductRepository productRepository;
+    private NutrientIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findById(anyLong())).thenReturn(Optional.empty());
+        index = new NutrientIndex(productRepository);
+    }
+
+    @Test
+    void masksAndPostingListsFollowTheCatalog() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "Magnesium Glycinate", 10, true),
+                product(2L, "Fish Oil with Vitamin D", 30, true),
+                product(3L, "Magnesium Citrate", 90, false)));
+
+        index.rebuild();
+
+        assertThat(index.nutrientMask(1L)).isEqualTo(NutrientIndex.bitOf("Magnesium"));
+        assertThat(index.nutrientMask(2L)).isEqualTo(NutrientIndex.bitOf("Omega-3") | NutrientIndex.bitOf("Vitamin D"));
+        assertThat(index.nutrientMask(3L)).isEqualTo(NutrientIndex.bitOf("Magnesium")); // inactive, still known
+        assertThat(index.nutrientMask(4L)).isNull();
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(1L);
+        assertThat(index.productIdsForNutrient("Omega-3")).containsExactly(2L);
+        assertThat(index.productIdsForNutrient("Unknown")).isEmpty();
+    }
+
+    @Test
+    void productWritesPatchOnlyTheAffectedPostingListsInRankOrder() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "Magnesium Glycinate", 10, true),
+                product(2L, "Magnesium Citrate", 30, true),
+                product(3L, "Magnesium Oxide", 20, true),
+                product(4L, "Iron Bisglycinate", 5, true)));
+        index.rebuild();
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(2L, 3L, 1L);
+
+        // More purchases move a product up its list
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "Magnesium Glycinate", 25, true)));
+        index.onProductChanged(new ProductChangedEvent(1L, false));
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(2L, 1L, 3L);
+
+        // A reformulation moves it between lists
+        when(productRepository.findById(3L)).thenReturn(Optional.of(product(3L, "Iron and Zinc", 20, true)));
+        index.onProductChanged(new ProductChangedEvent(3L, false));
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(2L, 1L);
+        assertThat(index.productIdsForNutrient("Iron")).containsExactly(3L, 4L);
+
+        // Deactivated and deleted products leave the lists
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product(2L, "Magnesium Citrate", 30, false)));
+        index.onProductChanged(new ProductChangedEvent(2L, false));
+        when(productRepository.findById(4L)).thenReturn(Optional.empty());
+        index.onProductChanged(new ProductChangedEvent(4L, true));
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(1L);
+        assertThat(index.productIdsForNutrient("Iron")).containsExactly(3L);
+        assertThat(index.nutrientMask(4L)).isNull();
+    }
+
+    @Test
+    void postingListsAreReturnedAsCopies() {
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, "Magnesium Glycinate", 10, true)));
+        index.rebuild();
+
+        index.productIdsForNutrient("Magnesium")[0] = 99L;
+
+        assertThat(index.productIdsForNutrient("Magnesium")).containsExactly(1L);
+    }
+
+    @Test
+    void writeDuringRebuildIsNotLostToTheStaleCatalogRead() {
+        Product stale = product(1L, "Magnesium Glycinate", 10, true);
+        when(productRepository.findAll()).thenReturn(List.of(stale));
+        index.rebuild();
+
+        when(productRepository.findAll()).thenAnswer(invocation -> {
+            when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "Iron Bisglycinate", 10, true)));
+            index.onProductChanged(new ProductChangedEvent(1L, false));
+            return List.of(stale);
+        });
+        index.rebuild();
+
+        assertThat(index.productIdsForNutrient("Magnesium")).isEmpty();
+        assertThat(index.productIdsForNutrient("Iron")).containsExactly(1L);
+    }
+
+    private static Product product(Long id, String name, int purchaseCount, boolean active) {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .purchaseCount(purchaseCount)
+                .active(active)
+                .build();
+    }
+}
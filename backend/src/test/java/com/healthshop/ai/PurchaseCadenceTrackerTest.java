@@ -0,0 +1,70 @@
+package com.healthshop.ai;
+
+import com.healthshop.model.UserPurchaseStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseCadenceTrackerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    @Test
+    void firstOrderStartsTheStatsWithoutAGap() {
+        UserPurchaseStats stats = PurchaseCadenceTracker.apply(null, 5L, T0);
+
+        assertThat(stats.getUserId()).isEqualTo(5L);
+        assertThat(stats.getOrderCount()).isEqualTo(1);
+        assertThat(stats.getFirstOrderAt()).isEqualTo(T0);
+        assertThat(stats.getLastOrderAt()).isEqualTo(T0);
+        assertThat(stats.getGaps().count()).isZero();
+    }
+
+    @Test
+    void laterOrdersAddTheirGapInWholeHours() {
+        UserPurchaseStats stats = PurchaseCadenceTracker.apply(null, 5L, T0);
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0.plusDays(30));
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0.plusDays(40).plusHours(12).plusMinutes(59));
+
+        assertThat(stats.getOrderCount()).isEqualTo(3);
+        assertThat(stats.getGaps().count()).isEqualTo(2);
+        assertThat(stats.getGaps().mean()).isEqualTo((30 + 10.5) / 2);
+        assertThat(stats.getLastOrderAt()).isEqualTo(T0.plusDays(40).plusHours(12).plusMinutes(59));
+    }
+
+    @Test
+    void anOutOfOrderOrderOnlyCounts() {
+        UserPurchaseStats stats = PurchaseCadenceTracker.apply(null, 5L, T0);
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0.plusDays(20));
+
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0.plusDays(10));
+
+        assertThat(stats.getOrderCount()).isEqualTo(3);
+        assertThat(stats.getGaps().count()).isEqualTo(1);
+        assertThat(stats.getGaps().mean()).isEqualTo(20);
+        assertThat(stats.getLastOrderAt()).isEqualTo(T0.plusDays(20));
+    }
+
+    @Test
+    void anOrderBeforeTheFirstMovesTheFirstOrderBack() {
+        UserPurchaseStats stats = PurchaseCadenceTracker.apply(null, 5L, T0);
+
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0.minusDays(3));
+
+        assertThat(stats.getFirstOrderAt()).isEqualTo(T0.minusDays(3));
+        assertThat(stats.getLastOrderAt()).isEqualTo(T0);
+        assertThat(stats.getGaps().count()).isZero();
+    }
+
+    @Test
+    void anOrderAtTheSameTimeAddsNoGap() {
+        UserPurchaseStats stats = PurchaseCadenceTracker.apply(null, 5L, T0);
+
+        stats = PurchaseCadenceTracker.apply(stats, 5L, T0);
+
+        assertThat(stats.getOrderCount()).isEqualTo(2);
+        assertThat(stats.getGaps().count()).isZero();
+    }
+}
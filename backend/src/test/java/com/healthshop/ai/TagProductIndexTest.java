@@ -0,0 +1,109 @@
+package com.healthshop.ai;
+
+import com.healthshop.event.ProductChangedEvent;
+import com.healthshop.model.Product;
+import com.healthshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TagProductIndexTest {
+
+    private ProductRepository productRepository;
+    private TagProductIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findById(anyLong())).thenReturn(Optional.empty());
+        index = new TagProductIndex(productRepository);
+        index.registerTags(List.of("Sleep", "Energy"));
+    }
+
+    @Test
+    void returnsNullBeforeTheFirstBuild() {
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.productIdsForTag("sleep")).isNull();
+        assertThat(index.containsProduct(1L)).isNull();
+    }
+
+    @Test
+    void postingListsHoldActiveProductsMostPurchasedFirst() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "sleep", 5, true),
+                product(2L, "sleep,energy", 50, true),
+                product(3L, "sleep", 500, false),
+                product(4L, "energy", 50, true)));
+
+        index.rebuild();
+
+        assertThat(index.productIdsForTag(" SLEEP ")).containsExactly(2L, 1L);
+        assertThat(index.productIdsForTag("energy")).containsExactly(2L, 4L); // ties by id
+        assertThat(index.containsProduct(1L)).isTrue();
+        assertThat(index.containsProduct(3L)).isFalse(); // inactive
+    }
+
+    @Test
+    void unregisteredTextIsMatchedAgainstTheDocuments() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "sleep", 5, true),
+                product(2L, "energy", 50, true)));
+
+        index.rebuild();
+
+        assertThat(index.productIdsForTag("ener")).containsExactly(2L);
+        assertThat(index.productIdsForTag("immunity")).isEmpty();
+    }
+
+    @Test
+    void productWritesArePatchedIntoThePostingLists() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "sleep", 5, true),
+                product(2L, "sleep", 50, true)));
+        index.rebuild();
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "energy", 5, true)));
+        index.onProductChanged(new ProductChangedEvent(1L, false));
+        assertThat(index.productIdsForTag("sleep")).containsExactly(2L);
+        assertThat(index.productIdsForTag("energy")).containsExactly(1L);
+
+        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+        index.onProductChanged(new ProductChangedEvent(2L, true));
+        assertThat(index.productIdsForTag("sleep")).isEmpty();
+    }
+
+    @Test
+    void writeDuringRebuildIsNotLostToTheStaleCatalogRead() {
+        Product stale = product(1L, "sleep", 5, true);
+        when(productRepository.findAll()).thenReturn(List.of(stale));
+        index.rebuild();
+
+        // The product is retagged after the rebuild has read the catalog but before it publishes
+        when(productRepository.findAll()).thenAnswer(invocation -> {
+            when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, "energy", 5, true)));
+            index.onProductChanged(new ProductChangedEvent(1L, false));
+            return List.of(stale);
+        });
+        index.rebuild();
+
+        assertThat(index.productIdsForTag("sleep")).isEmpty();
+        assertThat(index.productIdsForTag("energy")).containsExactly(1L);
+    }
+
+    private static Product product(Long id, String tags, int purchaseCount, boolean active) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .tags(tags)
+                .purchaseCount(purchaseCount)
+                .active(active)
+                .build();
+    }
+}
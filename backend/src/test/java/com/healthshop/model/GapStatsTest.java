@@ -0,0 +1,57 @@
+package com.healthshop.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GapStatsTest {
+
+    @Test
+    void emptyStatsReportZeros() {
+        GapStats gaps = new GapStats();
+
+        assertThat(gaps.count()).isZero();
+        assertThat(gaps.mean()).isZero();
+        assertThat(gaps.stdDev()).isZero();
+    }
+
+    @Test
+    void stdDevIsZeroUntilThereAreTwoGaps() {
+        GapStats gaps = new GapStats();
+        gaps.add(30);
+
+        assertThat(gaps.count()).isEqualTo(1);
+        assertThat(gaps.mean()).isEqualTo(30);
+        assertThat(gaps.stdDev()).isZero();
+    }
+
+    @Test
+    void runningMeanAndVarianceMatchTheTwoPassResult() {
+        double[] values = { 28, 31.5, 30, 45, 14.25, 29, 30 };
+        GapStats gaps = new GapStats();
+        for (double v : values)
+            gaps.add(v);
+
+        double mean = 0;
+        for (double v : values)
+            mean += v / values.length;
+        double squares = 0;
+        for (double v : values)
+            squares += (v - mean) * (v - mean);
+
+        assertThat(gaps.count()).isEqualTo(values.length);
+        assertThat(gaps.mean()).isCloseTo(mean, within(1e-9));
+        assertThat(gaps.stdDev()).isCloseTo(Math.sqrt(squares / (values.length - 1)), within(1e-9));
+    }
+
+    @Test
+    void identicalGapsHaveNoSpread() {
+        GapStats gaps = new GapStats();
+        for (int i = 0; i < 5; i++)
+            gaps.add(7);
+
+        assertThat(gaps.mean()).isEqualTo(7);
+        assertThat(gaps.stdDev()).isZero();
+    }
+}
@@ -0,0 +1,210 @@
+package com.healthshop.service;
+
+import com.healthshop.dto.ProductDTO;
+import com.healthshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FlashSaleStockServiceTest {
+
+    private static final long PRODUCT = 7L;
+
+    private final AtomicInteger dbStock = new AtomicInteger();
+    private final AtomicInteger dbSold = new AtomicInteger();
+    private ProductRepository productRepository;
+    private FlashSaleStockService service;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findStockById(PRODUCT)).thenAnswer(inv -> dbStock.get());
+        when(productRepository.applySales(eq(PRODUCT), anyInt())).thenAnswer(inv -> {
+            int quantity = inv.getArgument(1);
+            dbStock.addAndGet(-quantity);
+            dbSold.addAndGet(quantity);
+            return 1;
+        });
+        service = new FlashSaleStockService(productRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "stripeCount", 8);
+        ReflectionTestUtils.setField(service, "reservationTtlSeconds", 600L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void concurrentCheckoutsSellOutWithoutOverselling() throws Exception {
+        dbStock.set(100);
+        service.start(PRODUCT);
+        int threads = 16;
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CyclicBarrier go = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < 20; i++) {
+                        if (checkout(1, TransactionSynchronization.STATUS_COMMITTED))
+                            sold.incrementAndGet();
+                        else
+                            rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures)
+                f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(sold.get()).isEqualTo(100);
+        assertThat(rejected.get()).isEqualTo(threads * 20 - 100);
+        ProductDTO.FlashSaleStatus status = status();
+        assertThat(status.getAvailable()).isZero();
+        assertThat(status.getReserved()).isZero();
+        assertThat(status.getPendingSync()).isEqualTo(100);
+
+        service.reconcile();
+        assertThat(dbSold.get()).isEqualTo(100);
+        assertThat(dbStock.get()).isZero();
+        assertThat(status().getAvailable()).isZero();
+    }
+
+    @Test
+    void anOrderLargerThanOneStripeTakesFromTheOthers() {
+        dbStock.set(16); // two units per stripe
+        service.start(PRODUCT);
+
+        assertThat(checkout(15, TransactionSynchronization.STATUS_COMMITTED)).isTrue();
+        assertThat(status().getAvailable()).isEqualTo(1);
+        assertThat(checkout(2, TransactionSynchronization.STATUS_COMMITTED)).isFalse();
+        assertThat(status().getAvailable()).isEqualTo(1); // the failed take was put back
+    }
+
+    @Test
+    void rollbackReleasesTheReservation() {
+        dbStock.set(5);
+        service.start(PRODUCT);
+
+        assertThat(checkout(5, TransactionSynchronization.STATUS_ROLLED_BACK)).isTrue();
+
+        ProductDTO.FlashSaleStatus status = status();
+        assertThat(status.getAvailable()).isEqualTo(5);
+        assertThat(status.getReserved()).isZero();
+        assertThat(status.getPendingSync()).isZero();
+    }
+
+    @Test
+    void reconcileRealignsTheCountersAfterARestock() {
+        dbStock.set(10);
+        service.start(PRODUCT);
+        checkout(4, TransactionSynchronization.STATUS_COMMITTED);
+
+        service.reconcile();
+        assertThat(dbStock.get()).isEqualTo(6);
+        assertThat(status().getAvailable()).isEqualTo(6);
+
+        dbStock.addAndGet(50); // admin restock
+        service.reconcile();
+        assertThat(status().getAvailable()).isEqualTo(56);
+
+        dbStock.set(3); // stock corrected downwards
+        service.reconcile();
+        assertThat(status().getAvailable()).isEqualTo(3);
+    }
+
+    @Test
+    void realignLeavesUnitsHeldByOpenReservations() {
+        dbStock.set(10);
+        service.start(PRODUCT);
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(service.reserveForCurrentTransaction(PRODUCT, 4, "Whey")).isTrue();
+
+        service.reconcile();
+        assertThat(status().getAvailable()).isEqualTo(6);
+        assertThat(status().getReserved()).isEqualTo(4);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        service.reconcile();
+        assertThat(dbStock.get()).isEqualTo(6);
+        assertThat(status().getAvailable()).isEqualTo(6);
+    }
+
+    @Test
+    void stopWritesConfirmedSalesAndHandsBackToRowDecrements() {
+        dbStock.set(10);
+        service.start(PRODUCT);
+        checkout(3, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(service.stop(PRODUCT).isActive()).isFalse();
+
+        assertThat(dbStock.get()).isEqualTo(7);
+        assertThat(service.isActive(PRODUCT)).isFalse();
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(service.reserveForCurrentTransaction(PRODUCT, 1, "Whey")).isFalse();
+        service.reconcile();
+        assertThat(service.status()).isEmpty();
+    }
+
+    @Test
+    void stopKeepsTheSaleRunningWhenTheSyncFails() {
+        dbStock.set(10);
+        service.start(PRODUCT);
+        checkout(3, TransactionSynchronization.STATUS_COMMITTED);
+        when(productRepository.applySales(eq(PRODUCT), anyInt())).thenThrow(new RuntimeException("db down"));
+
+        assertThatThrownBy(() -> service.stop(PRODUCT)).hasMessageContaining("still running");
+
+        assertThat(service.isActive(PRODUCT)).isTrue();
+        assertThat(status().getPendingSync()).isEqualTo(3);
+    }
+
+    // One checkout transaction: reserve, then complete with the given status
+    private boolean checkout(int quantity, int completionStatus) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.reserveForCurrentTransaction(PRODUCT, quantity, "Whey");
+        } catch (RuntimeException e) {
+            TransactionSynchronizationManager.clearSynchronization();
+            return false;
+        }
+        complete(completionStatus);
+        return true;
+    }
+
+    private static void complete(int completionStatus) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(completionStatus));
+    }
+
+    private ProductDTO.FlashSaleStatus status() {
+        return service.status().get(0);
+    }
+}
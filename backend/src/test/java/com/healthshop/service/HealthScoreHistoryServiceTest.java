@@ -0,0 +1,129 @@
+package com.healthshop.service;
+
+import com.healthshop.dto.AIDTO;
+import com.healthshop.model.HealthScoreSeries;
+import com.healthshop.repository.HealthScoreSeriesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HealthScoreHistoryServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+
+    private final Map<Long, HealthScoreSeries> store = new HashMap<>();
+    private HealthScoreHistoryService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        HealthScoreSeriesRepository repository = mock(HealthScoreSeriesRepository.class);
+        when(repository.findAllById(any())).thenAnswer(inv -> {
+            List<HealthScoreSeries> found = new ArrayList<>();
+            for (Long id : (Iterable<Long>) inv.getArgument(0))
+                if (store.containsKey(id))
+                    found.add(store.get(id));
+            return found;
+        });
+        when(repository.saveAll(any())).thenAnswer(inv -> {
+            ((Iterable<HealthScoreSeries>) inv.getArgument(0)).forEach(s -> store.put(s.getUserId(), s));
+            return inv.getArgument(0);
+        });
+        when(repository.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.get(inv.<Long>getArgument(0))));
+        service = new HealthScoreHistoryService(repository);
+    }
+
+    @Test
+    void roundTripsDeltasOfEverySignAndSize() {
+        // Zig-zag keeps small negatives short; the large jumps need multi-byte varints
+        int[][] days = {
+                { 50, 10, 20, 30, 40, 50 },
+                { 49, 10, 21, 29, 40, 50 },
+                { 100, 0, 100, 0, 100, 0 },
+                { 0, 100, 0, 100, 0, 100 },
+                { 37, 64, 63, 65, 1, 99 },
+        };
+        for (int d = 0; d < days.length; d++)
+            service.record(Map.of(1L, days[d]), START.plusDays(d));
+
+        List<AIDTO.HealthScorePoint> points = history(START, START.plusDays(days.length - 1));
+
+        assertThat(points).hasSize(days.length);
+        for (int d = 0; d < days.length; d++) {
+            AIDTO.HealthScorePoint point = points.get(d);
+            assertThat(point.getDate()).isEqualTo(START.plusDays(d));
+            assertThat(point.getOverallScore()).isEqualTo(days[d][0]);
+            assertThat(point.getDimensions().values()).containsExactly(
+                    Arrays.stream(days[d]).skip(1).boxed().toArray(Integer[]::new));
+        }
+    }
+
+    @Test
+    void decodesLongGapsBetweenDays() {
+        service.record(Map.of(1L, vector(60)), START);
+        service.record(Map.of(1L, vector(61)), START.plusDays(1));
+        service.record(Map.of(1L, vector(70)), START.plusDays(400)); // gap needs a two-byte varint
+        service.record(Map.of(1L, vector(72)), START.plusDays(100_000));
+
+        assertThat(history(START, START.plusDays(100_000)))
+                .extracting(AIDTO.HealthScorePoint::getDate, AIDTO.HealthScorePoint::getOverallScore)
+                .containsExactly(
+                        tuple(START, 60),
+                        tuple(START.plusDays(1), 61),
+                        tuple(START.plusDays(400), 70),
+                        tuple(START.plusDays(100_000), 72));
+    }
+
+    @Test
+    void smallDailyChangesCostOneBytePerValue() {
+        service.record(Map.of(1L, vector(60)), START);
+        int before = store.get(1L).getData().length;
+
+        service.record(Map.of(1L, new int[] { 58, 61, 60, 59, 62, 60 }), START.plusDays(1));
+
+        assertThat(store.get(1L).getData().length - before).isEqualTo(1 + 6);
+    }
+
+    @Test
+    void rangeSelectsPointsAndComputesTheTrend() {
+        int[] overall = { 50, 52, 55, 40, 45 };
+        for (int d = 0; d < overall.length; d++)
+            service.record(Map.of(1L, vector(overall[d])), START.plusDays(d));
+
+        AIDTO.HealthScoreHistoryResponse middle = service.getHistory(1L, START.plusDays(1), START.plusDays(2));
+        assertThat(middle.getPoints()).extracting(AIDTO.HealthScorePoint::getOverallScore).containsExactly(52, 55);
+        assertThat(middle.getChange()).isEqualTo(3);
+        assertThat(middle.getTrend()).isEqualTo("improving");
+
+        AIDTO.HealthScoreHistoryResponse tail = service.getHistory(1L, START.plusDays(2), START.plusDays(4));
+        assertThat(tail.getChange()).isEqualTo(-10);
+        assertThat(tail.getTrend()).isEqualTo("declining");
+    }
+
+    @Test
+    void recordingTheSameDayTwiceIsIgnored() {
+        assertThat(service.record(Map.of(1L, vector(60), 2L, vector(70)), START)).isEqualTo(2);
+        assertThat(service.record(Map.of(1L, vector(99)), START)).isZero();
+
+        assertThat(history(START, START)).extracting(AIDTO.HealthScorePoint::getOverallScore).containsExactly(60);
+        assertThat(service.getHistory(2L, START, START).getPoints()).hasSize(1);
+        assertThat(service.getHistory(3L, START, START).getPoints()).isEmpty();
+    }
+
+    private List<AIDTO.HealthScorePoint> history(LocalDate from, LocalDate to) {
+        return service.getHistory(1L, from, to).getPoints();
+    }
+
+    private static int[] vector(int overall) {
+        return new int[] { overall, overall, overall, overall, overall, overall };
+    }
+}
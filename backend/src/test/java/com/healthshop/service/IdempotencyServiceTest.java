@@ -0,0 +1,128 @@
+package com.healthshop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+    private final IdempotencyService service = new IdempotencyService();
+
+    @Test
+    void replaysTheStoredResultForTheSameKey() {
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = service.execute("a@example.com", "key-1", "cart", () -> "order-" + runs.incrementAndGet());
+        String retry = service.execute("a@example.com", "key-1", "cart", () -> "order-" + runs.incrementAndGet());
+
+        assertThat(first).isEqualTo("order-1");
+        assertThat(retry).isEqualTo("order-1");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void keysAreScopedPerUserAndMissingKeysAlwaysRun() {
+        AtomicInteger runs = new AtomicInteger();
+
+        service.execute("a@example.com", "key-1", "cart", runs::incrementAndGet);
+        service.execute("b@example.com", "key-1", "cart", runs::incrementAndGet);
+        service.execute("a@example.com", null, "cart", runs::incrementAndGet);
+        service.execute("a@example.com", " ", "cart", runs::incrementAndGet);
+
+        assertThat(runs).hasValue(4);
+    }
+
+    @Test
+    void rejectsAKeyReusedForADifferentRequest() {
+        service.execute("a@example.com", "key-1", "cart A", () -> "order-1");
+
+        assertThatThrownBy(() -> service.execute("a@example.com", "key-1", "cart B", () -> "order-2"))
+                .hasMessageContaining("different request");
+    }
+
+    @Test
+    void rejectsOverlongKeys() {
+        assertThatThrownBy(() -> service.execute("a@example.com", "k".repeat(256), "cart", () -> "order-1"))
+                .hasMessageContaining("at most 255");
+    }
+
+    @Test
+    void failuresAreNotStoredSoTheKeyCanBeRetried() {
+        assertThatThrownBy(() -> service.execute("a@example.com", "key-1", "cart", () -> {
+            throw new RuntimeException("Insufficient stock");
+        })).hasMessage("Insufficient stock");
+
+        assertThat(service.execute("a@example.com", "key-1", "cart", () -> "order-1")).isEqualTo("order-1");
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheOriginalAndGetsItsResult() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        CountDownLatch releaseOriginal = new CountDownLatch(1);
+
+        FutureTask<String> original = start(() -> service.execute("a@example.com", "key-1", "cart", () -> {
+            originalStarted.countDown();
+            await(releaseOriginal);
+            return "order-" + runs.incrementAndGet();
+        }));
+        assertThat(originalStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        FutureTask<String> duplicate = new FutureTask<>(() -> service.execute("a@example.com", "key-1", "cart",
+                () -> "order-" + runs.incrementAndGet()));
+        Thread duplicateThread = new Thread(duplicate);
+        duplicateThread.start();
+        awaitBlocked(duplicateThread); // parked on the original, not running its own action
+        releaseOriginal.countDown();
+
+        assertThat(original.get(5, TimeUnit.SECONDS)).isEqualTo("order-1");
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo("order-1");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void concurrentDuplicateSeesTheOriginalsFailure() throws Exception {
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        CountDownLatch releaseOriginal = new CountDownLatch(1);
+
+        FutureTask<String> original = start(() -> service.execute("a@example.com", "key-1", "cart", () -> {
+            originalStarted.countDown();
+            await(releaseOriginal);
+            throw new RuntimeException("Insufficient stock");
+        }));
+        assertThat(originalStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        FutureTask<String> duplicate = new FutureTask<>(() -> service.execute("a@example.com", "key-1", "cart", () -> "order-2"));
+        Thread duplicateThread = new Thread(duplicate);
+        duplicateThread.start();
+        awaitBlocked(duplicateThread);
+        releaseOriginal.countDown();
+
+        assertThatThrownBy(() -> original.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("Insufficient stock");
+        assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("Insufficient stock");
+    }
+
+    private static FutureTask<String> start(Callable<String> task) {
+        FutureTask<String> future = new FutureTask<>(task);
+        new Thread(future).start();
+        return future;
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
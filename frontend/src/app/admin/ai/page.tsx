@@ -52,6 +52,38 @@ export default function AdminAIDashboard() {
                 </div>
             </div>
 
+            {/* Health Score Distribution (nightly batch) */}
+            {stats?.healthScoreDistribution && (
+                <div className="glass rounded-xl p-6 mb-8">
+                    <div className="flex items-center justify-between mb-6">
+                        <h3 className="text-lg font-semibold text-white">📊 Health Score Distribution</h3>
+                        <span className="text-xs text-gray-500">
+                            {stats.healthScoreDistribution.usersScored} users · {stats.healthScoreDistribution.computedAt ? new Date(stats.healthScoreDistribution.computedAt).toLocaleString() : ''}
+                        </span>
+                    </div>
+                    <div className="grid grid-cols-5 gap-4 mb-6 text-center">
+                        {[['P10', 'p10'], ['P25', 'p25'], ['Median', 'median'], ['P75', 'p75'], ['P90', 'p90']].map(([label, key]) => (
+                            <div key={key}>
+                                <p className="text-xs text-gray-400">{label}</p>
+                                <p className="text-xl font-bold text-white">{stats.healthScoreDistribution[key]}</p>
+                            </div>
+                        ))}
+                    </div>
+                    <div className="space-y-2">
+                        {stats.healthScoreDistribution.gradeHistogram?.map((g: any) => (
+                            <div key={g.label} className="flex items-center gap-3">
+                                <span className="w-8 text-sm text-gray-400 text-right">{g.label}</span>
+                                <div className="flex-1 h-3 bg-white/5 rounded-full overflow-hidden">
+                                    <div className="h-full bg-gradient-to-r from-health-500 to-primary-500 rounded-full"
+                                        style={{ width: `${(g.value / (stats.healthScoreDistribution.usersScored || 1)) * 100}%` }} />
+                                </div>
+                                <span className="w-12 text-xs text-gray-500">{g.value}</span>
+                            </div>
+                        ))}
+                    </div>
+                </div>
+            )}
+
             <div className="grid grid-cols-1 lg:grid-cols-2 gap-8 mb-8">
                 {/* Top Health Goals */}
                 <div className="glass rounded-xl p-6">
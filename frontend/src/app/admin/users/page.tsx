@@ -8,17 +8,51 @@ import Link from 'next/link';
 export default function AdminUsersPage() {
     const { user, isAuthenticated, loadUser } = useAuthStore();
     const [users, setUsers] = useState<any[]>([]);
+    const [totalUsers, setTotalUsers] = useState(0);
+    const [nextCursor, setNextCursor] = useState<number | null>(null);
+    const [query, setQuery] = useState('');
     const [loading, setLoading] = useState(true);
+    const [loadingMore, setLoadingMore] = useState(false);
+    const [exporting, setExporting] = useState(false);
 
     useEffect(() => { loadUser(); }, []);
 
+    // Debounced search; each new query starts again from the first page
     useEffect(() => {
         if (!isAuthenticated || user?.role !== 'ADMIN') return;
-        adminAPI.getAllUsers().then(r => {
-            setUsers(r.data);
-            setLoading(false);
-        }).catch(() => setLoading(false));
-    }, [isAuthenticated, user]);
+        const timer = setTimeout(() => {
+            setLoading(true);
+            adminAPI.getAllUsers(query.trim()).then(r => {
+                setUsers(r.data.users);
+                setNextCursor(r.data.nextCursor ?? null);
+                setTotalUsers(r.data.totalUsers);
+                setLoading(false);
+            }).catch(() => setLoading(false));
+        }, 300);
+        return () => clearTimeout(timer);
+    }, [isAuthenticated, user, query]);
+
+    const loadMore = () => {
+        if (nextCursor == null) return;
+        setLoadingMore(true);
+        adminAPI.getAllUsers(query.trim(), nextCursor).then(r => {
+            setUsers(prev => [...prev, ...r.data.users]);
+            setNextCursor(r.data.nextCursor ?? null);
+            setLoadingMore(false);
+        }).catch(() => setLoadingMore(false));
+    };
+
+    const exportCsv = () => {
+        setExporting(true);
+        adminAPI.exportUsersCsv().then(r => {
+            const url = URL.createObjectURL(r.data);
+            const a = document.createElement('a');
+            a.href = url;
+            a.download = 'users.csv';
+            a.click();
+            URL.revokeObjectURL(url);
+        }).finally(() => setExporting(false));
+    };
 
     if (!isAuthenticated || user?.role !== 'ADMIN') {
         return (
@@ -34,9 +68,23 @@ export default function AdminUsersPage() {
         <div className="max-w-7xl mx-auto px-4 sm:px-6 lg:px-8 py-8">
             <div className="flex items-center justify-between mb-6">
                 <h1 className="text-2xl font-bold text-white">👥 User Management</h1>
-                <div className="text-sm text-gray-400">Total Users: {users.length}</div>
+                <div className="flex items-center gap-4">
+                    <div className="text-sm text-gray-400">Total Users: {totalUsers}</div>
+                    <button onClick={exportCsv} disabled={exporting}
+                        className="btn-primary px-4 py-2 text-sm disabled:opacity-50">
+                        {exporting ? 'Exporting...' : '⬇️ Export CSV'}
+                    </button>
+                </div>
             </div>
 
+            <input
+                type="text"
+                value={query}
+                onChange={e => setQuery(e.target.value)}
+                placeholder="Search by email or name..."
+                className="w-full mb-6 px-4 py-2.5 rounded-xl bg-white/5 border border-white/10 text-white placeholder-gray-500 focus:outline-none focus:border-primary-500/50"
+            />
+
             {loading ? <LoadingSpinner text="Loading users..." /> : (
                 <div className="glass rounded-xl overflow-hidden">
                     <div className="overflow-x-auto">
@@ -68,6 +116,17 @@ export default function AdminUsersPage() {
                             </tbody>
                         </table>
                     </div>
+                    {users.length === 0 && (
+                        <div className="p-8 text-center text-gray-500 text-sm">No users found</div>
+                    )}
+                    {nextCursor != null && (
+                        <div className="p-4 text-center border-t border-white/5">
+                            <button onClick={loadMore} disabled={loadingMore}
+                                className="text-sm text-primary-400 hover:text-primary-300 disabled:opacity-50">
+                                {loadingMore ? 'Loading...' : 'Load more'}
+                            </button>
+                        </div>
+                    )}
                 </div>
             )}
         </div>
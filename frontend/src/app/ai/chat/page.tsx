@@ -50,22 +50,36 @@ export default function AIChatPage() {
         setLoading(true);
 
         try {
-            const chatHistory = messages.map(m => ({ role: m.role, content: m.content }));
-            const res = await aiAPI.chat(q, chatHistory).catch(() => null);
-            if (res?.data) {
-                const data = res.data;
-                const assistantMsg: ChatMsg = {
-                    role: 'assistant',
-                    content: data.message || 'Here are some products that may help:',
-                    products: data.suggestedProducts,
-                    followUpQuestions: data.followUpQuestions,
-                    severity: data.severity,
-                    lifestyleTips: data.lifestyleTips,
-                    identifiedSymptoms: data.identifiedSymptoms,
-                    suggestedCategories: data.suggestedCategories,
-                };
-                setMessages(prev => [...prev, assistantMsg]);
-            } else {
+            // Stream the reply: the analysis arrives first, then products tag by tag
+            let started = false;
+            try {
+                await aiAPI.chatStream(q, (event, data) => {
+                    if (event === 'analysis') {
+                        started = true;
+                        setMessages(prev => [...prev, {
+                            role: 'assistant',
+                            content: data.message || 'Here are some products that may help:',
+                            products: [],
+                            followUpQuestions: data.followUpQuestions,
+                            severity: data.severity,
+                            lifestyleTips: data.lifestyleTips,
+                            identifiedSymptoms: data.identifiedSymptoms,
+                            suggestedCategories: data.suggestedCategories,
+                        }]);
+                    } else if (event === 'products' || (event === 'done' && data.productCount > 0)) {
+                        setMessages(prev => {
+                            const last = prev[prev.length - 1];
+                            if (!last || last.role !== 'assistant') return prev;
+                            const updated = event === 'products'
+                                ? { ...last, products: [...(last.products || []), ...data.products] }
+                                : { ...last, content: `${last.content}\n\n${data.message}` };
+                            return [...prev.slice(0, -1), updated];
+                        });
+                    }
+                });
+            } catch (err) {
+                if (started) throw err; // keep the partial reply, report the failure below it
+                // Stream unavailable: fall back to the legacy symptom search
                 const fallback = await recommendAPI.symptoms(q);
                 const data = fallback.data;
                 setMessages(prev => [...prev, {
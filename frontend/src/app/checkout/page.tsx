@@ -1,7 +1,7 @@
 'use client';
 import { useEffect, useState } from 'react';
 import { useCartStore, useAuthStore } from '@/store';
-import { orderAPI } from '@/lib/api';
+import { orderAPI, newIdempotencyKey } from '@/lib/api';
 import { useRouter } from 'next/navigation';
 import Link from 'next/link';
 import toast from 'react-hot-toast';
@@ -11,6 +11,8 @@ export default function CheckoutPage() {
     const { isAuthenticated, user, loadUser } = useAuthStore();
     const router = useRouter();
     const [loading, setLoading] = useState(false);
+    // One key per checkout: a double submit or retry cannot place the order twice
+    const [idempotencyKey] = useState(() => newIdempotencyKey());
     const [form, setForm] = useState({
         shippingName: '', shippingAddress: '', shippingCity: '',
         shippingState: '', shippingZip: '', shippingPhone: '',
@@ -47,7 +49,7 @@ export default function CheckoutPage() {
         if (items.length === 0) { toast.error('Your cart is empty'); return; }
         setLoading(true);
         try {
-            await orderAPI.create({ ...form, couponCode: coupon?.code });
+            await orderAPI.create({ ...form, couponCode: coupon?.code }, idempotencyKey);
             toast.success('🎉 Order placed successfully!');
             router.push('/orders');
         } catch (err: any) {
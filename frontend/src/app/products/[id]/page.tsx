@@ -13,6 +13,7 @@ export default function ProductDetailPage() {
     const [product, setProduct] = useState<any>(null);
     const [reviews, setReviews] = useState<any[]>([]);
     const [fbt, setFbt] = useState<any[]>([]);
+    const [browsing, setBrowsing] = useState<any[]>([]);
     const [loading, setLoading] = useState(true);
     const [qty, setQty] = useState(1);
     const [imgError, setImgError] = useState(false);
@@ -23,6 +24,11 @@ export default function ProductDetailPage() {
 
     useEffect(() => {
         if (!id) return;
+        // Record the view first so the session picks already account for this product
+        recommendAPI.trackEvent(id, 'VIEW').catch(() => null)
+            .then(() => recommendAPI.session(4))
+            .then((s) => setBrowsing(s.data.recommendations || []))
+            .catch(() => setBrowsing([]));
         Promise.all([
             productAPI.getById(id),
             reviewAPI.getByProduct(id).catch(() => ({ data: { content: [] } })),
@@ -255,6 +261,15 @@ export default function ProductDetailPage() {
                     </div>
                 </section>
             )}
+
+            {browsing.length > 0 && (
+                <section className="mb-12">
+                    <h2 className="text-2xl font-bold text-white mb-6">Based on What You&apos;re Browsing</h2>
+                    <div className="product-grid">
+                        {browsing.map((p: any) => <ProductCard key={p.id} product={p} />)}
+                    </div>
+                </section>
+            )}
         </div>
     );
 }
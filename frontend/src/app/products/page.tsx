@@ -76,6 +76,7 @@ function ProductsContent() {
                         <option value="price_desc">Price: High to Low</option>
                         <option value="rating">Top Rated</option>
                         <option value="popularity">Most Popular</option>
+                        <option value="ai_score">Best AI Score</option>
                     </select>
                 </div>
             </div>
@@ -57,9 +57,21 @@ export const cartAPI = {
     remove: (itemId: number) => api.delete(`/api/cart/${itemId}`),
 };
 
+// Random v4 UUID for Idempotency-Key; crypto.randomUUID only exists in secure contexts (HTTPS/localhost)
+export const newIdempotencyKey = (): string => {
+    if (typeof crypto.randomUUID === 'function') return crypto.randomUUID();
+    const b = crypto.getRandomValues(new Uint8Array(16));
+    b[6] = (b[6] & 0x0f) | 0x40;
+    b[8] = (b[8] & 0x3f) | 0x80;
+    const hex = Array.from(b, (x) => x.toString(16).padStart(2, '0')).join('');
+    return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+};
+
 // Orders
 export const orderAPI = {
-    create: (data: any) => api.post('/api/orders', data),
+    // Retries with the same key replay the first result instead of placing a second order
+    create: (data: any, idempotencyKey?: string) =>
+        api.post('/api/orders', data, idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined),
     history: (page = 0, size = 10) => api.get(`/api/orders/history?page=${page}&size=${size}`),
 };
 
@@ -69,25 +81,47 @@ export const reviewAPI = {
     create: (data: any) => api.post('/api/reviews', data),
 };
 
+// Browsing session id (anonymous-friendly) for real-time session recommendations
+export const getSessionId = () => {
+    if (typeof window === 'undefined') return 'server';
+    let sid = sessionStorage.getItem('sessionId');
+    if (!sid) {
+        sid = `s-${Date.now().toString(36)}-${Math.random().toString(36).slice(2, 10)}`;
+        sessionStorage.setItem('sessionId', sid);
+    }
+    return sid;
+};
+
 // Recommendations
 export const recommendAPI = {
     get: (userId: number) => api.get(`/api/recommendations/${userId}`),
     fbt: (productId: number) => api.get(`/api/recommendations/product/${productId}/frequently-bought-together`),
     symptoms: (desc: string) => api.post('/api/chat/symptoms', { symptomDescription: desc }),
+    trackEvent: (productId: number, interactionType: 'VIEW' | 'CLICK' | 'CART_ADD') =>
+        api.post(`/api/recommendations/session/${getSessionId()}/events`, { productId, interactionType }),
+    session: (limit = 8) => api.get(`/api/recommendations/session/${getSessionId()}?limit=${limit}`),
 };
 
 // AI Features
 export const aiAPI = {
     // Health Score
     healthScore: () => api.get('/api/ai/health-score'),
+    // Daily score snapshots + trend; from/to as YYYY-MM-DD (default: last 90 days)
+    healthScoreHistory: (from?: string, to?: string) =>
+        api.get('/api/ai/health-score/history', { params: { from, to } }),
     // Drug Interaction Checker
     checkInteractions: (productIds: number[], medications: string[]) =>
         api.post('/api/ai/interaction-check', { productIds, currentMedications: medications }),
+    // Whole-regimen check: cart + recent purchases + profile medications
+    checkRegimen: () => api.post('/api/ai/interaction-check/regimen'),
     // Smart Product Comparison
     compareProducts: (productIds: number[]) =>
         api.post('/api/ai/compare', { productIds }),
+    compareWithCategoryTop: (productId: number) => api.get(`/api/ai/compare/${productId}/category-top`),
     // Personalized Dosage
     getDosage: (productId: number) => api.get(`/api/ai/dosage/${productId}`),
+    // Dosages + conflict-aware daily schedule for the whole cart
+    getCartDosages: () => api.get('/api/ai/dosage/cart'),
     // Purchase Pattern Insights
     purchaseInsights: () => api.get('/api/ai/purchase-insights'),
     // Full Health Insights Dashboard
@@ -99,6 +133,41 @@ export const aiAPI = {
     // Enhanced AI Chat
     chat: (message: string, history?: any[]) =>
         api.post('/api/ai/chat', { message, history }),
+    // Streaming AI Chat (SSE): onEvent('analysis' | 'products' | 'done', data); abort via signal
+    chatStream: async (message: string, onEvent: (event: string, data: any) => void, signal?: AbortSignal) => {
+        const token = typeof window !== 'undefined' ? localStorage.getItem('token') : null;
+        const res = await fetch(`${API_BASE}/api/ai/chat/stream`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                Accept: 'text/event-stream',
+                ...(token ? { Authorization: `Bearer ${token}` } : {}),
+            },
+            body: JSON.stringify({ message }),
+            signal,
+        });
+        if (!res.ok || !res.body) throw new Error(`Chat stream failed: ${res.status}`);
+        const reader = res.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        for (;;) {
+            const { done, value } = await reader.read();
+            if (done) break;
+            buffer += decoder.decode(value, { stream: true });
+            let sep;
+            while ((sep = buffer.indexOf('\n\n')) >= 0) {
+                const frame = buffer.slice(0, sep);
+                buffer = buffer.slice(sep + 2);
+                let event = 'message';
+                const data: string[] = [];
+                for (const line of frame.split('\n')) {
+                    if (line.startsWith('event:')) event = line.slice(6).trim();
+                    else if (line.startsWith('data:')) data.push(line.slice(5));
+                }
+                if (data.length) onEvent(event, JSON.parse(data.join('\n')));
+            }
+        }
+    },
 };
 
 // Health Profile
@@ -119,16 +188,23 @@ export const wishlistAPI = {
 export const adminAPI = {
     getStats: () => api.get('/api/admin/stats'),
     getAIStats: () => api.get('/api/ai/admin/stats'),
+    getHealthScoreBatch: () => api.get('/api/admin/health-scores/batch'),
+    startHealthScoreBatch: () => api.post('/api/admin/health-scores/batch'),
     createProduct: (data: any) => api.post('/api/admin/products', data),
     updateProduct: (id: number, data: any) => api.put(`/api/admin/products/${id}`, data),
     deleteProduct: (id: number) => api.delete(`/api/admin/products/${id}`),
+    getFlashSales: () => api.get('/api/admin/flash-sales'),
+    startFlashSale: (productId: number) => api.post(`/api/admin/flash-sales/${productId}`),
+    stopFlashSale: (productId: number) => api.delete(`/api/admin/flash-sales/${productId}`),
 
     // Orders
     getAllOrders: (page = 0, size = 10) => api.get(`/api/admin/orders?page=${page}&size=${size}`),
     updateOrderStatus: (id: number, status: string) => api.put(`/api/admin/orders/${id}/status?status=${status}`),
 
     // Users
-    getAllUsers: () => api.get('/api/admin/users'),
+    getAllUsers: (q = '', after?: number, size = 50) =>
+        api.get('/api/admin/users', { params: { q: q || undefined, after, size } }),
+    exportUsersCsv: () => api.get('/api/admin/users/export', { responseType: 'blob' }),
 
     // Coupons
     getAllCoupons: () => api.get('/api/admin/coupons'),